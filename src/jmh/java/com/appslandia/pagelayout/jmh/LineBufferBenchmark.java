@@ -0,0 +1,105 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.appslandia.pagelayout.utils.LineBuffer;
+
+/**
+ * Splices sections into a large layout: each holder line is removed and the section lines are inserted in its place,
+ * from the top of the layout to the bottom.
+ *
+ * @author Loc Ha
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineBufferBenchmark {
+
+  @Param({ "10000" })
+  int lineCount;
+
+  @Param({ "100", "1000" })
+  int holderCount;
+
+  @Param({ "20" })
+  int sectionSize;
+
+  List<String> layout;
+  List<String> section;
+
+  @Setup
+  public void setup() {
+    this.layout = new ArrayList<>(this.lineCount);
+    var step = this.lineCount / this.holderCount;
+
+    for (var i = 0; i < this.lineCount; i++) {
+      this.layout.add(i % step == 0 ? "  <!-- @section" + i + " -->" : "  <div>Line " + i + "</div>");
+    }
+    this.section = new ArrayList<>(this.sectionSize);
+    for (var i = 0; i < this.sectionSize; i++) {
+      this.section.add("  <script src=\"/js/script" + i + ".js\"></script>");
+    }
+  }
+
+  @Benchmark
+  public List<String> arrayList() {
+    return splice(new ArrayList<>(this.layout));
+  }
+
+  @Benchmark
+  public List<String> lineBuffer() {
+    return splice(new LineBuffer(this.layout));
+  }
+
+  List<String> splice(List<String> source) {
+    var i = 0;
+    while (i < source.size()) {
+      if (source.get(i).startsWith("  <!-- @section")) {
+        source.remove(i);
+        source.addAll(i, this.section);
+        i += this.section.size();
+      } else {
+        i++;
+      }
+    }
+    return source;
+  }
+}
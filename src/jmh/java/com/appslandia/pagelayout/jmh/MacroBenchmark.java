@@ -0,0 +1,277 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.jmh;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.appslandia.pagelayout.main.ViewProcessor;
+import com.appslandia.pagelayout.utils.FileUtils;
+
+/**
+ * Runs {@link ViewProcessor#process()} against generated view trees and reports the wall time, the peak heap, the
+ * allocated bytes (ThreadMXBean) and the files per second of each tree size.
+ *
+ * <p>
+ * Run: mvn -Pjmh test-compile exec:exec@macro -Dmacro.args="--views 1000,10000,100000 --threads 4"
+ * </p>
+ *
+ * <p>
+ * Options: --views, --threads, --iterations, --warmups, --dir, --seed, --layouts, --sections, --lines, --assets,
+ * --incremental. The trees are generated once under --dir and reused by the next runs.
+ * </p>
+ *
+ * @author Loc Ha
+ *
+ */
+public class MacroBenchmark {
+
+  String views = "1000,10000";
+  int threads = 1;
+  int iterations = 3;
+  int warmups = 1;
+  String dir = "target/macro-benchmark";
+  long seed = 1;
+  int layouts = 3;
+  int sections = 2;
+  int lines = 40;
+  double assets = 0.2;
+  boolean incremental;
+
+  public static void main(String[] args) throws Exception {
+    var benchmark = new MacroBenchmark();
+    benchmark.parseArgs(args);
+    benchmark.run();
+  }
+
+  void parseArgs(String[] args) {
+    for (var i = 0; i < args.length; i++) {
+      var name = args[i];
+      if ("--incremental".equals(name)) {
+        this.incremental = true;
+        continue;
+      }
+      if (i + 1 == args.length) {
+        throw new IllegalArgumentException("No value for the option " + name);
+      }
+      var value = args[++i];
+      switch (name) {
+      case "--views":
+        this.views = value;
+        break;
+      case "--threads":
+        this.threads = Integer.parseInt(value);
+        break;
+      case "--iterations":
+        this.iterations = Integer.parseInt(value);
+        break;
+      case "--warmups":
+        this.warmups = Integer.parseInt(value);
+        break;
+      case "--dir":
+        this.dir = value;
+        break;
+      case "--seed":
+        this.seed = Long.parseLong(value);
+        break;
+      case "--layouts":
+        this.layouts = Integer.parseInt(value);
+        break;
+      case "--sections":
+        this.sections = Integer.parseInt(value);
+        break;
+      case "--lines":
+        this.lines = Integer.parseInt(value);
+        break;
+      case "--assets":
+        this.assets = Double.parseDouble(value);
+        break;
+      default:
+        throw new IllegalArgumentException("The option is invalid: " + name);
+      }
+    }
+  }
+
+  void run() throws Exception {
+    List<String> rows = new ArrayList<>();
+    rows.add(String.format(Locale.ROOT, "%10s %10s %12s %12s %14s %14s %14s", "views", "files", "best ms", "avg ms",
+        "files/s", "alloc MB", "peak heap MB"));
+
+    for (String viewCount : this.views.split(",")) {
+      var views = Integer.parseInt(viewCount.strip());
+      var treeDir = Paths.get(this.dir, "tree-" + views + "-" + this.seed, "WEB-INF");
+      var viewsDir = treeDir.resolve("__views");
+      var files = generateTree(views, viewsDir);
+
+      var processor = new ViewProcessor().inputViewsDir(viewsDir.toString()).outputViewsDir("views")
+          .viewSuffixes(".jsp,.xhtml,.peb").threads(this.threads).incremental(this.incremental)
+          .manifestFile(treeDir.resolve("manifest.txt").toString());
+
+      for (var i = 0; i < this.warmups; i++) {
+        clean(treeDir);
+        processor.process();
+      }
+
+      var best = Long.MAX_VALUE;
+      var total = 0L;
+      var allocated = 0L;
+      var peakHeap = 0L;
+
+      for (var i = 0; i < this.iterations; i++) {
+        clean(treeDir);
+        System.gc();
+        resetPeakHeap();
+
+        var sampler = new AllocationSampler();
+        sampler.start();
+        var start = System.nanoTime();
+        processor.process();
+
+        var elapsed = System.nanoTime() - start;
+        allocated += sampler.stopAndGet();
+        peakHeap = Math.max(peakHeap, peakHeap());
+
+        best = Math.min(best, elapsed);
+        total += elapsed;
+      }
+      var avg = total / this.iterations;
+      rows.add(String.format(Locale.ROOT, "%10d %10d %12.1f %12.1f %14.0f %14.1f %14.1f", views, files, best / 1e6,
+          avg / 1e6, files / (avg / 1e9), allocated / (double) this.iterations / (1024 * 1024),
+          peakHeap / (1024.0 * 1024)));
+    }
+
+    System.out.println();
+    System.out.println("threads=" + this.threads + ", incremental=" + this.incremental + ", iterations="
+        + this.iterations + ", alloc: all threads sampled every " + AllocationSampler.INTERVAL_MILLIS + " ms");
+    rows.forEach(System.out::println);
+  }
+
+  int generateTree(int views, Path viewsDir) throws Exception {
+    var marker = viewsDir.resolveSibling("generated.txt");
+    if (Files.exists(marker)) {
+      return Integer.parseInt(Files.readString(marker).strip());
+    }
+    if (Files.exists(viewsDir)) {
+      FileUtils.deleteRecursively(viewsDir);
+    }
+    System.out.println("Generating " + views + " views: " + viewsDir.toAbsolutePath());
+
+    var files = new ViewTreeGenerator().views(views).layoutsPerSuffix(this.layouts).sectionsPerView(this.sections)
+        .linesPerView(this.lines).assetsPerView(this.assets).seed(this.seed).generate(viewsDir);
+    Files.writeString(marker, String.valueOf(files));
+    return files;
+  }
+
+  // Full build each iteration, the incremental one keeps the outputs & manifest
+  void clean(Path treeDir) throws Exception {
+    if (this.incremental) {
+      return;
+    }
+    var outDir = treeDir.resolve("views");
+    if (Files.exists(outDir)) {
+      FileUtils.deleteRecursively(outDir);
+    }
+  }
+
+  static void resetPeakHeap() {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  // The sum of the pool peaks: an upper bound of the heap peak
+  static long peakHeap() {
+    var peak = 0L;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+
+  /**
+   * Sums the allocated bytes of all threads by sampling them, so that the worker threads terminated before the end of
+   * the run are counted up to their last sample.
+   */
+  static class AllocationSampler extends Thread {
+    static final long INTERVAL_MILLIS = 10;
+
+    final com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory
+        .getThreadMXBean();
+
+    final Map<Long, Long> startBytes = new HashMap<>();
+    final Map<Long, Long> lastBytes = new HashMap<>();
+    volatile boolean stopped;
+
+    AllocationSampler() {
+      setDaemon(true);
+      sample(this.startBytes);
+    }
+
+    @Override
+    public void run() {
+      while (!this.stopped) {
+        synchronized (this) {
+          sample(this.lastBytes);
+        }
+        try {
+          Thread.sleep(INTERVAL_MILLIS);
+        } catch (InterruptedException ex) {
+          return;
+        }
+      }
+    }
+
+    void sample(Map<Long, Long> bytes) {
+      var ids = this.threadBean.getAllThreadIds();
+      var allocated = this.threadBean.getThreadAllocatedBytes(ids);
+      for (var i = 0; i < ids.length; i++) {
+        if (allocated[i] >= 0 && ids[i] != getId()) {
+          bytes.put(ids[i], allocated[i]);
+        }
+      }
+    }
+
+    long stopAndGet() throws InterruptedException {
+      this.stopped = true;
+      join();
+
+      sample(this.lastBytes);
+      var total = 0L;
+      for (Map.Entry<Long, Long> entry : this.lastBytes.entrySet()) {
+        total += entry.getValue() - this.startBytes.getOrDefault(entry.getKey(), 0L);
+      }
+      return total;
+    }
+  }
+}
@@ -0,0 +1,115 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.jmh;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.appslandia.pagelayout.utils.VariableResolver;
+import com.appslandia.pagelayout.utils.ViewSourceUtils;
+
+/**
+ * Compares the variable substitution with the regex per variable implementation it replaced.
+ *
+ * <p>
+ * Run: mvn -Pjmh test-compile exec:exec -Djmh.args="ReplaceVariables -prof gc"
+ * </p>
+ *
+ * @author Loc Ha
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplaceVariablesBenchmark {
+
+  @Param({ "10", "50" })
+  int variableCount;
+
+  @Param({ "200" })
+  int lineCount;
+
+  Map<String, String> variables;
+  List<String> source;
+
+  @Setup
+  public void setup() {
+    this.variables = new LinkedHashMap<>();
+    for (var i = 0; i < this.variableCount; i++) {
+      this.variables.put("var" + i, "value " + i);
+    }
+
+    // One in four lines has holders
+    this.source = new ArrayList<>(this.lineCount);
+    for (var i = 0; i < this.lineCount; i++) {
+      if (i % 4 == 0) {
+        this.source.add("  <p title=\"@( var" + (i % this.variableCount) + " )\">@(var0) - @(undefined)</p>");
+      } else {
+        this.source.add("  <div class=\"row\"><span>Line " + i + "</span></div>");
+      }
+    }
+  }
+
+  @Benchmark
+  public List<String> legacy() {
+    List<String> copy = new ArrayList<>(this.source);
+    for (var i = 0; i < copy.size(); i++) {
+      copy.set(i, legacyReplaceVariables(copy.get(i), this.variables));
+    }
+    return copy;
+  }
+
+  @Benchmark
+  public List<String> resolver() {
+    List<String> copy = new ArrayList<>(this.source);
+    ViewSourceUtils.replaceVariables(copy, new VariableResolver(this.variables));
+    return copy;
+  }
+
+  static String legacyReplaceVariables(String line, Map<String, String> variables) {
+    for (Map.Entry<String, String> entry : variables.entrySet()) {
+      var holder = "@\\(\\s*" + Pattern.quote(entry.getKey()) + "\\s*\\)";
+      line = Pattern.compile(holder, Pattern.CASE_INSENSITIVE).matcher(line)
+          .replaceAll(Matcher.quoteReplacement(entry.getValue()));
+    }
+    return line;
+  }
+}
@@ -0,0 +1,215 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.jmh;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.appslandia.pagelayout.main.ViewSourceHandler;
+import com.appslandia.pagelayout.utils.LineBuffer;
+import com.appslandia.pagelayout.utils.VariableResolver;
+import com.appslandia.pagelayout.utils.ViewSourceUtils;
+
+/**
+ * The source operations run for each view, on a generated JSP view and layout.
+ *
+ * <p>
+ * The operations change their input, so each benchmark works on a copy: subtract the {@code copy} benchmark to get the
+ * cost of the operation alone. Run: mvn -Pjmh test-compile exec:exec -Djmh.args="ViewSourceUtils -prof gc"
+ * </p>
+ *
+ * @author Loc Ha
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ViewSourceUtilsBenchmark {
+
+  @Param({ "100", "1000", "10000" })
+  int lineCount;
+
+  @Param({ "10", "100" })
+  int variableCount;
+
+  @Param({ "5", "50" })
+  int sectionCount;
+
+  ViewSourceHandler handler;
+
+  // View: @variables block, sections, lines with holders
+  List<String> viewSource;
+
+  // Layout: page directive, section holders, @doBody, blank lines
+  List<String> layoutSource;
+
+  // Parsed from viewSource
+  Map<String, String> variables;
+  Map<String, List<String>> sections;
+  VariableResolver resolver;
+  List<String> bodySource;
+
+  // layoutSource with the body inserted
+  List<String> bodyLayoutSource;
+
+  @Setup
+  public void setup() throws Exception {
+    this.handler = ViewSourceHandler.getHandler(".jsp");
+
+    this.viewSource = new ArrayList<>(this.lineCount + this.variableCount);
+    this.viewSource.add("<!-- @variables");
+    this.viewSource.add("  __layout = layout");
+    for (var i = 0; i < this.variableCount; i++) {
+      this.viewSource.add("  var" + i + " = value " + i);
+    }
+    this.viewSource.add("-->");
+
+    var sectionStep = Math.max(this.lineCount / (this.sectionCount + 1), 3);
+    var sectionIndex = 0;
+    for (var i = 0; i < this.lineCount; i++) {
+      if (sectionIndex < this.sectionCount && i > 0 && i % sectionStep == 0) {
+        this.viewSource.add("<!-- @section" + sectionIndex + " begin -->");
+        this.viewSource.add("  <script src=\"/js/section" + sectionIndex + ".js\"></script>");
+        this.viewSource.add("<!-- @section" + sectionIndex + " end -->");
+        sectionIndex++;
+        i += 2;
+
+      } else if (i % 4 == 0) {
+        this.viewSource.add("  <p title=\"@( var" + (i % this.variableCount) + " )\">${model.value" + i + "}</p>");
+      } else {
+        this.viewSource.add("  <div class=\"row\"><span>Line " + i + "</span></div>");
+      }
+    }
+
+    this.layoutSource = new ArrayList<>(this.lineCount);
+    this.layoutSource.add("<%@ page contentType=\"text/html; charset=utf-8\"");
+    this.layoutSource.add("    session=\"true\" %>");
+    this.layoutSource.add("<html>");
+    this.layoutSource.add("<head><title>@(var0)</title></head>");
+    for (var i = 0; i < this.sectionCount; i++) {
+      this.layoutSource.add("  <!-- @section" + i + "? -->");
+    }
+    for (var i = 0; i < this.lineCount; i++) {
+      if (i == this.lineCount / 2) {
+        this.layoutSource.add("  <!-- @doBody -->");
+      } else if (i % 8 == 0) {
+        this.layoutSource.add("  ");
+      } else {
+        this.layoutSource.add("  <div class=\"layout\"><span>Line " + i + "</span></div>");
+      }
+    }
+    this.layoutSource.add("</html>");
+
+    // Parsed inputs of replaceVariables, replaceBody and replaceSections
+    this.variables = new LinkedHashMap<>();
+    this.bodySource = copy(this.viewSource);
+    ViewSourceUtils.parseVariables(this.bodySource, "view.jsp", this.variables);
+    this.sections = new LinkedHashMap<>();
+    ViewSourceUtils.parseSections(this.bodySource, this.sections, "view.jsp");
+    this.resolver = new VariableResolver(this.variables);
+
+    this.bodyLayoutSource = copy(this.layoutSource);
+    ViewSourceUtils.replaceBody(this.bodyLayoutSource, "layout.jsp", this.bodySource, "view.jsp", this.handler);
+  }
+
+  static List<String> copy(List<String> source) {
+    return new LineBuffer(source);
+  }
+
+  @Benchmark
+  public List<String> copy() {
+    return copy(this.viewSource);
+  }
+
+  @Benchmark
+  public List<String> replaceVariables() {
+    var source = copy(this.viewSource);
+    ViewSourceUtils.replaceVariables(source, this.resolver);
+    return source;
+  }
+
+  @Benchmark
+  public Map<String, String> parseVariables() throws Exception {
+    var source = copy(this.viewSource);
+    Map<String, String> variables = new LinkedHashMap<>();
+    ViewSourceUtils.parseVariables(source, "view.jsp", variables);
+    return variables;
+  }
+
+  @Benchmark
+  public Map<String, List<String>> parseSections() {
+    var source = copy(this.viewSource);
+    Map<String, List<String>> sections = new LinkedHashMap<>();
+    ViewSourceUtils.parseSections(source, sections, "view.jsp");
+    return sections;
+  }
+
+  @Benchmark
+  public List<String> replaceBody() {
+    var source = copy(this.layoutSource);
+    ViewSourceUtils.replaceBody(source, "layout.jsp", this.bodySource, "view.jsp", this.handler);
+    return source;
+  }
+
+  @Benchmark
+  public List<String> replaceSections() {
+    // replaceSections adds the begin/end lines to the section sources
+    Map<String, List<String>> sections = new LinkedHashMap<>();
+    this.sections.forEach((name, sectionSource) -> sections.put(name, new ArrayList<>(sectionSource)));
+
+    var source = copy(this.bodyLayoutSource);
+    ViewSourceUtils.replaceSections(source, "view.jsp", sections);
+    return source;
+  }
+
+  @Benchmark
+  public List<String> removeBlankLines() {
+    var source = copy(this.layoutSource);
+    ViewSourceUtils.removeBlankLines(source);
+    return source;
+  }
+
+  @Benchmark
+  public List<String> handlePageDir() {
+    // JspViewHandler.handleSource: the page directive of a layout
+    var source = copy(this.layoutSource);
+    this.handler.handleSource(source, "layout.jsp", true);
+    return source;
+  }
+}
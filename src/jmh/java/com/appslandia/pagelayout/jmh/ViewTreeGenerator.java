@@ -0,0 +1,216 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.jmh;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates a __views tree: views in nested folders, several layouts per suffix in __config, shared variables files,
+ * sections and non-view assets. The same settings and seed generate the same tree.
+ *
+ * @author Loc Ha
+ *
+ */
+public class ViewTreeGenerator {
+
+  int views = 1000;
+  int viewsPerFolder = 50;
+  int foldersPerLevel = 10;
+
+  String[] suffixes = { ".jsp", ".xhtml", ".peb" };
+  int layoutsPerSuffix = 3;
+  int variablesFiles = 4;
+
+  int sectionsPerView = 2;
+  int linesPerView = 40;
+  double assetsPerView = 0.2;
+  long seed = 1;
+
+  public ViewTreeGenerator views(int views) {
+    this.views = views;
+    return this;
+  }
+
+  public ViewTreeGenerator viewsPerFolder(int viewsPerFolder) {
+    this.viewsPerFolder = viewsPerFolder;
+    return this;
+  }
+
+  public ViewTreeGenerator foldersPerLevel(int foldersPerLevel) {
+    this.foldersPerLevel = foldersPerLevel;
+    return this;
+  }
+
+  public ViewTreeGenerator suffixes(String... suffixes) {
+    this.suffixes = suffixes;
+    return this;
+  }
+
+  public ViewTreeGenerator layoutsPerSuffix(int layoutsPerSuffix) {
+    this.layoutsPerSuffix = layoutsPerSuffix;
+    return this;
+  }
+
+  public ViewTreeGenerator variablesFiles(int variablesFiles) {
+    this.variablesFiles = variablesFiles;
+    return this;
+  }
+
+  public ViewTreeGenerator sectionsPerView(int sectionsPerView) {
+    this.sectionsPerView = sectionsPerView;
+    return this;
+  }
+
+  public ViewTreeGenerator linesPerView(int linesPerView) {
+    this.linesPerView = linesPerView;
+    return this;
+  }
+
+  public ViewTreeGenerator assetsPerView(double assetsPerView) {
+    this.assetsPerView = assetsPerView;
+    return this;
+  }
+
+  public ViewTreeGenerator seed(long seed) {
+    this.seed = seed;
+    return this;
+  }
+
+  /**
+   * @return the number of generated files, config files excluded
+   */
+  public int generate(Path viewsDir) throws IOException {
+    var random = new Random(this.seed);
+    var configDir = viewsDir.resolve("__config");
+    Files.createDirectories(configDir);
+
+    for (var i = 0; i < this.variablesFiles; i++) {
+      write(configDir.resolve("common" + i + ".properties"), List.of("# Shared variables " + i,
+          "siteName=Site " + i, "copyright=Copyright " + i, "cdnUrl=https://cdn" + i + ".example.com"));
+    }
+    for (String suffix : this.suffixes) {
+      for (var i = 0; i < this.layoutsPerSuffix; i++) {
+        write(configDir.resolve("layout" + i + suffix), layoutSource(suffix, i));
+      }
+    }
+
+    var files = 0;
+    var assets = 0.0;
+    for (var i = 0; i < this.views; i++) {
+      var dir = viewsDir.resolve(folderOf(i / this.viewsPerFolder));
+      Files.createDirectories(dir);
+
+      var suffix = this.suffixes[random.nextInt(this.suffixes.length)];
+      var layout = random.nextInt(this.layoutsPerSuffix);
+      write(dir.resolve("view" + i + suffix), viewSource(random, i, layout));
+      files++;
+
+      assets += this.assetsPerView;
+      while (assets >= 1) {
+        var bytes = new byte[256 + random.nextInt(4096)];
+        random.nextBytes(bytes);
+        Files.write(dir.resolve("asset" + i + "_" + (int) assets + (random.nextBoolean() ? ".png" : ".js")), bytes);
+        files++;
+        assets--;
+      }
+    }
+    return files;
+  }
+
+  // 0 -> "", 1 -> "f1", 12 -> "f1/f2" for 10 folders per level
+  String folderOf(int folderIndex) {
+    var sb = new StringBuilder();
+    var index = folderIndex;
+    while (index > 0) {
+      sb.insert(0, "f" + (index % this.foldersPerLevel) + (sb.length() > 0 ? "/" : ""));
+      index /= this.foldersPerLevel;
+    }
+    return sb.toString();
+  }
+
+  List<String> layoutSource(String suffix, int index) {
+    List<String> source = new ArrayList<>();
+    if (".jsp".equals(suffix)) {
+      source.add("<%@ page contentType=\"text/html; charset=utf-8\" session=\"false\" %>");
+    }
+    source.add("<!-- @variables:common" + (index % Math.max(this.variablesFiles, 1)) + ".properties -->");
+    source.add("<!DOCTYPE html>");
+    source.add("<html>");
+    source.add("<head>");
+    source.add("  <title>@(title) - @(siteName)</title>");
+    source.add("  <link rel=\"stylesheet\" href=\"@(cdnUrl)/css/layout" + index + ".css\" />");
+    source.add("  <!-- @css? -->");
+    source.add("</head>");
+    source.add("<body>");
+    source.add("  <header>@(siteName)</header>");
+    source.add("");
+    source.add("  <main>");
+    source.add("    <!-- @doBody -->");
+    source.add("  </main>");
+    source.add("");
+    source.add("  <footer>@(copyright)</footer>");
+    source.add("  <script src=\"@(cdnUrl)/js/layout" + index + ".js\"></script>");
+    for (var i = 0; i < this.sectionsPerView; i++) {
+      source.add("  <!-- @section" + i + "? -->");
+    }
+    source.add("</body>");
+    source.add("</html>");
+    return source;
+  }
+
+  List<String> viewSource(Random random, int index, int layout) {
+    List<String> source = new ArrayList<>(this.linesPerView + 8);
+    source.add("<!-- @variables");
+    source.add("  __layout = layout" + layout);
+    source.add("  title = View " + index);
+    source.add("-->");
+
+    for (var i = 0; i < this.linesPerView; i++) {
+      switch (random.nextInt(4)) {
+      case 0:
+        source.add("<p>@(title): ${model.value" + i + "}</p>");
+        break;
+      case 1:
+        source.add("");
+        break;
+      default:
+        source.add("<div class=\"row\"><span>Line " + i + " of view " + index + "</span></div>");
+        break;
+      }
+    }
+    for (var i = 0; i < this.sectionsPerView; i++) {
+      source.add("<!-- @section" + i + " begin -->");
+      source.add("<script src=\"/js/view" + index + "_" + i + ".js\"></script>");
+      source.add("<!-- @section" + i + " end -->");
+    }
+    return source;
+  }
+
+  static void write(Path file, List<String> source) throws IOException {
+    Files.write(file, source, StandardCharsets.UTF_8);
+  }
+}
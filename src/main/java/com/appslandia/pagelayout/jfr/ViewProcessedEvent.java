@@ -0,0 +1,62 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Emitted once per processed view, its duration covers the load up to the save of the outputs.
+ *
+ * @author Loc Ha
+ *
+ */
+@Name("com.appslandia.pagelayout.ViewProcessed")
+@Label("View Processed")
+@Category("Page Layout")
+@Description("A view merged with its layout and saved")
+public final class ViewProcessedEvent extends Event {
+
+  @Label("View")
+  @Description("The view path, relative to the input views directory")
+  public String view;
+
+  @Label("Suffix")
+  public String suffix;
+
+  @Label("Layout")
+  @Description("The layout view name, null if the view has no layout")
+  public String layout;
+
+  @Label("Source Lines")
+  public int sourceLines;
+
+  @Label("Output Lines")
+  public int outputLines;
+
+  @Label("Bytes Written")
+  @DataAmount
+  public long bytesWritten;
+}
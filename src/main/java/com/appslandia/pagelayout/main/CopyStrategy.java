@@ -0,0 +1,76 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.main;
+
+import java.util.Locale;
+
+/**
+ * How the non-view files are written to the output views directory.
+ *
+ * @author Loc Ha
+ *
+ */
+public enum CopyStrategy {
+
+  /**
+   * Always copies the file.
+   */
+  COPY("copy"),
+
+  /**
+   * Copies the file unless the output has the same size and modified time, the modified time is copied too.
+   */
+  COPY_IF_CHANGED("copy-if-changed"),
+
+  /**
+   * Hard links the output to the file, copies it if the file system can't link it (e.g. another drive).
+   */
+  HARDLINK("hardlink"),
+
+  /**
+   * Links the output to the absolute path of the file, copies it if the file system can't link it.
+   */
+  SYMLINK("symlink");
+
+  final String value;
+
+  CopyStrategy(String value) {
+    this.value = value;
+  }
+
+  public String getValue() {
+    return this.value;
+  }
+
+  public boolean isLink() {
+    return (this == HARDLINK) || (this == SYMLINK);
+  }
+
+  public static CopyStrategy parse(String value) {
+    var strategy = value.strip().toLowerCase(Locale.ENGLISH);
+    for (CopyStrategy copyStrategy : values()) {
+      if (copyStrategy.value.equals(strategy)) {
+        return copyStrategy;
+      }
+    }
+    throw new IllegalArgumentException("copyStrategy is invalid (copyStrategy=" + value + ")");
+  }
+}
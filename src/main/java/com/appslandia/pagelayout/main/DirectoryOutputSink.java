@@ -0,0 +1,63 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.main;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import com.appslandia.pagelayout.utils.Arguments;
+
+/**
+ * Writes the outputs under a directory of any file system, replacing the existing files.
+ *
+ * @author Loc Ha
+ *
+ */
+public class DirectoryOutputSink implements OutputSink {
+
+  final Path dir;
+
+  public DirectoryOutputSink(Path dir) {
+    this.dir = Arguments.notNull(dir);
+  }
+
+  public Path getDir() {
+    return this.dir;
+  }
+
+  protected Path resolve(String path) throws IOException {
+    var file = this.dir.resolve(path);
+    Files.createDirectories(file.getParent());
+    return file;
+  }
+
+  @Override
+  public void write(String path, byte[] content) throws IOException {
+    Files.write(resolve(path), content);
+  }
+
+  @Override
+  public void copy(String path, Path source) throws IOException {
+    Files.copy(source, resolve(path), StandardCopyOption.REPLACE_EXISTING);
+  }
+}
@@ -20,7 +20,14 @@
 
 package com.appslandia.pagelayout.main;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.appslandia.pagelayout.utils.ViewSourceUtils;
 
 /**
  *
@@ -29,14 +36,37 @@ import java.util.List;
  */
 public class FaceletViewHandler extends ViewSourceHandler {
 
+  final boolean inlineBody;
+
+  public FaceletViewHandler() {
+    this(false);
+  }
+
+  /**
+   * @param inlineBody
+   *          splices the view body: the content of its ui:composition or ui:component tag becomes a ui:fragment,
+   *          which keeps the namespaces of the body without trimming the layout
+   */
+  public FaceletViewHandler(boolean inlineBody) {
+    this.inlineBody = inlineBody;
+  }
+
   @Override
   public boolean incViewFile() {
-    return true;
+    return !this.inlineBody;
   }
 
   @Override
   public void insertBody(List<String> layoutSource, int bodyPos, String bodyIndent, List<String> bodySource,
       String incViewFile) {
+    if (this.inlineBody) {
+      List<String> body = new ArrayList<>(bodySource);
+      ViewSourceUtils.removeXmlProlog(body);
+      toFragment(body, incViewFile);
+
+      spliceBody(layoutSource, bodyPos, bodyIndent, body);
+      return;
+    }
     layoutSource.add(bodyPos, bodyIndent + "<!-- @doBody begin -->");
     layoutSource.add(bodyPos + 1, bodyIndent + "<ui:include src=\"" + incViewFile + "\" />");
     layoutSource.add(bodyPos + 2, bodyIndent + "<!-- @doBody end -->");
@@ -45,4 +75,124 @@ public class FaceletViewHandler extends ViewSourceHandler {
   @Override
   public void handleSource(List<String> source, String sourceView, boolean layoutSource) {
   }
+
+  @Override
+  public byte[][] getSourceMarkers() {
+    return NO_MARKERS;
+  }
+
+  @Override
+  public ViewSourceHandler inlineBody() {
+    return this.inlineBody ? this : new FaceletViewHandler(true);
+  }
+
+  @Override
+  public boolean changesBody() {
+    return this.inlineBody;
+  }
+
+  // <ui:composition xmlns:ui="jakarta.faces.facelets"> -> <ui:fragment xmlns:ui="jakarta.faces.facelets">
+
+  static final Pattern rootTagPattern = Pattern.compile("<([\\w.-]+):(composition|component)(?=[\\s/>]|$)");
+
+  static final Pattern templateAttrPattern = Pattern.compile("\\stemplate\\s*=");
+
+  static final Pattern xmlnsAttrPattern = Pattern.compile("\\sxmlns(:[\\w.-]+)?\\s*=\\s*(\"[^\"]*\"|'[^']*')");
+
+  /**
+   * Keeps the content of the first ui:composition or ui:component tag as a ui:fragment, like Facelets trims the markup
+   * around it. The namespaces declared by the dropped wrapper tags are moved to the ui:fragment.
+   */
+  protected void toFragment(List<String> body, String incViewFile) {
+    var start = -1;
+    Matcher matcher = null;
+    for (var i = 0; i < body.size(); i++) {
+      matcher = rootTagPattern.matcher(body.get(i));
+      if (matcher.find()) {
+        start = i;
+        break;
+      }
+    }
+    if (start < 0) {
+      return;
+    }
+    var prefix = matcher.group(1);
+    var tagName = prefix + ":" + matcher.group(2);
+
+    // The start tag: up to the first >
+    var end = start;
+    var startTagEnd = body.get(start).indexOf('>', matcher.end());
+    while ((startTagEnd < 0) && (end < body.size() - 1)) {
+      end++;
+      startTagEnd = body.get(end).indexOf('>');
+    }
+    if (startTagEnd < 0) {
+      throw new IllegalArgumentException("<" + tagName + "> is not closed (incViewFile=" + incViewFile + ")");
+    }
+    var startTag = new StringBuilder();
+    for (var i = start; i <= end; i++) {
+      var line = body.get(i);
+      startTag.append((i == start) ? line.substring(matcher.start()) : line).append('\n');
+    }
+    if (templateAttrPattern.matcher(startTag).find()) {
+      throw new IllegalArgumentException(
+          "<" + tagName + " template> can't be inlined (incViewFile=" + incViewFile + ")");
+    }
+    var emptyTag = (startTagEnd > 0) && (body.get(end).charAt(startTagEnd - 1) == '/');
+
+    // The end tag: the last one, the markup after it is dropped
+    if (emptyTag) {
+      body.set(end, body.get(end).substring(0, startTagEnd + 1));
+      body.subList(end + 1, body.size()).clear();
+    } else {
+      var endTag = "</" + tagName;
+      var endLine = -1;
+      var endIdx = -1;
+      for (var i = body.size() - 1; (i >= end) && (endLine < 0); i--) {
+        endIdx = body.get(i).lastIndexOf(endTag);
+        if ((endIdx >= 0) && ((i > end) || (endIdx > startTagEnd))) {
+          endLine = i;
+        }
+      }
+      if (endLine < 0) {
+        throw new IllegalArgumentException(endTag + "> is required (incViewFile=" + incViewFile + ")");
+      }
+      body.set(endLine, body.get(endLine).substring(0, endIdx) + "</" + prefix + ":fragment>");
+      body.subList(endLine + 1, body.size()).clear();
+    }
+
+    // The namespaces of the wrapper tags
+    var wrapper = new StringBuilder();
+    for (var i = 0; i < start; i++) {
+      wrapper.append(' ').append(body.get(i));
+    }
+    wrapper.append(' ').append(body.get(start), 0, matcher.start());
+
+    Set<String> declared = new HashSet<>();
+    var xmlnsMatcher = xmlnsAttrPattern.matcher(startTag);
+    while (xmlnsMatcher.find()) {
+      declared.add(xmlnsMatcher.group(1));
+    }
+    var namespaces = new StringBuilder();
+    xmlnsMatcher = xmlnsAttrPattern.matcher(wrapper);
+    while (xmlnsMatcher.find()) {
+      if (declared.add(xmlnsMatcher.group(1))) {
+        namespaces.append(' ').append(xmlnsMatcher.group().strip());
+      }
+    }
+    if (namespaces.length() > 0) {
+      var line = body.get(end);
+      var pos = emptyTag ? startTagEnd - 1 : startTagEnd;
+      while ((pos > 0) && Character.isWhitespace(line.charAt(pos - 1))) {
+        pos--;
+      }
+      body.set(end, line.substring(0, pos) + namespaces + line.substring(pos));
+    }
+
+    // The start tag, the markup before it is dropped
+    var line = body.get(start);
+    var indent = line.substring(0, matcher.start());
+    body.set(start, (indent.isBlank() ? indent : "") + "<" + prefix + ":fragment" + line.substring(matcher.end()));
+    body.subList(0, start).clear();
+  }
 }
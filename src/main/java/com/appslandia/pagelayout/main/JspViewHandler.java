@@ -20,10 +20,13 @@
 
 package com.appslandia.pagelayout.main;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.appslandia.pagelayout.utils.DirectiveLexer;
+import com.appslandia.pagelayout.utils.MarkerScanner;
 import com.appslandia.pagelayout.utils.ViewSourceUtils;
 
 /**
@@ -33,14 +36,40 @@ import com.appslandia.pagelayout.utils.ViewSourceUtils;
  */
 public class JspViewHandler extends ViewSourceHandler {
 
+  final boolean inlineBody;
+
+  public JspViewHandler() {
+    this(false);
+  }
+
+  /**
+   * @param inlineBody
+   *          splices the view body, its page directive is removed as for the include file and its XML prolog too
+   */
+  public JspViewHandler(boolean inlineBody) {
+    this.inlineBody = inlineBody;
+  }
+
   @Override
   public boolean incViewFile() {
-    return true;
+    return !this.inlineBody;
   }
 
   @Override
   public void insertBody(List<String> layoutSource, int bodyPos, String bodyIndent, List<String> bodySource,
       String incViewFile) {
+    if (this.inlineBody) {
+      List<String> body = new ArrayList<>(bodySource);
+      ViewSourceUtils.removeXmlProlog(body);
+
+      // A JSP document has one jsp:root, the one of the layout
+      var start = ViewSourceUtils.indexOfNonBlank(body, 0);
+      if ((start >= 0) && body.get(start).stripLeading().startsWith("<jsp:root")) {
+        throw new IllegalArgumentException("<jsp:root> can't be inlined (incViewFile=" + incViewFile + ")");
+      }
+      spliceBody(layoutSource, bodyPos, bodyIndent, body);
+      return;
+    }
     layoutSource.add(bodyPos, bodyIndent + "<!-- @doBody begin -->");
     layoutSource.add(bodyPos + 1, bodyIndent + "<%@ include file=\"" + incViewFile + "\" %>");
     layoutSource.add(bodyPos + 2, bodyIndent + "<!-- @doBody end -->");
@@ -51,11 +80,30 @@ public class JspViewHandler extends ViewSourceHandler {
     handlePageDir(source, sourceView, layoutSource);
   }
 
-  // session="false" trimDirectiveWhitespaces="true" pageEncoding="UTF-8"
+  // <%@ page ...
+  static final byte[][] PAGE_DIR_MARKERS = { MarkerScanner.toBytes("<%@") };
+
+  @Override
+  public byte[][] getSourceMarkers() {
+    return PAGE_DIR_MARKERS;
+  }
 
-  static final Pattern startPageDirPattern = Pattern.compile("^\\s*<%@\\s*page.*");
+  @Override
+  public boolean hasPageDirective() {
+    return true;
+  }
 
-  static final Pattern endDirPattern = Pattern.compile(".*%>\\s*$");
+  @Override
+  public ViewSourceHandler inlineBody() {
+    return this.inlineBody ? this : new JspViewHandler(true);
+  }
+
+  @Override
+  public boolean changesBody() {
+    return this.inlineBody;
+  }
+
+  // session="false" trimDirectiveWhitespaces="true" pageEncoding="UTF-8"
 
   static final Pattern sessionAttrPattern = Pattern.compile("session\\s*=\\s*\"\\s*(true|false)\\s*\"");
 
@@ -66,29 +114,35 @@ public class JspViewHandler extends ViewSourceHandler {
 
   protected void handlePageDir(List<String> source, String sourceView, boolean layoutSource) {
     String pageDirective = null;
-    while (true) {
-
-      var start = -1;
-      while ((++start < source.size()) && !startPageDirPattern.matcher(source.get(start)).matches()) {
-      }
-      if (start == source.size()) {
-        break;
+    int[] pageDirectiveRange = null;
+    var tokens = DirectiveLexer.tokenize(source, DirectiveLexer.PAGE_DIRECTIVE | DirectiveLexer.DIRECTIVE_END);
+
+    var t = 0;
+    while (t < tokens.size()) {
+      if (!tokens.get(t).is(DirectiveLexer.PAGE_DIRECTIVE)) {
+        t++;
+        continue;
       }
+      var start = tokens.get(t).getIndex();
 
-      var end = start;
-      while ((end < source.size()) && !endDirPattern.matcher(source.get(end)).matches()) {
-        end++;
+      // The closing: the first line ending with %>, the start line included
+      while ((t < tokens.size()) && !tokens.get(t).is(DirectiveLexer.DIRECTIVE_END)) {
+        t++;
       }
-      if (end == source.size()) {
+      if (t == tokens.size()) {
         throw new IllegalArgumentException(
             "No close for the '" + source.get(start) + "' (sourceView=" + sourceView + ")");
       }
       if (pageDirective != null) {
         throw new IllegalArgumentException("<% page ... %> is duplicated (sourceView=" + sourceView + ")");
       }
+      var end = tokens.get(t++).getIndex();
 
       pageDirective = toDirectiveSource(source, start, end);
-      ViewSourceUtils.removeSubSource(source, start, end);
+      pageDirectiveRange = new int[] { start, end };
+    }
+    if (pageDirectiveRange != null) {
+      ViewSourceUtils.removeSubSource(source, pageDirectiveRange[0], pageDirectiveRange[1]);
     }
 
     // No need <%@ page %> for viewSource
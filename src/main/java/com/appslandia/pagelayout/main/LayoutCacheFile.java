@@ -0,0 +1,379 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.appslandia.pagelayout.utils.FileCache;
+import com.appslandia.pagelayout.utils.FileCache.CacheEntry;
+import com.appslandia.pagelayout.utils.FileCache.FileStamp;
+import com.appslandia.pagelayout.utils.FileUtils;
+
+/**
+ * Binary file keeping the compiled layouts and the parsed variables files between runs.
+ *
+ * <p>
+ * Each file is kept with its stamp (modified time and size) and the SHA-256 of its content. An entry is loaded only if
+ * the content of its file and of the files it depends on is unchanged: the same stamp reuses the kept hash, otherwise
+ * the file is hashed again, so a touched or checked out file still matches. A file written by another format version
+ * or with another removeBlankLines is ignored.
+ * </p>
+ *
+ * @author Loc Ha
+ *
+ */
+public class LayoutCacheFile {
+
+  static final int MAGIC = 0x504C4346; // PLCF
+  static final int VERSION = 4;
+  static final int MAX_STRING_LENGTH = 64 * 1024 * 1024;
+  static final int MAX_COUNT = 16 * 1024 * 1024;
+
+  /**
+   * @return the number of loaded entries, {@code -1} if the file does not exist or can't be used
+   */
+  public static int load(Path file, boolean removeBlankLines, FileCache<LayoutTemplate> layoutCache,
+      FileCache<Map<String, String>> variablesCache) throws IOException {
+    List<CacheEntry<Map<String, String>>> variablesEntries = new ArrayList<>();
+    List<CacheEntry<LayoutTemplate>> layoutEntries = new ArrayList<>();
+    Map<Path, String> hashes = new HashMap<>();
+
+    try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readBoolean() != removeBlankLines) {
+        return -1;
+      }
+
+      // Variables files
+      var count = readCount(in);
+      for (var i = 0; i < count; i++) {
+        var key = readPath(in);
+        var stamp = readStamp(in);
+        hashes.put(key, readString(in));
+        var variables = readVariables(in);
+        variablesEntries.add(new CacheEntry<>(key, variables, stamp, List.of(), List.of()));
+      }
+
+      // Layouts
+      count = readCount(in);
+      for (var i = 0; i < count; i++) {
+        var key = readPath(in);
+        var stamp = readStamp(in);
+        hashes.put(key, readString(in));
+
+        var depCount = readCount(in);
+        List<Path> dependencyFiles = new ArrayList<>(depCount);
+        List<FileStamp> dependencyStamps = new ArrayList<>(depCount);
+        for (var j = 0; j < depCount; j++) {
+          var dependencyFile = readPath(in);
+          dependencyFiles.add(dependencyFile);
+          dependencyStamps.add(readStamp(in));
+          hashes.put(dependencyFile, readString(in));
+        }
+        layoutEntries.add(new CacheEntry<>(key, readLayout(in, removeBlankLines), stamp, dependencyFiles,
+            dependencyStamps));
+      }
+
+    } catch (NoSuchFileException ex) {
+      return -1;
+
+    } catch (IOException | RuntimeException ex) {
+      // Truncated or corrupted -> Cold start
+      return -1;
+    }
+
+    var loaded = 0;
+    Map<Path, FileStamp> unchanged = new HashMap<>();
+    for (CacheEntry<Map<String, String>> entry : variablesEntries) {
+      var current = toCurrentEntry(entry, hashes, unchanged);
+      if (current != null) {
+        variablesCache.putEntry(current);
+        loaded++;
+      }
+    }
+    for (CacheEntry<LayoutTemplate> entry : layoutEntries) {
+      var current = toCurrentEntry(entry, hashes, unchanged);
+      if (current != null) {
+        layoutCache.putEntry(current);
+        loaded++;
+      }
+    }
+    return loaded;
+  }
+
+  // @return the entry with the current stamps, null if a file is changed or missing
+  static <V> CacheEntry<V> toCurrentEntry(CacheEntry<V> entry, Map<Path, String> hashes,
+      Map<Path, FileStamp> unchanged) throws IOException {
+    var stamp = toCurrentStamp(entry.getKey(), entry.getStamp(), hashes, unchanged);
+    if (stamp == null) {
+      return null;
+    }
+    List<FileStamp> dependencyStamps = new ArrayList<>(entry.getDependencyFiles().size());
+    for (var i = 0; i < entry.getDependencyFiles().size(); i++) {
+      var dependencyStamp = toCurrentStamp(entry.getDependencyFiles().get(i), entry.getDependencyStamps().get(i),
+          hashes, unchanged);
+      if (dependencyStamp == null) {
+        return null;
+      }
+      dependencyStamps.add(dependencyStamp);
+    }
+    return new CacheEntry<>(entry.getKey(), entry.getValue(), stamp, entry.getDependencyFiles(),
+        dependencyStamps);
+  }
+
+  // @return the current stamp if the content is unchanged, null otherwise
+  static FileStamp toCurrentStamp(Path file, FileStamp stamp, Map<Path, String> hashes, Map<Path, FileStamp> unchanged)
+      throws IOException {
+    if (unchanged.containsKey(file)) {
+      return unchanged.get(file);
+    }
+    var current = FileStamp.of(file);
+    if ((stamp == null) || (current == null)) {
+      current = null;
+
+    } else if (!current.equals(stamp) && !FileUtils.sha256(file).equals(hashes.get(file))) {
+      current = null;
+    }
+    unchanged.put(file, current);
+    return current;
+  }
+
+  public static void save(Path file, boolean removeBlankLines, FileCache<LayoutTemplate> layoutCache,
+      FileCache<Map<String, String>> variablesCache) throws IOException {
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    var tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+    try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeBoolean(removeBlankLines);
+
+      // Variables files
+      Map<Path, String> hashes = new HashMap<>();
+      var variablesEntries = getUnchangedEntries(variablesCache, hashes);
+      out.writeInt(variablesEntries.size());
+      for (CacheEntry<Map<String, String>> entry : variablesEntries) {
+        writePath(out, entry.getKey());
+        writeStamp(out, entry.getStamp());
+        writeString(out, hashes.get(entry.getKey()));
+        writeVariables(out, entry.getValue());
+      }
+
+      // Layouts
+      var layoutEntries = getUnchangedEntries(layoutCache, hashes);
+      out.writeInt(layoutEntries.size());
+      for (CacheEntry<LayoutTemplate> entry : layoutEntries) {
+        writePath(out, entry.getKey());
+        writeStamp(out, entry.getStamp());
+        writeString(out, hashes.get(entry.getKey()));
+
+        out.writeInt(entry.getDependencyFiles().size());
+        for (var i = 0; i < entry.getDependencyFiles().size(); i++) {
+          writePath(out, entry.getDependencyFiles().get(i));
+          writeStamp(out, entry.getDependencyStamps().get(i));
+          writeString(out, hashes.get(entry.getDependencyFiles().get(i)));
+        }
+        writeLayout(out, entry.getValue());
+      }
+    }
+    Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  // The files are hashed before their stamps are checked: a hash is never taken from a newer content
+  static <V> List<CacheEntry<V>> getUnchangedEntries(FileCache<V> cache, Map<Path, String> hashes) throws IOException {
+    List<CacheEntry<V>> entries = new ArrayList<>();
+    for (CacheEntry<V> entry : cache.getEntries()) {
+      var hashed = hash(entry.getKey(), hashes);
+      for (var i = 0; hashed && (i < entry.getDependencyFiles().size()); i++) {
+        hashed = hash(entry.getDependencyFiles().get(i), hashes);
+      }
+      if (hashed && entry.isValid()) {
+        entries.add(entry);
+      }
+    }
+    return entries;
+  }
+
+  static boolean hash(Path file, Map<Path, String> hashes) throws IOException {
+    if (!hashes.containsKey(file)) {
+      try {
+        hashes.put(file, FileUtils.sha256(file));
+
+      } catch (NoSuchFileException ex) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static void writeLayout(DataOutputStream out, LayoutTemplate layout) throws IOException {
+    writeString(out, layout.layoutViewName);
+    writeVariables(out, layout.variables);
+
+    out.writeInt(layout.variablesFiles.size());
+    for (Path variablesFile : layout.variablesFiles) {
+      writePath(out, variablesFile);
+    }
+    writeSegments(out, layout.segments);
+    out.writeInt(layout.lineCount);
+    out.writeBoolean(layout.handledPerView);
+
+    // __layout
+    out.writeBoolean(layout.parentLayoutName != null);
+    if (layout.parentLayoutName != null) {
+      writeString(out, layout.parentLayoutName);
+    }
+    out.writeInt(layout.sections.size());
+    for (Map.Entry<String, List<LayoutTemplate.Segment>> section : layout.sections.entrySet()) {
+      writeString(out, section.getKey());
+      writeSegments(out, section.getValue());
+    }
+  }
+
+  static LayoutTemplate readLayout(DataInputStream in, boolean removeBlankLines) throws IOException {
+    var layoutViewName = readString(in);
+    var variables = readVariables(in);
+
+    var count = readCount(in);
+    List<Path> variablesFiles = new ArrayList<>(count);
+    for (var i = 0; i < count; i++) {
+      variablesFiles.add(readPath(in));
+    }
+    var segments = readSegments(in);
+    var lineCount = in.readInt();
+    var handledPerView = in.readBoolean();
+
+    // __layout
+    var parentLayoutName = in.readBoolean() ? readString(in) : null;
+    count = readCount(in);
+    Map<String, List<LayoutTemplate.Segment>> sections = new LinkedHashMap<>(count * 4 / 3 + 1);
+    for (var i = 0; i < count; i++) {
+      sections.put(readString(in), readSegments(in));
+    }
+    return new LayoutTemplate(layoutViewName, variables, variablesFiles, segments, removeBlankLines, lineCount,
+        parentLayoutName, sections, Collections.emptyList(), handledPerView);
+  }
+
+  static void writeSegments(DataOutputStream out, List<LayoutTemplate.Segment> segments) throws IOException {
+    out.writeInt(segments.size());
+    for (LayoutTemplate.Segment segment : segments) {
+      out.writeByte(segment.type);
+      writeString(out, segment.value);
+    }
+  }
+
+  static List<LayoutTemplate.Segment> readSegments(DataInputStream in) throws IOException {
+    var count = readCount(in);
+    List<LayoutTemplate.Segment> segments = new ArrayList<>(count);
+    for (var i = 0; i < count; i++) {
+      var type = in.readByte();
+      if (type < LayoutTemplate.LITERAL || type > LayoutTemplate.SECTION) {
+        throw new IOException("The cache file is corrupted.");
+      }
+      segments.add(new LayoutTemplate.Segment(type, readString(in)));
+    }
+    return segments;
+  }
+
+  static void writeVariables(DataOutputStream out, Map<String, String> variables) throws IOException {
+    out.writeInt(variables.size());
+    for (Map.Entry<String, String> variable : variables.entrySet()) {
+      writeString(out, variable.getKey());
+      writeString(out, variable.getValue());
+    }
+  }
+
+  static Map<String, String> readVariables(DataInputStream in) throws IOException {
+    var count = readCount(in);
+    Map<String, String> variables = new LinkedHashMap<>(count * 4 / 3 + 1);
+    for (var i = 0; i < count; i++) {
+      variables.put(readString(in), readString(in));
+    }
+    return Collections.unmodifiableMap(variables);
+  }
+
+  // size -1: the file does not exist
+  static void writeStamp(DataOutputStream out, FileStamp stamp) throws IOException {
+    if (stamp == null) {
+      out.writeLong(0);
+      out.writeLong(-1);
+      return;
+    }
+    out.writeLong(stamp.getLastModified().to(TimeUnit.NANOSECONDS));
+    out.writeLong(stamp.getSize());
+  }
+
+  static FileStamp readStamp(DataInputStream in) throws IOException {
+    var nanos = in.readLong();
+    var size = in.readLong();
+    return (size < 0) ? null : new FileStamp(FileTime.from(nanos, TimeUnit.NANOSECONDS), size);
+  }
+
+  static void writePath(DataOutputStream out, Path path) throws IOException {
+    writeString(out, path.toString());
+  }
+
+  static Path readPath(DataInputStream in) throws IOException {
+    return Paths.get(readString(in));
+  }
+
+  // writeUTF is limited to 64KB
+  static void writeString(DataOutputStream out, String str) throws IOException {
+    var bytes = str.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  static int readCount(DataInputStream in) throws IOException {
+    var count = in.readInt();
+    if (count < 0 || count > MAX_COUNT) {
+      throw new IOException("The cache file is corrupted.");
+    }
+    return count;
+  }
+
+  static String readString(DataInputStream in) throws IOException {
+    var length = in.readInt();
+    if (length < 0 || length > MAX_STRING_LENGTH) {
+      throw new IOException("The cache file is corrupted.");
+    }
+    var bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
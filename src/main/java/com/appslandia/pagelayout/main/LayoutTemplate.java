@@ -0,0 +1,465 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.main;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.appslandia.pagelayout.jfr.LayoutCompiledEvent;
+import com.appslandia.pagelayout.utils.DirectiveLexer;
+import com.appslandia.pagelayout.utils.FileCache;
+import com.appslandia.pagelayout.utils.LineBuffer;
+import com.appslandia.pagelayout.utils.SourceFiles;
+import com.appslandia.pagelayout.utils.VariableResolver;
+import com.appslandia.pagelayout.utils.ViewSourceUtils;
+import com.appslandia.pagelayout.utils.ViewUtils;
+
+/**
+ * A layout compiled once into segments: literal lines, lines with variable holders, the @doBody slot and the section
+ * slots. The layout variables, @variables:file included, are parsed and the layout is validated at compile time.
+ *
+ * <p>
+ * A layout declaring {@code __layout} extends a parent layout: it is compiled like a view of its parent (body and
+ * sections), then {@link #extend(LayoutTemplate, Path)} composes it into the parent once per parent template.
+ * </p>
+ *
+ * <p>
+ * The view handler needs the replaced variables when a holder is part of what it handles, e.g. a JSP page directive
+ * attribute, or when a replaced line becomes a directive: such a layout is handled per view, after its variables are
+ * replaced, like an uncompiled layout.
+ * </p>
+ *
+ * @author Loc Ha
+ *
+ */
+public class LayoutTemplate {
+
+  static final int LITERAL = 0;
+  static final int VARIABLE = 1;
+  static final int BODY = 2;
+  static final int SECTION = 3;
+
+  // A replaced line with one of them is handled per view
+  static final int HANDLED_LINES = DirectiveLexer.DO_BODY | DirectiveLexer.SECTION_HOLDER
+      | DirectiveLexer.PAGE_DIRECTIVE | DirectiveLexer.DIRECTIVE_END;
+
+  final String layoutViewName;
+  final Map<String, String> variables;
+  final List<Path> variablesFiles;
+  final List<Segment> segments;
+  final boolean removeBlankLines;
+  final int lineCount;
+
+  // __layout: The sections filling the parent layout
+  final String parentLayoutName;
+  final Map<String, List<Segment>> sections;
+
+  // Composed: The parent layout files
+  final List<Path> layoutFiles;
+
+  // The handler runs per view, once the variables are replaced
+  final boolean handledPerView;
+
+  private LayoutTemplate extendedParent;
+  private LayoutTemplate extended;
+
+  protected LayoutTemplate(String layoutViewName, Map<String, String> variables, List<Path> variablesFiles,
+      List<Segment> segments, boolean removeBlankLines, int lineCount) {
+    this(layoutViewName, variables, variablesFiles, segments, removeBlankLines, lineCount, null,
+        Collections.emptyMap(), Collections.emptyList());
+  }
+
+  protected LayoutTemplate(String layoutViewName, Map<String, String> variables, List<Path> variablesFiles,
+      List<Segment> segments, boolean removeBlankLines, int lineCount, String parentLayoutName,
+      Map<String, List<Segment>> sections, List<Path> layoutFiles) {
+    this(layoutViewName, variables, variablesFiles, segments, removeBlankLines, lineCount, parentLayoutName, sections,
+        layoutFiles, false);
+  }
+
+  protected LayoutTemplate(String layoutViewName, Map<String, String> variables, List<Path> variablesFiles,
+      List<Segment> segments, boolean removeBlankLines, int lineCount, String parentLayoutName,
+      Map<String, List<Segment>> sections, List<Path> layoutFiles, boolean handledPerView) {
+    this.layoutViewName = layoutViewName;
+    this.variables = Collections.unmodifiableMap(variables);
+    this.variablesFiles = Collections.unmodifiableList(variablesFiles);
+    this.segments = segments;
+    this.removeBlankLines = removeBlankLines;
+    this.lineCount = lineCount;
+    this.parentLayoutName = parentLayoutName;
+    this.sections = Collections.unmodifiableMap(sections);
+    this.layoutFiles = Collections.unmodifiableList(layoutFiles);
+    this.handledPerView = handledPerView;
+  }
+
+  public String getLayoutViewName() {
+    return this.layoutViewName;
+  }
+
+  public Map<String, String> getVariables() {
+    return this.variables;
+  }
+
+  public List<Path> getVariablesFiles() {
+    return this.variablesFiles;
+  }
+
+  /**
+   * @return the {@code __layout} of this layout, {@code null} if this layout is a root layout
+   */
+  public String getParentLayoutName() {
+    return this.parentLayoutName;
+  }
+
+  /**
+   * @return the parent layout files this layout is composed from, the nearest first
+   */
+  public List<Path> getLayoutFiles() {
+    return this.layoutFiles;
+  }
+
+  /**
+   * @return true if a holder is handled by the view handler, the handler runs per view after the variables are replaced
+   */
+  public boolean isHandledPerView() {
+    return this.handledPerView;
+  }
+
+  public static LayoutTemplate compile(Path layoutPath, String layoutViewName, Path configPath,
+      ViewSourceHandler handler, boolean removeBlankLines) throws Exception {
+    return compile(layoutPath, layoutViewName, configPath, handler, removeBlankLines, null);
+  }
+
+  public static LayoutTemplate compile(Path layoutPath, String layoutViewName, Path configPath,
+      ViewSourceHandler handler, boolean removeBlankLines, FileCache<Map<String, String>> variablesCache)
+      throws Exception {
+    return compile(layoutPath, layoutViewName, configPath, handler, removeBlankLines, variablesCache,
+        SourceFiles.DEFAULT);
+  }
+
+  public static LayoutTemplate compile(Path layoutPath, String layoutViewName, Path configPath,
+      ViewSourceHandler handler, boolean removeBlankLines, FileCache<Map<String, String>> variablesCache,
+      SourceFiles sourceFiles) throws Exception {
+    var event = new LayoutCompiledEvent();
+    event.begin();
+
+    var source = sourceFiles.readLines(layoutPath);
+
+    // Variables (layout)
+    Map<String, String> variables = new LinkedHashMap<>();
+    List<Path> variablesFiles = new ArrayList<>();
+
+    ViewSourceUtils.parseVariablesFile(source, configPath, variables, variablesFiles, variablesCache, sourceFiles);
+    ViewSourceUtils.parseVariables(source, layoutViewName, variables);
+
+    var parentLayoutName = ViewProcessor.getLayoutName(layoutViewName, variables);
+    variables.remove("__layout");
+
+    // The holders are replaced per view, only their lines can become blank
+    if (removeBlankLines) {
+      ViewSourceUtils.removeBlankLines(source);
+    }
+
+    // Segments
+    List<Segment> segments = new ArrayList<>(source.size());
+    Map<String, List<Segment>> sections = new LinkedHashMap<>();
+    var doBody = 0;
+    var handledPerView = false;
+
+    if (parentLayoutName == null) {
+      // A holder handled by the handler -> Kept as is until the variables are replaced
+      var handledSource = new LineBuffer(source);
+      handler.handleSource(handledSource, layoutViewName, true);
+      handledPerView = !getHolderLines(handledSource).equals(getHolderLines(source));
+
+      if (!handledPerView) {
+        source = handledSource;
+      }
+      doBody = addSegments(source, segments, layoutViewName);
+
+      // @doBody from a variable?
+      if ((doBody == 0) && segments.stream().anyMatch(segment -> segment.type == VARIABLE)) {
+        handledPerView = true;
+      }
+
+    } else {
+      // A view of the parent layout: the root layout keeps the page directive
+      handler.handleSource(source, layoutViewName, false);
+
+      Map<String, List<String>> sectionSources = new LinkedHashMap<>();
+      ViewSourceUtils.parseSections(source, sectionSources, layoutViewName);
+
+      doBody = addSegments(source, segments, layoutViewName);
+      for (Map.Entry<String, List<String>> section : sectionSources.entrySet()) {
+        List<Segment> sectionSegments = new ArrayList<>(section.getValue().size());
+        doBody += addSegments(section.getValue(), sectionSegments, layoutViewName);
+        sections.put(section.getKey(), sectionSegments);
+      }
+    }
+    if (!handledPerView) {
+      checkDoBody(doBody, layoutViewName);
+    }
+    var layout = new LayoutTemplate(layoutViewName, variables, variablesFiles, segments, removeBlankLines,
+        source.size(), parentLayoutName, sections, Collections.emptyList(), handledPerView);
+
+    if (event.shouldCommit()) {
+      event.path = layoutPath.toString();
+      event.layout = layoutViewName;
+      event.lines = layout.lineCount;
+      event.variablesFiles = variablesFiles.size();
+      event.commit();
+    }
+    return layout;
+  }
+
+  static List<String> getHolderLines(List<String> source) {
+    List<String> holderLines = new ArrayList<>();
+    for (String line : source) {
+      if (line.indexOf("@(") >= 0) {
+        holderLines.add(line);
+      }
+    }
+    return holderLines;
+  }
+
+  static void checkDoBody(int doBody, String layoutViewName) {
+    if (doBody > 1) {
+      throw new IllegalArgumentException("@doBody is duplicated (layoutViewName=" + layoutViewName + ")");
+    }
+    if (doBody == 0) {
+      throw new IllegalArgumentException("@doBody is required (layoutViewName=" + layoutViewName + ")");
+    }
+  }
+
+  // @return the number of @doBody lines
+  static int addSegments(List<String> source, List<Segment> segments, String layoutViewName) {
+    var doBody = 0;
+    for (String line : source) {
+      var flags = DirectiveLexer.classify(line);
+
+      if ((flags & DirectiveLexer.DO_BODY) != 0) {
+        segments.add(new Segment(BODY, ViewSourceUtils.copyIndent(line)));
+        doBody++;
+
+      } else if ((flags & DirectiveLexer.SECTION_HOLDER) != 0) {
+        segments.add(new Segment(SECTION, line));
+
+      } else if (line.indexOf("@(") >= 0) {
+        segments.add(new Segment(VARIABLE, line));
+
+      } else {
+        segments.add(new Segment(LITERAL, line));
+      }
+    }
+    return doBody;
+  }
+
+  /**
+   * Composes this layout into its parent layout. The body of this layout fills the @doBody slot of the parent and its
+   * sections fill the parent section slots, the slots left are filled by the views. The result is kept until the parent
+   * template changes, so a chain is composed once however many views use it.
+   *
+   * @param parent
+   *          the parent layout, already composed
+   */
+  public synchronized LayoutTemplate extend(LayoutTemplate parent, Path parentPath) {
+    if (this.extended != null && this.extendedParent == parent) {
+      return this.extended;
+    }
+    List<Segment> segments = new ArrayList<>(parent.segments.size() + this.segments.size());
+    var doBody = 0;
+
+    for (Segment segment : parent.segments) {
+      if (segment.type == BODY) {
+        segments.addAll(this.segments);
+
+      } else if (segment.type == SECTION) {
+        var sectionName = segment.value.substring(segment.value.indexOf("@") + 1, segment.value.indexOf("-->")).strip();
+        if (sectionName.endsWith("?")) {
+          sectionName = sectionName.substring(0, sectionName.length() - 1);
+        }
+
+        var sectionSegments = this.sections.get(sectionName);
+        if (sectionSegments != null) {
+          segments.add(new Segment(LITERAL, "<!-- @" + sectionName + " begin -->"));
+          segments.addAll(sectionSegments);
+          segments.add(new Segment(LITERAL, "<!-- @" + sectionName + " end -->"));
+        } else {
+          segments.add(segment);
+        }
+      } else {
+        segments.add(segment);
+      }
+    }
+    for (Segment segment : segments) {
+      if (segment.type == BODY) {
+        doBody++;
+      }
+    }
+    if (!parent.handledPerView) {
+      checkDoBody(doBody, this.layoutViewName);
+    }
+
+    // Variables: the parent ones, overridden by this layout
+    Map<String, String> variables = new LinkedHashMap<>(parent.variables);
+    variables.putAll(this.variables);
+
+    List<Path> variablesFiles = new ArrayList<>(parent.variablesFiles);
+    for (Path variablesFile : this.variablesFiles) {
+      if (!variablesFiles.contains(variablesFile)) {
+        variablesFiles.add(variablesFile);
+      }
+    }
+    List<Path> layoutFiles = new ArrayList<>(parent.layoutFiles.size() + 1);
+    layoutFiles.add(parentPath);
+    layoutFiles.addAll(parent.layoutFiles);
+
+    this.extended = new LayoutTemplate(this.layoutViewName, variables, variablesFiles, segments,
+        this.removeBlankLines, segments.size(), null, Collections.emptyMap(), layoutFiles, parent.handledPerView);
+    this.extendedParent = parent;
+    return this.extended;
+  }
+
+  /**
+   * Fills the slots of this layout for the given view.
+   *
+   * @param variables
+   *          the variables of this layout merged with the view variables
+   */
+  public List<String> render(VariableResolver variables, List<String> viewSource, String viewName,
+      Map<String, List<String>> sections, ViewSourceHandler handler) {
+    if (!this.handledPerView) {
+      var result = render(this.segments, variables, viewSource, viewName, sections, handler);
+      if (result != null) {
+        return result;
+      }
+    }
+    // The replaced lines are handled: the variables are replaced already
+    return render(resolve(variables, handler), null, viewSource, viewName, sections, handler);
+  }
+
+  // @return null if a replaced line needs the handler
+  List<String> render(List<Segment> segments, VariableResolver variables, List<String> viewSource, String viewName,
+      Map<String, List<String>> sections, ViewSourceHandler handler) {
+    List<String> result = new LineBuffer(this.lineCount + viewSource.size());
+
+    for (Segment segment : segments) {
+      switch (segment.type) {
+      case LITERAL:
+        result.add(segment.value);
+        break;
+
+      case VARIABLE:
+        if (variables == null) {
+          result.add(segment.value);
+          break;
+        }
+        var line = variables.resolve(segment.value);
+        if (needsHandler(line)) {
+          return null;
+        }
+        if (!this.removeBlankLines || !DirectiveLexer.isBlank(line)) {
+          result.add(line);
+        }
+        break;
+
+      case BODY:
+        List<String> body = new LineBuffer();
+        handler.insertBody(body, 0, segment.value, viewSource, ViewUtils.getInclViewName(viewName));
+
+        for (String bodyLine : body) {
+          if (DirectiveLexer.is(bodyLine, DirectiveLexer.DO_BODY)) {
+            throw new IllegalArgumentException("@doBody is duplicated (layoutViewName=" + this.layoutViewName + ")");
+          }
+        }
+        // An inlined body can have section holders
+        ViewSourceUtils.replaceSections(body, viewName, sections, result);
+        break;
+
+      default:
+        ViewSourceUtils.replaceSections(Collections.singletonList(segment.value), viewName, sections, result);
+        break;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return true if the rendered source of this layout is handled per view for the given variables
+   */
+  public boolean isHandledPerView(VariableResolver variables) {
+    if (this.handledPerView) {
+      return true;
+    }
+    for (Segment segment : this.segments) {
+      if ((segment.type == VARIABLE) && needsHandler(variables.resolve(segment.value))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  static boolean needsHandler(String line) {
+    return (DirectiveLexer.classify(line) & HANDLED_LINES) != 0;
+  }
+
+  // The variables replaced, then handled like an uncompiled layout
+  List<Segment> resolve(VariableResolver variables, ViewSourceHandler handler) {
+    List<String> source = new ArrayList<>(this.lineCount);
+
+    for (Segment segment : this.segments) {
+      switch (segment.type) {
+      case VARIABLE:
+        var line = variables.resolve(segment.value);
+        if (!this.removeBlankLines || !DirectiveLexer.isBlank(line)) {
+          source.add(line);
+        }
+        break;
+
+      case BODY:
+        source.add(segment.value + "<!-- @doBody -->");
+        break;
+
+      default:
+        source.add(segment.value);
+        break;
+      }
+    }
+    handler.handleSource(source, this.layoutViewName, true);
+
+    List<Segment> segments = new ArrayList<>(source.size());
+    checkDoBody(addSegments(source, segments, this.layoutViewName), this.layoutViewName);
+    return segments;
+  }
+
+  static class Segment {
+    final int type;
+    final String value;
+
+    Segment(int type, String value) {
+      this.type = type;
+      this.value = value;
+    }
+  }
+}
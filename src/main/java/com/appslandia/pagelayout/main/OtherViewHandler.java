@@ -45,4 +45,9 @@ public class OtherViewHandler extends ViewSourceHandler {
   @Override
   public void handleSource(List<String> source, String sourceView, boolean layoutSource) {
   }
+
+  @Override
+  public byte[][] getSourceMarkers() {
+    return NO_MARKERS;
+  }
 }
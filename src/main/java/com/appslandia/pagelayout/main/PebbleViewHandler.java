@@ -29,14 +29,28 @@ import java.util.List;
  */
 public class PebbleViewHandler extends ViewSourceHandler {
 
+  final boolean inlineBody;
+
+  public PebbleViewHandler() {
+    this(false);
+  }
+
+  public PebbleViewHandler(boolean inlineBody) {
+    this.inlineBody = inlineBody;
+  }
+
   @Override
   public boolean incViewFile() {
-    return true;
+    return !this.inlineBody;
   }
 
   @Override
   public void insertBody(List<String> layoutSource, int bodyPos, String bodyIndent, List<String> bodySource,
       String incViewFile) {
+    if (this.inlineBody) {
+      spliceBody(layoutSource, bodyPos, bodyIndent, bodySource);
+      return;
+    }
     layoutSource.add(bodyPos, bodyIndent + "<!-- @doBody begin -->");
     layoutSource.add(bodyPos + 1, bodyIndent + "{% include \"" + incViewFile + "\" %}");
     layoutSource.add(bodyPos + 2, bodyIndent + "<!-- @doBody end -->");
@@ -45,4 +59,14 @@ public class PebbleViewHandler extends ViewSourceHandler {
   @Override
   public void handleSource(List<String> source, String sourceView, boolean layoutSource) {
   }
+
+  @Override
+  public byte[][] getSourceMarkers() {
+    return NO_MARKERS;
+  }
+
+  @Override
+  public ViewSourceHandler inlineBody() {
+    return this.inlineBody ? this : new PebbleViewHandler(true);
+  }
 }
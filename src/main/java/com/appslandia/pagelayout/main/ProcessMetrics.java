@@ -0,0 +1,316 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.main;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.appslandia.pagelayout.utils.FileCache;
+
+/**
+ * Timings of one {@link ViewProcessor#process()} run: the time and count of each phase, the slowest views and the
+ * cache hits. The phase times of the threads are summed, so they can exceed the wall time.
+ *
+ * @author Loc Ha
+ *
+ */
+public class ProcessMetrics {
+
+  public enum Phase {
+    SCAN("scan"), UP_TO_DATE("up-to-date check"), MARKER_SCAN("marker scan"), LOAD("load"), LAYOUT("layout"),
+    PARSE_VARIABLES("variable parse"), REPLACE_VARIABLES("variable replace"), HANDLE_SOURCE("handleSource"),
+    PARSE_SECTIONS("section parse"), RENDER("layout fill"), MINIFY("minify"), SAVE("save"),
+    COPY("copy"), GZIP("gzip");
+
+    final String label;
+
+    Phase(String label) {
+      this.label = label;
+    }
+
+    public String getLabel() {
+      return this.label;
+    }
+  }
+
+  final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+  final LongAdder[] phaseCounts = new LongAdder[Phase.values().length];
+
+  final LongAdder files = new LongAdder();
+  final LongAdder views = new LongAdder();
+
+  final int slowestViewCount;
+  final PriorityQueue<ViewTime> slowestViews;
+
+  final List<CacheMetrics> caches = new ArrayList<>();
+  final long startNanos = System.nanoTime();
+  long wallNanos;
+
+  public ProcessMetrics(int slowestViewCount) {
+    this.slowestViewCount = slowestViewCount;
+    this.slowestViews = new PriorityQueue<>(Math.max(slowestViewCount, 1), Comparator.comparingLong(v -> v.nanos));
+
+    for (var i = 0; i < this.phaseNanos.length; i++) {
+      this.phaseNanos[i] = new LongAdder();
+      this.phaseCounts[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Adds the time from startNanos to now to the given phase.
+   *
+   * @return now, the start of the next phase
+   */
+  public long add(Phase phase, long startNanos) {
+    var now = System.nanoTime();
+    this.phaseNanos[phase.ordinal()].add(now - startNanos);
+    this.phaseCounts[phase.ordinal()].increment();
+    return now;
+  }
+
+  void fileProcessed() {
+    this.files.increment();
+  }
+
+  void viewProcessed(String viewName, long nanos) {
+    this.views.increment();
+    if (this.slowestViewCount <= 0) {
+      return;
+    }
+    synchronized (this.slowestViews) {
+      if (this.slowestViews.size() < this.slowestViewCount) {
+        this.slowestViews.add(new ViewTime(viewName, nanos));
+
+      } else if (this.slowestViews.peek().nanos < nanos) {
+        this.slowestViews.poll();
+        this.slowestViews.add(new ViewTime(viewName, nanos));
+      }
+    }
+  }
+
+  // The counters of a cache shared by the runs: counted from the start of this run
+  CacheMetrics cacheStart(String name, FileCache<?> cache) {
+    var metrics = new CacheMetrics(name, cache.getHits(), cache.getMisses());
+    this.caches.add(metrics);
+    return metrics;
+  }
+
+  void cacheEnd(CacheMetrics metrics, FileCache<?> cache) {
+    metrics.hits = cache.getHits() - metrics.hits;
+    metrics.misses = cache.getMisses() - metrics.misses;
+  }
+
+  void finish() {
+    this.wallNanos = System.nanoTime() - this.startNanos;
+  }
+
+  public long getNanos(Phase phase) {
+    return this.phaseNanos[phase.ordinal()].sum();
+  }
+
+  public long getCount(Phase phase) {
+    return this.phaseCounts[phase.ordinal()].sum();
+  }
+
+  public long getFiles() {
+    return this.files.sum();
+  }
+
+  public long getViews() {
+    return this.views.sum();
+  }
+
+  public long getWallNanos() {
+    return this.wallNanos;
+  }
+
+  public double getFilesPerSecond() {
+    return (this.wallNanos == 0) ? 0 : getFiles() / (this.wallNanos / 1e9);
+  }
+
+  /**
+   * The slowest views, the slowest first.
+   */
+  public List<ViewTime> getSlowestViews() {
+    List<ViewTime> list;
+    synchronized (this.slowestViews) {
+      list = new ArrayList<>(this.slowestViews);
+    }
+    list.sort(Comparator.comparingLong((ViewTime v) -> v.nanos).reversed());
+    return list;
+  }
+
+  public List<CacheMetrics> getCaches() {
+    return Collections.unmodifiableList(this.caches);
+  }
+
+  public List<String> toSummary() {
+    List<String> lines = new ArrayList<>();
+    var phasesNanos = 0L;
+    for (Phase phase : Phase.values()) {
+      phasesNanos += getNanos(phase);
+    }
+
+    lines.add(String.format(Locale.ROOT, "%-18s %10s %12s %12s %7s", "Phase", "Count", "Total ms", "Avg us", "%"));
+    for (Phase phase : Phase.values()) {
+      var count = getCount(phase);
+      if (count == 0) {
+        continue;
+      }
+      var nanos = getNanos(phase);
+      lines.add(String.format(Locale.ROOT, "%-18s %10d %12.1f %12.1f %7.1f", phase.label, count, nanos / 1e6,
+          nanos / 1e3 / count, (phasesNanos == 0) ? 0.0 : nanos * 100.0 / phasesNanos));
+    }
+
+    lines.add(String.format(Locale.ROOT, "Wall time: %.1f ms, files: %d, views: %d, files/s: %.0f", this.wallNanos / 1e6,
+        getFiles(), getViews(), getFilesPerSecond()));
+
+    for (CacheMetrics cache : this.caches) {
+      lines.add(String.format(Locale.ROOT, "Cache %s: hits=%d, misses=%d, hit rate=%.1f%%", cache.name, cache.hits,
+          cache.misses, cache.getHitRate() * 100));
+    }
+
+    var slowest = getSlowestViews();
+    if (!slowest.isEmpty()) {
+      lines.add("Slowest views:");
+      for (ViewTime view : slowest) {
+        lines.add(String.format(Locale.ROOT, "%10.2f ms  %s", view.nanos / 1e6, view.viewName));
+      }
+    }
+    return lines;
+  }
+
+  public String toJson(ProcessStats stats) {
+    var sb = new StringBuilder();
+    sb.append("{\n");
+    sb.append("  \"wallMillis\": ").append(toMillis(this.wallNanos)).append(",\n");
+    sb.append("  \"files\": ").append(getFiles()).append(",\n");
+    sb.append("  \"views\": ").append(getViews()).append(",\n");
+    sb.append("  \"filesPerSecond\": ").append(String.format(Locale.ROOT, "%.1f", getFilesPerSecond())).append(",\n");
+
+    sb.append("  \"output\": { \"written\": ").append(stats.getWrittenFiles()).append(", \"unchanged\": ")
+        .append(stats.getUnchangedFiles()).append(", \"deleted\": ").append(stats.getDeletedFiles())
+        .append(", \"writtenBytes\": ").append(stats.getWrittenBytes()).append(" },\n");
+
+    sb.append("  \"phases\": [");
+    var first = true;
+    for (Phase phase : Phase.values()) {
+      sb.append(first ? "\n" : ",\n");
+      sb.append("    { \"name\": \"").append(phase.name()).append("\", \"count\": ").append(getCount(phase))
+          .append(", \"millis\": ").append(toMillis(getNanos(phase))).append(" }");
+      first = false;
+    }
+    sb.append("\n  ],\n");
+
+    sb.append("  \"caches\": [");
+    first = true;
+    for (CacheMetrics cache : this.caches) {
+      sb.append(first ? "\n" : ",\n");
+      sb.append("    { \"name\": \"").append(cache.name).append("\", \"hits\": ").append(cache.hits)
+          .append(", \"misses\": ").append(cache.misses).append(" }");
+      first = false;
+    }
+    sb.append(first ? "],\n" : "\n  ],\n");
+
+    sb.append("  \"slowestViews\": [");
+    first = true;
+    for (ViewTime view : getSlowestViews()) {
+      sb.append(first ? "\n" : ",\n");
+      sb.append("    { \"view\": \"").append(escapeJson(view.viewName)).append("\", \"millis\": ")
+          .append(toMillis(view.nanos)).append(" }");
+      first = false;
+    }
+    sb.append(first ? "]\n" : "\n  ]\n");
+    sb.append("}\n");
+    return sb.toString();
+  }
+
+  static String toMillis(long nanos) {
+    return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+  }
+
+  static String escapeJson(String str) {
+    var sb = new StringBuilder(str.length());
+    for (var i = 0; i < str.length(); i++) {
+      var ch = str.charAt(i);
+      if (ch == '"' || ch == '\\') {
+        sb.append('\\').append(ch);
+      } else if (ch < 0x20) {
+        sb.append(String.format(Locale.ROOT, "\\u%04x", (int) ch));
+      } else {
+        sb.append(ch);
+      }
+    }
+    return sb.toString();
+  }
+
+  public static class ViewTime {
+    final String viewName;
+    final long nanos;
+
+    ViewTime(String viewName, long nanos) {
+      this.viewName = viewName;
+      this.nanos = nanos;
+    }
+
+    public String getViewName() {
+      return this.viewName;
+    }
+
+    public long getNanos() {
+      return this.nanos;
+    }
+  }
+
+  public static class CacheMetrics {
+    final String name;
+    long hits;
+    long misses;
+
+    CacheMetrics(String name, long hits, long misses) {
+      this.name = name;
+      this.hits = hits;
+      this.misses = misses;
+    }
+
+    public String getName() {
+      return this.name;
+    }
+
+    public long getHits() {
+      return this.hits;
+    }
+
+    public long getMisses() {
+      return this.misses;
+    }
+
+    public double getHitRate() {
+      var total = this.hits + this.misses;
+      return (total == 0) ? 0 : (double) this.hits / total;
+    }
+  }
+}
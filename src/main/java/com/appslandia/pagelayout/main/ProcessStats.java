@@ -0,0 +1,78 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.main;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Output counters of one {@link ViewProcessor#process()} run.
+ *
+ * @author Loc Ha
+ *
+ */
+public class ProcessStats {
+
+  final LongAdder writtenFiles = new LongAdder();
+  final LongAdder unchangedFiles = new LongAdder();
+  final LongAdder deletedFiles = new LongAdder();
+
+  final LongAdder writtenBytes = new LongAdder();
+  final Map<Path, Long> fileBytes = new ConcurrentSkipListMap<>();
+
+  void written(Path file, long bytes) {
+    this.writtenFiles.increment();
+    this.writtenBytes.add(bytes);
+    this.fileBytes.put(file, bytes);
+  }
+
+  public long getWrittenFiles() {
+    return this.writtenFiles.sum();
+  }
+
+  public long getUnchangedFiles() {
+    return this.unchangedFiles.sum();
+  }
+
+  public long getDeletedFiles() {
+    return this.deletedFiles.sum();
+  }
+
+  public long getWrittenBytes() {
+    return this.writtenBytes.sum();
+  }
+
+  /**
+   * Bytes written per output file, sorted by path.
+   */
+  public Map<Path, Long> getFileBytes() {
+    return Collections.unmodifiableMap(this.fileBytes);
+  }
+
+  @Override
+  public String toString() {
+    return "written=" + getWrittenFiles() + ", unchanged=" + getUnchangedFiles() + ", deleted=" + getDeletedFiles()
+        + ", bytes=" + getWrittenBytes();
+  }
+}
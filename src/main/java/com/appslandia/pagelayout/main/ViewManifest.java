@@ -0,0 +1,304 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.main;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.appslandia.pagelayout.utils.FileNameUtils;
+import com.appslandia.pagelayout.utils.FileUtils;
+
+/**
+ * Keeps the input fingerprints and the outputs/dependencies of every processed source between two runs.
+ *
+ * <p>
+ * Input keys are relative to the input views directory, output keys are relative to the output views directory.
+ * </p>
+ *
+ * @author Loc Ha
+ *
+ */
+public class ViewManifest {
+
+  static final String HEADER = "# appslandia-page-layout manifest v1";
+
+  final Path inViewsPath;
+  final Path outViewsPath;
+  final String options;
+
+  boolean loaded;
+
+  final Map<String, FileStamp> prevStamps = new HashMap<>();
+  final Map<String, Entry> prevEntries = new HashMap<>();
+
+  // Updated concurrently when the views are processed in parallel
+  final Map<String, FileStamp> stamps = new ConcurrentHashMap<>();
+  final Map<String, Entry> entries = new ConcurrentSkipListMap<>();
+
+  public ViewManifest(Path inViewsPath, Path outViewsPath, String options) {
+    this.inViewsPath = inViewsPath;
+    this.outViewsPath = outViewsPath;
+    this.options = options;
+  }
+
+  public boolean isLoaded() {
+    return this.loaded;
+  }
+
+  /**
+   * Creates a manifest whose previous state is the current state of this manifest.
+   */
+  public ViewManifest next() {
+    var next = new ViewManifest(this.inViewsPath, this.outViewsPath, this.options);
+    next.prevStamps.putAll(this.stamps);
+    next.prevEntries.putAll(this.entries);
+    next.loaded = true;
+    return next;
+  }
+
+  public Set<String> getPrevSources() {
+    return this.prevEntries.keySet();
+  }
+
+  public List<String> getPrevDependencies(String sourceKey) {
+    return this.prevEntries.get(sourceKey).dependencies;
+  }
+
+  public String toInputKey(Path file) {
+    return FileNameUtils.toUnixPath(this.inViewsPath.relativize(file).toString());
+  }
+
+  public String toOutputKey(Path file) {
+    return FileNameUtils.toUnixPath(this.outViewsPath.relativize(file).toString());
+  }
+
+  public FileStamp stamp(Path file) throws IOException {
+    var key = toInputKey(file);
+    var stamp = this.stamps.get(key);
+    if (stamp != null) {
+      return stamp;
+    }
+
+    var attrs = Files.readAttributes(file, BasicFileAttributes.class);
+    var size = attrs.size();
+    var lastModified = attrs.lastModifiedTime().toMillis();
+
+    // Same size & lastModified -> Reuse the previous hash
+    var prev = this.prevStamps.get(key);
+    var hash = (prev != null && prev.size == size && prev.lastModified == lastModified) ? prev.hash
+        : FileUtils.sha256(file);
+
+    stamp = new FileStamp(size, lastModified, hash);
+    var existing = this.stamps.putIfAbsent(key, stamp);
+    return (existing != null) ? existing : stamp;
+  }
+
+  public boolean isUpToDate(Path sourceFile) throws IOException {
+    var key = toInputKey(sourceFile);
+    var prevEntry = this.prevEntries.get(key);
+    if (prevEntry == null || !isUnchanged(key, sourceFile)) {
+      return false;
+    }
+    for (String dep : prevEntry.dependencies) {
+      if (!isUnchanged(dep, this.inViewsPath.resolve(dep))) {
+        return false;
+      }
+    }
+    for (String output : prevEntry.outputs) {
+      if (!Files.exists(this.outViewsPath.resolve(output))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  boolean isUnchanged(String key, Path file) throws IOException {
+    var prev = this.prevStamps.get(key);
+    if (prev == null) {
+      return false;
+    }
+    try {
+      return stamp(file).hash.equals(prev.hash);
+    } catch (NoSuchFileException ex) {
+      return false;
+    }
+  }
+
+  public List<Path> keepEntry(Path sourceFile) {
+    var key = toInputKey(sourceFile);
+    var prevEntry = this.prevEntries.get(key);
+    this.entries.put(key, prevEntry);
+
+    keepStamp(key);
+    prevEntry.dependencies.forEach(this::keepStamp);
+
+    List<Path> outputs = new ArrayList<>(prevEntry.outputs.size());
+    prevEntry.outputs.forEach(o -> outputs.add(this.outViewsPath.resolve(o)));
+    return outputs;
+  }
+
+  void keepStamp(String key) {
+    var prev = this.prevStamps.get(key);
+    if (prev != null) {
+      this.stamps.putIfAbsent(key, prev);
+    }
+  }
+
+  public void putEntry(Path sourceFile, List<Path> outputs, List<Path> dependencies) throws IOException {
+    stamp(sourceFile);
+
+    var entry = new Entry();
+    for (Path output : outputs) {
+      entry.outputs.add(toOutputKey(output));
+    }
+    for (Path dep : dependencies) {
+      stamp(dep);
+      entry.dependencies.add(toInputKey(dep));
+    }
+    this.entries.put(toInputKey(sourceFile), entry);
+  }
+
+  public List<Path> getStaleOutputs() {
+    Set<String> outputs = new HashSet<>();
+    this.entries.values().forEach(e -> outputs.addAll(e.outputs));
+
+    List<Path> staleOutputs = new ArrayList<>();
+    for (Entry prevEntry : this.prevEntries.values()) {
+      for (String output : prevEntry.outputs) {
+        if (outputs.add(output)) {
+          staleOutputs.add(this.outViewsPath.resolve(output));
+        }
+      }
+    }
+    return staleOutputs;
+  }
+
+  public void load(Path manifestFile) throws IOException {
+    if (!Files.exists(manifestFile)) {
+      return;
+    }
+    var lines = Files.readAllLines(manifestFile, StandardCharsets.UTF_8);
+    if (lines.size() < 2 || !HEADER.equals(lines.get(0)) || !("options=" + this.options).equals(lines.get(1))) {
+      return;
+    }
+
+    // Corrupted or partially written -> Full build
+    if (!parse(lines)) {
+      this.prevStamps.clear();
+      this.prevEntries.clear();
+      return;
+    }
+    this.loaded = true;
+  }
+
+  boolean parse(List<String> lines) {
+    Entry entry = null;
+    for (var i = 2; i < lines.size(); i++) {
+      var line = lines.get(i);
+      if (line.isEmpty()) {
+        continue;
+      }
+      var items = line.split("\t");
+      switch (items[0]) {
+      case "S":
+        if (items.length != 5) {
+          return false;
+        }
+        try {
+          this.prevStamps.put(items[4], new FileStamp(Long.parseLong(items[1]), Long.parseLong(items[2]), items[3]));
+        } catch (NumberFormatException ex) {
+          return false;
+        }
+        break;
+      case "E":
+        if (items.length != 2) {
+          return false;
+        }
+        entry = new Entry();
+        this.prevEntries.put(items[1], entry);
+        break;
+      case "O":
+        if (entry == null || items.length != 2) {
+          return false;
+        }
+        entry.outputs.add(items[1]);
+        break;
+      case "D":
+        if (entry == null || items.length != 2) {
+          return false;
+        }
+        entry.dependencies.add(items[1]);
+        break;
+      default:
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public void save(Path manifestFile) throws IOException {
+    List<String> lines = new ArrayList<>();
+    lines.add(HEADER);
+    lines.add("options=" + this.options);
+
+    new TreeMap<>(this.stamps).forEach((key, stamp) -> {
+      lines.add("S\t" + stamp.size + "\t" + stamp.lastModified + "\t" + stamp.hash + "\t" + key);
+    });
+    this.entries.forEach((key, entry) -> {
+      lines.add("E\t" + key);
+      entry.outputs.forEach(o -> lines.add("O\t" + o));
+      entry.dependencies.forEach(d -> lines.add("D\t" + d));
+    });
+
+    Files.createDirectories(manifestFile.toAbsolutePath().getParent());
+    Files.write(manifestFile, lines, StandardCharsets.UTF_8);
+  }
+
+  public static class FileStamp {
+    final long size;
+    final long lastModified;
+    final String hash;
+
+    public FileStamp(long size, long lastModified, String hash) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.hash = hash;
+    }
+  }
+
+  static class Entry {
+    final List<String> outputs = new ArrayList<>();
+    final List<String> dependencies = new ArrayList<>();
+  }
+}
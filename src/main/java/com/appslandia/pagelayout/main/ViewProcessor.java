@@ -20,26 +20,51 @@
 
 package com.appslandia.pagelayout.main;
 
-import java.io.File;
 import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
 
+import com.appslandia.pagelayout.jfr.OutputWriteEvent;
+import com.appslandia.pagelayout.jfr.ViewProcessedEvent;
+import com.appslandia.pagelayout.main.ProcessMetrics.Phase;
 import com.appslandia.pagelayout.utils.Arguments;
 import com.appslandia.pagelayout.utils.FileNameUtils;
+import com.appslandia.pagelayout.utils.FileCache;
+import com.appslandia.pagelayout.utils.FileCache.FileStamp;
+import com.appslandia.pagelayout.utils.FileScanner;
 import com.appslandia.pagelayout.utils.FileUtils;
+import com.appslandia.pagelayout.utils.GzipFiles;
+import com.appslandia.pagelayout.utils.MarkerScanner;
+import com.appslandia.pagelayout.utils.MarkupMinifier;
+import com.appslandia.pagelayout.utils.MemorySourceFiles;
+import com.appslandia.pagelayout.utils.SourceEncoder;
+import com.appslandia.pagelayout.utils.SourceFiles;
+import com.appslandia.pagelayout.utils.StringUtils;
+import com.appslandia.pagelayout.utils.VariableResolver;
 import com.appslandia.pagelayout.utils.ViewSourceUtils;
 import com.appslandia.pagelayout.utils.ViewUtils;
 
@@ -50,13 +75,61 @@ import com.appslandia.pagelayout.utils.ViewUtils;
  */
 public class ViewProcessor {
 
+  public static final int DEFAULT_CACHE_SIZE = 256;
+  public static final int DEFAULT_STREAM_BUFFER_SIZE = 64 * 1024;
+  public static final String DEFAULT_VIEW_SUFFIXES = ".jsp,.jspx,.xhtml,.peb";
+  public static final String DEFAULT_GZIP_SUFFIXES = ".css,.js,.svg,.json";
+  public static final int DEFAULT_GZIP_MIN_SIZE = 1024;
+
   private String inputViewsDir = "/WEB-INF/__views";
   private String outputViewsDir = "views";
   private String configDir = "__config";
 
-  private String viewSuffixes = ".jsp,.jspx,.xhtml,.peb";
+  private String viewSuffixes = DEFAULT_VIEW_SUFFIXES;
+  private Set<String> viewExtensions = toViewExtensions(DEFAULT_VIEW_SUFFIXES);
+  private List<String> otherViewSuffixes = toOtherViewSuffixes(DEFAULT_VIEW_SUFFIXES);
+
+  private List<String> includes = Collections.emptyList();
+  private List<String> excludes = Collections.emptyList();
+  private int scanThreads = 1;
+
   private boolean removeBlankLines;
   private boolean debugVariables;
+  private boolean passthrough = true;
+  private boolean inlineBody;
+  private List<String> minifySuffixes = Collections.emptyList();
+  private boolean streaming;
+  private int streamBufferSize = DEFAULT_STREAM_BUFFER_SIZE;
+
+  private boolean incremental;
+  private String manifestFile;
+
+  private int threads = 1;
+  private boolean writeIfChanged;
+  private String lineSeparator = "\n";
+  private CopyStrategy copyStrategy = CopyStrategy.COPY_IF_CHANGED;
+
+  private boolean gzip;
+  private int gzipLevel = Deflater.BEST_COMPRESSION;
+  private int gzipMinSize = DEFAULT_GZIP_MIN_SIZE;
+  private List<String> gzipSuffixes = toList(DEFAULT_GZIP_SUFFIXES);
+
+  private FileCache<LayoutTemplate> layoutCache = newLayoutCache(DEFAULT_CACHE_SIZE);
+  private FileCache<Map<String, String>> variablesCache = newFileCache(DEFAULT_CACHE_SIZE);
+
+  private MemorySourceFiles memorySources;
+  private final Map<ViewSourceHandler, MarkerScanner> markerScanners = new ConcurrentHashMap<>();
+  private final Map<ViewSourceHandler, ViewSourceHandler> inlineHandlers = new ConcurrentHashMap<>();
+
+  private String cacheFile;
+  private boolean cacheFileLoaded;
+  private long cacheFileMisses;
+
+  private int slowestViews = 10;
+
+  private ProcessStats stats = new ProcessStats();
+  private ProcessMetrics metrics = new ProcessMetrics(0);
+  private ProcessContext lastContext;
 
   public ViewProcessor inputViewsDir(String inputViewsDir) {
     this.inputViewsDir = FileNameUtils.toUnixPath(inputViewsDir);
@@ -75,10 +148,50 @@ public class ViewProcessor {
 
   public ViewProcessor viewSuffixes(String viewSuffixes) {
     this.viewSuffixes = viewSuffixes;
+    this.viewExtensions = toViewExtensions(viewSuffixes);
+    this.otherViewSuffixes = toOtherViewSuffixes(viewSuffixes);
     return this;
   }
 
+  /**
+   * Comma separated globs of the files to process, relative to the input views directory; all files by default.
+   */
+  public ViewProcessor includes(String includes) {
+    this.includes = toList(includes);
+    return this;
+  }
+
+  /**
+   * Comma separated globs of the files & directories to skip, relative to the input views directory, e.g.
+   * <code>&#42;&#42;/node_modules</code>.
+   */
+  public ViewProcessor excludes(String excludes) {
+    this.excludes = toList(excludes);
+    return this;
+  }
+
+  /**
+   * Number of threads scanning the input views directory; {@code 0} uses all available processors.
+   */
+  public ViewProcessor scanThreads(int scanThreads) {
+    Arguments.isTrue(scanThreads >= 0, "scanThreads must be >= 0");
+    this.scanThreads = scanThreads;
+    return this;
+  }
+
+  static List<String> toList(String values) {
+    if (values == null) {
+      return Collections.emptyList();
+    }
+    return Arrays.stream(values.split(",")).map(String::strip).filter(v -> !v.isEmpty())
+        .collect(Collectors.toUnmodifiableList());
+  }
+
   public ViewProcessor removeBlankLines(boolean removeBlankLines) {
+    // The compiled layouts depend on it
+    if (this.removeBlankLines != removeBlankLines) {
+      this.layoutCache.clear();
+    }
     this.removeBlankLines = removeBlankLines;
     return this;
   }
@@ -88,9 +201,255 @@ public class ViewProcessor {
     return this;
   }
 
+  /**
+   * Writes the views without directive, variable holder nor handler marker as is, without decoding them; on by
+   * default. Only used with the {@code "\n"} line separator, when no blank line is removed & no variable is debugged.
+   */
+  public ViewProcessor passthrough(boolean passthrough) {
+    this.passthrough = passthrough;
+    return this;
+  }
+
+  /**
+   * Splices the view body into the layout instead of writing the {@code _inc} file and including it, for the JSP,
+   * Facelets & Pebble views; off by default. See {@link ViewSourceHandler#inlineBody()}.
+   */
+  public ViewProcessor inlineBody(boolean inlineBody) {
+    this.inlineBody = inlineBody;
+    return this;
+  }
+
+  /**
+   * Comma separated suffixes of the views whose outputs are minified after the layout is filled, see
+   * {@link MarkupMinifier}; none by default.
+   */
+  public ViewProcessor minifySuffixes(String minifySuffixes) {
+    this.minifySuffixes = toList(minifySuffixes);
+    return this;
+  }
+
+  /**
+   * Streams the views larger than the stream buffer instead of loading them, see {@link ViewStreamer}; off by default.
+   * Not used for the output sinks & in-memory sources, nor for the views of a custom handler or whose body is changed
+   * when spliced.
+   */
+  public ViewProcessor streaming(boolean streaming) {
+    this.streaming = streaming;
+    return this;
+  }
+
+  /**
+   * Size of the buffers of a streamed view, {@code 64 KiB} by default.
+   */
+  public ViewProcessor streamBufferSize(int streamBufferSize) {
+    Arguments.isTrue(streamBufferSize > 0, "streamBufferSize must be > 0");
+    this.streamBufferSize = streamBufferSize;
+    return this;
+  }
+
+  public ViewProcessor incremental(boolean incremental) {
+    this.incremental = incremental;
+    return this;
+  }
+
+  public ViewProcessor manifestFile(String manifestFile) {
+    this.manifestFile = FileNameUtils.toUnixPath(manifestFile);
+    return this;
+  }
+
+  /**
+   * Number of threads used to process the views; {@code 0} uses all available processors.
+   */
+  public ViewProcessor threads(int threads) {
+    Arguments.isTrue(threads >= 0, "threads must be >= 0");
+    this.threads = threads;
+    return this;
+  }
+
+  public ViewProcessor writeIfChanged(boolean writeIfChanged) {
+    this.writeIfChanged = writeIfChanged;
+    return this;
+  }
+
+  /**
+   * Separator written between the output lines, {@code "\n"} by default so that the output does not depend on the
+   * platform.
+   */
+  public ViewProcessor lineSeparator(String lineSeparator) {
+    Arguments.notNull(lineSeparator);
+    this.lineSeparator = lineSeparator;
+    return this;
+  }
+
+  /**
+   * How the non-view files are written, {@link CopyStrategy#COPY_IF_CHANGED} by default.
+   */
+  public ViewProcessor copyStrategy(CopyStrategy copyStrategy) {
+    this.copyStrategy = Arguments.notNull(copyStrategy);
+    return this;
+  }
+
+  /**
+   * Writes a {@code .gz} sidecar next to the copied files of the gzip suffixes, for the server to serve precompressed
+   * bytes; off by default. A sidecar is written again only if the hash of its source or the level changed. The sidecars
+   * are compressed with the {@code threads} once the files are processed. Not used for the output sinks.
+   */
+  public ViewProcessor gzip(boolean gzip) {
+    this.gzip = gzip;
+    return this;
+  }
+
+  /**
+   * {@link Deflater} level of the sidecars, from {@code 1} to {@code 9}; {@code 9} by default.
+   */
+  public ViewProcessor gzipLevel(int gzipLevel) {
+    Arguments.isTrue(gzipLevel >= Deflater.BEST_SPEED && gzipLevel <= Deflater.BEST_COMPRESSION,
+        "gzipLevel must be in [1, 9]");
+    this.gzipLevel = gzipLevel;
+    return this;
+  }
+
+  /**
+   * Minimum size of the files to compress, in bytes; {@code 1024} by default.
+   */
+  public ViewProcessor gzipMinSize(int gzipMinSize) {
+    Arguments.isTrue(gzipMinSize >= 0, "gzipMinSize must be >= 0");
+    this.gzipMinSize = gzipMinSize;
+    return this;
+  }
+
+  /**
+   * Comma separated suffixes of the files to compress; {@code .css,.js,.svg,.json} by default.
+   */
+  public ViewProcessor gzipSuffixes(String gzipSuffixes) {
+    this.gzipSuffixes = toList(gzipSuffixes);
+    return this;
+  }
+
+  /**
+   * Maximum number of layouts, and of variables files, kept in memory between the processed views and runs.
+   */
+  public ViewProcessor cacheSize(int cacheSize) {
+    Arguments.isTrue(cacheSize > 0, "cacheSize must be > 0");
+    this.layoutCache = newLayoutCache(cacheSize);
+    this.variablesCache = newFileCache(cacheSize);
+    this.cacheFileLoaded = false;
+    return this;
+  }
+
+  /**
+   * Binary file keeping the compiled layouts and the parsed variables files between runs; none by default.
+   */
+  public ViewProcessor cacheFile(String cacheFile) {
+    this.cacheFile = FileNameUtils.toUnixPath(StringUtils.trimToNull(cacheFile));
+    this.cacheFileLoaded = false;
+    return this;
+  }
+
+  FileCache<LayoutTemplate> newLayoutCache(int cacheSize) {
+    return new FileCache<>(cacheSize, LayoutTemplate::getVariablesFiles, this::stampSource);
+  }
+
+  <V> FileCache<V> newFileCache(int cacheSize) {
+    return new FileCache<>(cacheSize, null, this::stampSource);
+  }
+
+  /**
+   * The sources in memory, or the file system of the given path.
+   */
+  protected SourceFiles getSourceFiles(Path file) {
+    var memorySources = this.memorySources;
+    if (memorySources != null && file.startsWith(memorySources.getRoot())) {
+      return memorySources;
+    }
+    return SourceFiles.DEFAULT;
+  }
+
+  FileStamp stampSource(Path file) throws IOException {
+    return getSourceFiles(file).stamp(file);
+  }
+
+  public FileCache<LayoutTemplate> getLayoutCache() {
+    return this.layoutCache;
+  }
+
+  public FileCache<Map<String, String>> getVariablesCache() {
+    return this.variablesCache;
+  }
+
+  public Path getInputViewsPath() {
+    return Paths.get(this.inputViewsDir);
+  }
+
+  public Path getOutputViewsPath() {
+    return getInputViewsPath().getParent().resolve(this.outputViewsDir);
+  }
+
+  /**
+   * Number of the slowest views kept by the metrics of a run.
+   */
+  public ViewProcessor slowestViews(int slowestViews) {
+    Arguments.isTrue(slowestViews >= 0, "slowestViews must be >= 0");
+    this.slowestViews = slowestViews;
+    return this;
+  }
+
+  public ProcessStats getStats() {
+    return this.stats;
+  }
+
+  public ProcessMetrics getMetrics() {
+    return this.metrics;
+  }
+
+  protected String optionsKey(Path inViewsPath, Path outViewsPath) {
+    return String.join("|", inViewsPath.toAbsolutePath().toString(), outViewsPath.toAbsolutePath().toString(),
+        this.configDir, this.viewSuffixes, String.valueOf(this.removeBlankLines), String.valueOf(this.debugVariables),
+        this.lineSeparator.replace("\r", "\\r").replace("\n", "\\n"), String.join(",", this.includes),
+        String.join(",", this.excludes), this.copyStrategy.getValue(), String.valueOf(this.inlineBody),
+        String.join(",", this.minifySuffixes), String.valueOf(this.gzip), String.valueOf(this.gzipLevel),
+        String.valueOf(this.gzipMinSize), String.join(",", this.gzipSuffixes));
+  }
+
+  protected boolean isMinified(String viewName) {
+    for (String suffix : this.minifySuffixes) {
+      if (viewName.endsWith(suffix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   protected boolean isViewFile(String viewName) {
-    var suffixes = this.viewSuffixes.split(",");
-    return Arrays.stream(suffixes).anyMatch(suffix -> viewName.endsWith(suffix));
+    var idx = viewName.lastIndexOf('.');
+    if (idx >= 0 && this.viewExtensions.contains(viewName.substring(idx))) {
+      return true;
+    }
+    for (String suffix : this.otherViewSuffixes) {
+      if (viewName.endsWith(suffix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // .jsp -> Extension lookup, .min.jsp or jsp -> endsWith
+
+  static Set<String> toViewExtensions(String viewSuffixes) {
+    return toList(viewSuffixes).stream().filter(s -> s.lastIndexOf('.') == 0).collect(Collectors.toUnmodifiableSet());
+  }
+
+  static List<String> toOtherViewSuffixes(String viewSuffixes) {
+    return toList(viewSuffixes).stream().filter(s -> s.lastIndexOf('.') != 0).collect(Collectors.toUnmodifiableList());
+  }
+
+  protected FileScanner newScanner(Path inViewsPath, Path configPath, Path outViewsPath) {
+    var scanner = new FileScanner(inViewsPath).skipDir(configPath).includes(this.includes).excludes(this.excludes)
+        .threads(this.scanThreads);
+    if (outViewsPath != null) {
+      scanner.skipDir(outViewsPath);
+    }
+    return scanner;
   }
 
   public void process() throws Exception {
@@ -99,151 +458,918 @@ public class ViewProcessor {
     Arguments.notNull(this.configDir);
     Arguments.notNull(this.viewSuffixes);
 
-    var inputViewsPath = Paths.get(this.inputViewsDir);
+    var inputViewsPath = getInputViewsPath();
     if (!Files.exists(inputViewsPath)) {
       throw new IllegalArgumentException("The path does not exist: " + inputViewsPath.toAbsolutePath());
     }
 
     var configPath = inputViewsPath.resolve(this.configDir);
-    var outViewPath = inputViewsPath.getParent().resolve(this.outputViewsDir);
+    var outViewPath = getOutputViewsPath();
+
+    // Incremental: Previous manifest
+    ViewManifest manifest = null;
+    Path manifestPath = null;
+
+    if (this.incremental) {
+      Arguments.notNull(this.manifestFile, "manifestFile is required (incremental=true)");
+
+      manifestPath = Paths.get(this.manifestFile);
+      manifest = new ViewManifest(inputViewsPath, outViewPath, optionsKey(inputViewsPath, outViewPath));
+      manifest.load(manifestPath);
+    }
+
+    var ctx = new ProcessContext(inputViewsPath, configPath, outViewPath);
+    ctx.manifest = manifest;
+    ctx.metrics = new ProcessMetrics(this.slowestViews);
+    this.stats = ctx.stats;
+    this.metrics = ctx.metrics;
 
-    if (outViewPath.toFile().exists()) {
-      FileUtils.deleteRecursively(outViewPath);
+    loadCacheFile();
+    var layoutCacheMetrics = ctx.metrics.cacheStart("layout", this.layoutCache);
+    var variablesCacheMetrics = ctx.metrics.cacheStart("variables file", this.variablesCache);
+
+    // No previous manifest -> Full build
+    if (manifest == null || !manifest.isLoaded()) {
+      if (this.writeIfChanged || this.copyStrategy != CopyStrategy.COPY) {
+        // Keep the unchanged outputs, delete the others afterward
+        ctx.outputFiles = ConcurrentHashMap.newKeySet();
+
+      } else if (outViewPath.toFile().exists()) {
+        FileUtils.deleteRecursively(outViewPath);
+      }
     }
-    doProcess(inputViewsPath, configPath, outViewPath);
+    doProcess(ctx);
+
+    if (ctx.outputFiles != null && Files.exists(outViewPath)) {
+      deleteStaleOutputs(ctx);
+    }
+    if (manifest != null) {
+      for (Path staleOutput : manifest.getStaleOutputs()) {
+        if (FileUtils.deleteFileAndEmptyParents(staleOutput, outViewPath)) {
+          ctx.stats.deletedFiles.increment();
+        }
+      }
+      manifest.save(manifestPath);
+    }
+    saveCacheFile();
+
+    ctx.metrics.cacheEnd(layoutCacheMetrics, this.layoutCache);
+    ctx.metrics.cacheEnd(variablesCacheMetrics, this.variablesCache);
+    ctx.metrics.finish();
+    this.lastContext = ctx;
   }
 
-  protected void doProcess(Path inViewsPath, Path configPath, Path outViewsPath) throws Exception {
-    Queue<File> q = new LinkedList<>();
-    q.add(inViewsPath.toFile());
+  /**
+   * Processes the views under the given directory, of any NIO file system, into the given sink.
+   *
+   * <p>
+   * The output directory, the manifest & the cache file are not used: {@code incremental}, {@code writeIfChanged} and
+   * {@code copyStrategy} don't apply. The caches are kept, so the next calls on this instance reuse the unchanged
+   * layouts and variables files. One call at a time.
+   * </p>
+   */
+  public ProcessStats process(Path inputViewsPath, OutputSink sink) throws Exception {
+    if (!Files.exists(inputViewsPath)) {
+      throw new IllegalArgumentException("The path does not exist: " + inputViewsPath.toAbsolutePath());
+    }
+    return processTo(inputViewsPath, sink);
+  }
 
-    while (!q.isEmpty()) {
-      var file = q.remove();
+  /**
+   * Processes the given sources, keyed by their path relative to the input views directory with {@code /} separators,
+   * into the given sink. The disk is not accessed. The next calls only reload the sources whose content changed.
+   *
+   * @see #process(Path, OutputSink)
+   */
+  public ProcessStats process(Map<String, byte[]> sources, OutputSink sink) throws Exception {
+    Arguments.notNull(sources);
+    if (this.memorySources == null) {
+      this.memorySources = new MemorySourceFiles();
+    }
+    this.memorySources.update(sources);
+    return processTo(this.memorySources.getRoot(), sink);
+  }
 
-      if (file.equals(configPath.toFile()) || file.equals(outViewsPath.toFile())) {
-        continue;
+  protected ProcessStats processTo(Path inViewsPath, OutputSink sink) throws Exception {
+    Arguments.notNull(this.configDir);
+    Arguments.notNull(this.viewSuffixes);
+    Arguments.notNull(sink);
+
+    var ctx = new ProcessContext(inViewsPath, inViewsPath.resolve(this.configDir), null);
+    ctx.sink = sink;
+    ctx.metrics = new ProcessMetrics(this.slowestViews);
+    this.stats = ctx.stats;
+    this.metrics = ctx.metrics;
+
+    var layoutCacheMetrics = ctx.metrics.cacheStart("layout", this.layoutCache);
+    var variablesCacheMetrics = ctx.metrics.cacheStart("variables file", this.variablesCache);
+
+    doProcess(ctx);
+
+    ctx.metrics.cacheEnd(layoutCacheMetrics, this.layoutCache);
+    ctx.metrics.cacheEnd(variablesCacheMetrics, this.variablesCache);
+    ctx.metrics.finish();
+    return ctx.stats;
+  }
+
+  /**
+   * Regenerates only the sources affected by the given changed paths since the last {@link #process()} or
+   * {@link #processChanges(Collection)} call: changed or new sources, sources under deleted directories and views
+   * depending on a changed layout or variables file. Requires {@code incremental=true}.
+   */
+  public ProcessStats processChanges(Collection<Path> changedPaths) throws Exception {
+    Arguments.isTrue(this.lastContext != null && this.lastContext.manifest != null,
+        "process() must be called first (incremental=true)");
+
+    var prevCtx = this.lastContext;
+    var ctx = new ProcessContext(prevCtx.inViewsPath, prevCtx.configPath, prevCtx.outViewsPath);
+    ctx.manifest = prevCtx.manifest.next();
+    ctx.metrics = new ProcessMetrics(this.slowestViews);
+    this.stats = ctx.stats;
+    this.metrics = ctx.metrics;
+
+    var layoutCacheMetrics = ctx.metrics.cacheStart("layout", this.layoutCache);
+    var variablesCacheMetrics = ctx.metrics.cacheStart("variables file", this.variablesCache);
+
+    Set<Path> changed = new HashSet<>();
+    for (Path changedPath : changedPaths) {
+      changed.add(changedPath.toAbsolutePath().normalize());
+    }
+    var inViewsPath = ctx.inViewsPath.toAbsolutePath().normalize();
+    var configPath = ctx.configPath.toAbsolutePath().normalize();
+    var outViewsPath = ctx.outViewsPath.toAbsolutePath().normalize();
+
+    // Changed layouts & variables files
+    for (Path changedPath : changed) {
+      this.layoutCache.invalidate(changedPath);
+      this.variablesCache.invalidate(changedPath);
+    }
+
+    // Affected sources
+    Set<Path> files = new TreeSet<>();
+    for (String sourceKey : ctx.manifest.getPrevSources()) {
+      var sourcePath = inViewsPath.resolve(sourceKey).normalize();
+
+      var affected = changed.stream().anyMatch(c -> sourcePath.startsWith(c))
+          || ctx.manifest.getPrevDependencies(sourceKey).stream()
+              .anyMatch(d -> changed.contains(inViewsPath.resolve(d).normalize()));
+      if (!affected) {
+        ctx.manifest.keepEntry(ctx.inViewsPath.resolve(sourceKey));
+
+      } else if (Files.isRegularFile(sourcePath)) {
+        files.add(sourcePath);
       }
-      if (file.isDirectory()) {
-        Arrays.stream(file.listFiles()).forEach(f -> q.add(f));
+    }
+
+    // New sources
+    var scanStart = System.nanoTime();
+    var scanner = newScanner(inViewsPath, configPath, outViewsPath);
+    for (Path changedPath : changed) {
+      if (!Files.exists(changedPath) || scanner.isExcluded(changedPath)) {
         continue;
       }
-      if (!file.isFile()) {
-        continue;
+      files.addAll(scanner.scan(changedPath));
+    }
+
+    List<Path> sourceFiles = new ArrayList<>(files.size());
+    files.forEach(f -> sourceFiles.add(ctx.inViewsPath.resolve(inViewsPath.relativize(f))));
+    ctx.metrics.add(Phase.SCAN, scanStart);
+
+    processFiles(ctx, sourceFiles);
+
+    for (Path staleOutput : ctx.manifest.getStaleOutputs()) {
+      if (FileUtils.deleteFileAndEmptyParents(staleOutput, ctx.outViewsPath)) {
+        ctx.stats.deletedFiles.increment();
       }
-      var targetFilePath = outViewsPath.resolve(inViewsPath.relativize(file.toPath()));
-      Files.createDirectories(targetFilePath.getParent());
+    }
+    if (this.manifestFile != null) {
+      ctx.manifest.save(Paths.get(this.manifestFile));
+    }
+    saveCacheFile();
 
-      // View file?
-      if (isViewFile(file.getName())) {
+    ctx.metrics.cacheEnd(layoutCacheMetrics, this.layoutCache);
+    ctx.metrics.cacheEnd(variablesCacheMetrics, this.variablesCache);
+    ctx.metrics.finish();
+    this.lastContext = ctx;
+    return ctx.stats;
+  }
 
-        var viewSuffix = ViewUtils.getViewSuffix(file.getName());
-        var viewSourceHandler = ViewSourceHandler.getHandler(viewSuffix);
+  protected void loadCacheFile() throws IOException {
+    if (this.cacheFile == null || this.cacheFileLoaded) {
+      return;
+    }
+    LayoutCacheFile.load(Paths.get(this.cacheFile), this.removeBlankLines, this.layoutCache, this.variablesCache);
+    this.cacheFileLoaded = true;
+    this.cacheFileMisses = cacheMisses();
+  }
 
-        // View Source
-        var model = new ViewModel();
-        model.viewName = file.getName();
-        model.viewSource = loadSource(file.toPath(), false);
+  protected void saveCacheFile() throws IOException {
+    if (this.cacheFile == null) {
+      return;
+    }
+    // Nothing compiled or parsed since loaded -> Keep the file
+    var misses = cacheMisses();
+    var cacheFilePath = Paths.get(this.cacheFile);
+    if (misses == this.cacheFileMisses && Files.exists(cacheFilePath)) {
+      return;
+    }
+    LayoutCacheFile.save(cacheFilePath, this.removeBlankLines, this.layoutCache, this.variablesCache);
+    this.cacheFileMisses = misses;
+  }
 
-        // Parse Variables (view)
-        Map<String, String> viewVariables = new LinkedHashMap<>();
-        ViewSourceUtils.parseVariables(model.viewSource, model.viewName, viewVariables);
+  long cacheMisses() {
+    return this.layoutCache.getMisses() + this.variablesCache.getMisses();
+  }
 
-        // Layout source
-        var layoutName = getLayoutName(model.viewName, viewVariables);
-        if (layoutName != null) {
+  protected void doProcess(Path inViewsPath, Path configPath, Path outViewsPath) throws Exception {
+    doProcess(new ProcessContext(inViewsPath, configPath, outViewsPath));
+  }
 
-          model.layoutViewName = layoutName + viewSuffix;
-          model.layoutSource = loadSource(configPath.resolve(model.layoutViewName), true);
+  protected void doProcess(ProcessContext ctx) throws Exception {
+    var scanStart = System.nanoTime();
+    var files = scanFiles(ctx.inViewsPath, ctx.configPath, ctx.outViewsPath);
+    ctx.metrics.add(Phase.SCAN, scanStart);
 
-          // Parse Variables (layoutViewName)
-          ViewSourceUtils.parseVariablesFile(model.layoutSource, configPath, model.mergedVariables);
-          ViewSourceUtils.parseVariables(model.layoutSource, model.layoutViewName, model.mergedVariables);
-        }
+    processFiles(ctx, files);
+  }
 
-        // Replace variables (view, layout)
-        viewVariables.entrySet().stream().forEach(e -> {
-          model.mergedVariables.put(e.getKey(), e.getValue());
-        });
-        if (layoutName != null) {
-          ViewSourceUtils.replaceVariables(model.layoutSource, model.mergedVariables);
+  protected void processFiles(ProcessContext ctx, List<Path> files) throws Exception {
+    var threads = (this.threads > 0) ? this.threads : Runtime.getRuntime().availableProcessors();
+    runTasks(files, threads, file -> processFile(ctx, file));
+
+    // The sidecars of the copied files
+    if (!ctx.gzipFiles.isEmpty()) {
+      List<Path[]> gzipFiles = new ArrayList<>(ctx.gzipFiles);
+      ctx.gzipFiles.clear();
+      runTasks(gzipFiles, threads, f -> gzipFile(ctx, f[0], f[1]));
+    }
+  }
+
+  interface Task<T> {
+    void run(T item) throws Exception;
+  }
+
+  static <T> void runTasks(List<T> items, int threads, Task<T> task) throws Exception {
+    if (threads == 1 || items.size() < 2) {
+      for (T item : items) {
+        task.run(item);
+      }
+      return;
+    }
+
+    var executor = Executors.newFixedThreadPool(Math.min(threads, items.size()));
+    try {
+      List<Future<?>> futures = new ArrayList<>(items.size());
+      for (T item : items) {
+        futures.add(executor.submit(() -> {
+          task.run(item);
+          return null;
+        }));
+      }
+
+      // Report the first error in item order, the others are suppressed
+      Exception error = null;
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+
+        } catch (ExecutionException ex) {
+          var cause = (ex.getCause() instanceof Exception) ? (Exception) ex.getCause() : ex;
+          if (error == null) {
+            error = cause;
+          } else {
+            error.addSuppressed(cause);
+          }
         }
-        ViewSourceUtils.replaceVariables(model.viewSource, model.mergedVariables);
+      }
+      if (error != null) {
+        throw error;
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 
-        if (this.debugVariables) {
-          model.viewSource.addAll(ViewSourceUtils.toVariableList(model.mergedVariables));
+  protected List<Path> scanFiles(Path inViewsPath, Path configPath, Path outViewsPath) throws IOException {
+    return getSourceFiles(inViewsPath).scan(newScanner(inViewsPath, configPath, outViewsPath));
+  }
+
+  protected void deleteStaleOutputs(ProcessContext ctx) throws IOException {
+    List<Path> staleOutputs = new ArrayList<>();
+    try (var paths = Files.walk(ctx.outViewsPath)) {
+      paths.filter(p -> !ctx.outputFiles.contains(p) && Files.isRegularFile(p)).forEach(staleOutputs::add);
+    }
+    for (Path staleOutput : staleOutputs) {
+      if (FileUtils.deleteFileAndEmptyParents(staleOutput, ctx.outViewsPath)) {
+        ctx.stats.deletedFiles.increment();
+      }
+    }
+  }
+
+  protected void processFile(ProcessContext ctx, Path file) throws Exception {
+    var inViewsPath = ctx.inViewsPath;
+    var configPath = ctx.configPath;
+    var manifest = ctx.manifest;
+    var fileName = file.getFileName().toString();
+    var relativePath = inViewsPath.relativize(file);
+
+    // Sink: Relative to the output root
+    var targetFilePath = (ctx.sink != null) ? Paths.get(FileNameUtils.toUnixPath(relativePath.toString()))
+        : ctx.outViewsPath.resolve(relativePath);
+    var metrics = ctx.metrics;
+    var fileStart = System.nanoTime();
+    var t = fileStart;
+    metrics.fileProcessed();
+
+    // Incremental: Source, layout & variables files unchanged?
+    if (manifest != null) {
+      var upToDate = manifest.isUpToDate(file);
+      t = metrics.add(Phase.UP_TO_DATE, t);
+
+      if (upToDate) {
+        var keptOutputs = manifest.keepEntry(file);
+        if (ctx.outputFiles != null) {
+          ctx.outputFiles.addAll(keptOutputs);
         }
+        ctx.stats.unchangedFiles.add(keptOutputs.size());
+        return;
+      }
+    }
+    if (ctx.sink == null) {
+      Files.createDirectories(targetFilePath.getParent());
+    }
 
-        // Remove blank lines
-        if (this.removeBlankLines) {
-          if (layoutName != null) {
-            ViewSourceUtils.removeBlankLines(model.layoutSource);
-          }
-          ViewSourceUtils.removeBlankLines(model.viewSource);
+    List<Path> outputs = new ArrayList<>();
+    List<Path> dependencies = new ArrayList<>();
+
+    // View file?
+    if (isViewFile(fileName)) {
+      var event = new ViewProcessedEvent();
+      event.begin();
+
+      var viewSuffix = ViewUtils.getViewSuffix(fileName);
+      var viewSourceHandler = getHandler(viewSuffix);
+      var viewPath = FileNameUtils.toUnixPath(relativePath.toString());
+
+      // No directive, variable holder nor handler marker -> Written as is, never decoded
+      // Large view -> Streamed
+      var minify = isMinified(fileName);
+      var scanner = minify ? null : getMarkerScanner(viewSourceHandler);
+      if (((scanner != null) && passthroughView(ctx, scanner, file, targetFilePath, event)) || (!minify
+          && streamView(ctx, file, targetFilePath, viewSourceHandler, outputs, dependencies, event))) {
+        metrics.viewProcessed(viewPath, System.nanoTime() - fileStart);
+
+        if (event.shouldCommit()) {
+          event.view = viewPath;
+          event.suffix = viewSuffix;
+          event.commit();
         }
+        outputs.add(targetFilePath);
+        putOutputs(ctx, file, outputs, dependencies);
+        return;
+      }
+
+      // View Source
+      var model = new ViewModel();
+      model.viewName = fileName;
+      model.viewSource = loadSource(file);
+      var sourceLines = model.viewSource.size();
+      t = metrics.add(Phase.LOAD, t);
+
+      // Parse Variables (view)
+      Map<String, String> viewVariables = new LinkedHashMap<>();
+      ViewSourceUtils.parseVariables(model.viewSource, model.viewName, viewVariables);
+      t = metrics.add(Phase.PARSE_VARIABLES, t);
+
+      // Layout source
+      var layoutName = getLayoutName(model.viewName, viewVariables);
+      if (layoutName != null) {
+
+        model.layoutViewName = layoutName + viewSuffix;
+        var layoutPath = configPath.resolve(model.layoutViewName);
+        model.layout = loadLayout(layoutPath, model.layoutViewName, configPath, viewSourceHandler);
+
+        dependencies.add(layoutPath);
+        dependencies.addAll(model.layout.getLayoutFiles());
+        dependencies.addAll(model.layout.getVariablesFiles());
+
+        // Variables (layoutViewName)
+        model.mergedVariables.putAll(model.layout.getVariables());
+        t = metrics.add(Phase.LAYOUT, t);
+      }
+
+      // Replace variables (view)
+      viewVariables.entrySet().stream().forEach(e -> {
+        model.mergedVariables.put(e.getKey(), e.getValue());
+      });
+      var variables = new VariableResolver(model.mergedVariables);
+      ViewSourceUtils.replaceVariables(model.viewSource, variables);
+
+      if (this.debugVariables) {
+        model.viewSource.addAll(ViewSourceUtils.toVariableList(model.mergedVariables));
+      }
+      t = metrics.add(Phase.REPLACE_VARIABLES, t);
+
+      // Remove blank lines
+      if (this.removeBlankLines) {
+        ViewSourceUtils.removeBlankLines(model.viewSource);
+      }
+
+      // handleSource (View specific)
+      viewSourceHandler.handleSource(model.viewSource, model.viewName, false);
+      t = metrics.add(Phase.HANDLE_SOURCE, t);
 
-        // handleSource (View specific)
+      // Parse Sections (view)
+      ViewSourceUtils.parseSections(model.viewSource, model.sections, model.viewName);
+      t = metrics.add(Phase.PARSE_SECTIONS, t);
+
+      // Fill the layout: variables, @doBody & sections
+      if (layoutName != null) {
+        model.layoutSource = model.layout.render(variables, model.viewSource, model.viewName,
+            model.sections, viewSourceHandler);
+        t = metrics.add(Phase.RENDER, t);
+      }
+
+      // Minify the outputs
+      if (minify) {
         if (layoutName != null) {
-          viewSourceHandler.handleSource(model.layoutSource, model.layoutViewName, true);
+          model.layoutSource = MarkupMinifier.minify(model.layoutSource);
         }
-        viewSourceHandler.handleSource(model.viewSource, model.viewName, false);
+        if ((layoutName == null) || viewSourceHandler.incViewFile()) {
+          model.viewSource = MarkupMinifier.minify(model.viewSource);
+        }
+        t = metrics.add(Phase.MINIFY, t);
+      }
 
-        // Parse Sections (view)
-        ViewSourceUtils.parseSections(model.viewSource, model.sections, model.viewName);
+      // Save source
+      long bytesWritten = 0;
+      if (layoutName != null) {
+        if (viewSourceHandler.incViewFile()) {
+          var incViewName = ViewUtils.getInclViewName(model.viewName);
+          var incFilePath = targetFilePath.resolveSibling(incViewName);
 
-        // Replace @doBody & sections
-        if (layoutName != null) {
-          ViewSourceUtils.replaceBody(model.layoutSource, model.layoutViewName, model.viewSource, model.viewName,
-              viewSourceHandler);
-          ViewSourceUtils.replaceSections(model.layoutSource, model.viewName, model.sections);
+          bytesWritten += saveSource(ctx, model.viewSource, incFilePath);
+          outputs.add(incFilePath);
         }
+        bytesWritten += saveSource(ctx, model.layoutSource, targetFilePath);
 
-        // Save source
-        if (layoutName != null) {
-          if (viewSourceHandler.incViewFile()) {
-            var incViewName = ViewUtils.getInclViewName(model.viewName);
-            saveSource(model.viewSource, targetFilePath.getParent().resolve(incViewName));
+      } else {
+        // No layout
+        bytesWritten += saveSource(ctx, model.viewSource, targetFilePath);
+      }
+      t = metrics.add(Phase.SAVE, t);
+      metrics.viewProcessed(viewPath, t - fileStart);
+
+      if (event.shouldCommit()) {
+        event.view = viewPath;
+        event.suffix = viewSuffix;
+        event.layout = model.layoutViewName;
+        event.sourceLines = sourceLines;
+        event.outputLines = (layoutName != null) ? model.layoutSource.size() : model.viewSource.size();
+        event.bytesWritten = bytesWritten;
+        event.commit();
+      }
+
+    } else {
+      // Not view file -> Copy directly
+      copyFile(ctx, file, targetFilePath);
+      metrics.add(Phase.COPY, t);
+
+      if (isGzipped(ctx, file)) {
+        outputs.add(toGzipFile(targetFilePath));
+        ctx.gzipFiles.add(new Path[] { file, targetFilePath });
+      }
+    }
+    outputs.add(targetFilePath);
+    putOutputs(ctx, file, outputs, dependencies);
+  }
+
+  protected void putOutputs(ProcessContext ctx, Path file, List<Path> outputs, List<Path> dependencies)
+      throws IOException {
+    if (ctx.outputFiles != null) {
+      ctx.outputFiles.addAll(outputs);
+    }
+
+    if (ctx.manifest != null) {
+      ctx.manifest.putEntry(file, outputs, dependencies);
+    }
+  }
+
+  protected ViewSourceHandler getHandler(String viewSuffix) {
+    var handler = ViewSourceHandler.getHandler(viewSuffix);
+    if (!this.inlineBody) {
+      return handler;
+    }
+    return this.inlineHandlers.computeIfAbsent(handler, ViewSourceHandler::inlineBody);
+  }
+
+  protected MarkerScanner getMarkerScanner(ViewSourceHandler handler) {
+    if (!this.passthrough || this.removeBlankLines || this.debugVariables || !"\n".equals(this.lineSeparator)) {
+      return null;
+    }
+    var markers = handler.getSourceMarkers();
+    if (markers == null) {
+      return null;
+    }
+    return this.markerScanners.computeIfAbsent(handler, h -> new MarkerScanner(markers));
+  }
+
+  /**
+   * Writes the view as is if {@link MarkerScanner} finds no marker in it, the pipeline would only drop its last line
+   * feed. The content is mapped or bulk read, then transferred from the channel.
+   *
+   * @return true if the view was written, false if it must go through the pipeline
+   */
+  protected boolean passthroughView(ProcessContext ctx, MarkerScanner scanner, Path file, Path targetFile,
+      ViewProcessedEvent viewEvent) throws Exception {
+    if (getSourceFiles(file) != SourceFiles.DEFAULT) {
+      return false;
+    }
+    var metrics = ctx.metrics;
+    var t = System.nanoTime();
+
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      var content = MarkerScanner.read(channel);
+      var lines = (content != null) ? scanner.countPlainLines(content) : -1;
+      t = metrics.add(Phase.MARKER_SCAN, t);
+      if (lines < 0) {
+        return false;
+      }
+
+      var event = new OutputWriteEvent();
+      event.begin();
+
+      // One line per line feed, except the last one
+      var size = content.remaining();
+      if ((size > 0) && (content.get(content.limit() - 1) == '\n')) {
+        size--;
+      }
+      content.limit(content.position() + size);
+
+      var unchanged = (ctx.sink == null) && this.writeIfChanged && FileUtils.hasContent(targetFile, content);
+      if (unchanged) {
+        ctx.stats.unchangedFiles.increment();
+
+      } else if (ctx.sink != null) {
+        var bytes = new byte[size];
+        content.duplicate().get(bytes);
+        ctx.sink.write(FileNameUtils.toUnixPath(targetFile.toString()), bytes);
+        ctx.stats.written(targetFile, size);
+
+      } else {
+        // A link left by a copied file: Don't write through it
+        if (this.copyStrategy.isLink()) {
+          Files.deleteIfExists(targetFile);
+        }
+        FileUtils.transfer(channel, size, targetFile);
+        ctx.stats.written(targetFile, size);
+      }
+      metrics.add(Phase.SAVE, t);
+
+      if (event.shouldCommit()) {
+        event.path = targetFile.toString();
+        event.bytes = size;
+        event.unchanged = unchanged;
+        event.commit();
+      }
+      viewEvent.sourceLines = lines;
+      viewEvent.outputLines = lines;
+      viewEvent.bytesWritten = size;
+      return true;
+    }
+  }
+
+  /**
+   * Streams a view larger than the stream buffer when {@code streaming} is on, see {@link ViewStreamer}. The outputs
+   * are written to temporary files, moved in place once all of them are complete.
+   *
+   * @return true if the view was streamed, false if it must go through the in-memory pipeline
+   */
+  protected boolean streamView(ProcessContext ctx, Path file, Path targetFile, ViewSourceHandler handler,
+      List<Path> outputs, List<Path> dependencies, ViewProcessedEvent viewEvent) throws Exception {
+    if (!this.streaming || (ctx.sink != null) || (getSourceFiles(file) != SourceFiles.DEFAULT)
+        || !ViewStreamer.isStreamable(handler) || (Files.size(file) <= this.streamBufferSize)) {
+      return false;
+    }
+    var metrics = ctx.metrics;
+    var t = System.nanoTime();
+
+    var viewName = file.getFileName().toString();
+    var viewSuffix = ViewUtils.getViewSuffix(viewName);
+
+    try (var streamer = new ViewStreamer(file, viewName, handler, this.streamBufferSize, this.removeBlankLines)) {
+
+      // Variables (view)
+      var viewVariables = streamer.scan();
+      t = metrics.add(Phase.PARSE_VARIABLES, t);
+
+      // Layout
+      Map<String, String> mergedVariables = new LinkedHashMap<>();
+      LayoutTemplate layout = null;
+      Path layoutPath = null;
+
+      var layoutName = getLayoutName(viewName, viewVariables);
+      if (layoutName != null) {
+        var layoutViewName = layoutName + viewSuffix;
+        layoutPath = ctx.configPath.resolve(layoutViewName);
+        layout = loadLayout(layoutPath, layoutViewName, ctx.configPath, handler);
+
+        mergedVariables.putAll(layout.getVariables());
+        t = metrics.add(Phase.LAYOUT, t);
+      }
+      mergedVariables.putAll(viewVariables);
+
+      List<String> debugLines = this.debugVariables ? ViewSourceUtils.toVariableList(mergedVariables)
+          : Collections.emptyList();
+      streamer.resolve(mergedVariables, debugLines);
+      t = metrics.add(Phase.PARSE_SECTIONS, t);
+
+      if (layout != null) {
+        // The layout is handled once its variables are replaced -> In memory
+        if (layout.isHandledPerView(streamer.resolver)) {
+          return false;
+        }
+        dependencies.add(layoutPath);
+        dependencies.addAll(layout.getLayoutFiles());
+        dependencies.addAll(layout.getVariablesFiles());
+      }
+
+      // Outputs
+      var incFile = ((layout != null) && handler.incViewFile())
+          ? targetFile.resolveSibling(ViewUtils.getInclViewName(viewName))
+          : null;
+      var incTemp = (incFile != null) ? newTempFile(incFile) : null;
+      var targetTemp = newTempFile(targetFile);
+      try {
+        if (incFile != null) {
+          try (var out = new ViewStreamer.LineWriter(incTemp, this.lineSeparator, this.streamBufferSize)) {
+            streamer.writeBody(out);
+          }
+        }
+        try (var out = new ViewStreamer.LineWriter(targetTemp, this.lineSeparator, this.streamBufferSize)) {
+          if (layout != null) {
+            streamer.writeLayout(layout, handler, out);
+          } else {
+            streamer.writeBody(out);
           }
-          saveSource(model.layoutSource, targetFilePath);
+          viewEvent.outputLines = out.getLines();
+        }
+        t = metrics.add(Phase.RENDER, t);
 
-        } else {
-          // No layout
-          saveSource(model.viewSource, targetFilePath);
+        long bytesWritten = 0;
+        if (incFile != null) {
+          bytesWritten += commitOutput(ctx, incTemp, incFile);
+          outputs.add(incFile);
         }
-      } else {
-        // Not view file -> Copy directly
-        Files.copy(file.toPath(), targetFilePath, StandardCopyOption.REPLACE_EXISTING);
+        bytesWritten += commitOutput(ctx, targetTemp, targetFile);
+        metrics.add(Phase.SAVE, t);
+
+        viewEvent.layout = (layout != null) ? layout.getLayoutViewName() : null;
+        viewEvent.sourceLines = streamer.getSourceLines();
+        viewEvent.bytesWritten = bytesWritten;
+        return true;
+
+      } finally {
+        if (incTemp != null) {
+          Files.deleteIfExists(incTemp);
+        }
+        Files.deleteIfExists(targetTemp);
       }
     }
   }
 
-  final Map<String, List<String>> sourceCache = new HashMap<>();
+  // Next to the output, not created yet: Written with the default permissions
+  static Path newTempFile(Path outFile) {
+    return outFile.resolveSibling(
+        "." + outFile.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+  }
 
-  protected List<String> loadSource(Path sourcePath, boolean cacheSource) throws Exception {
-    if (!cacheSource) {
-      return Files.readAllLines(sourcePath, StandardCharsets.UTF_8);
+  /**
+   * Moves a streamed output in place, or drops it if the output has the same content.
+   *
+   * @return the size of the output, in bytes
+   */
+  protected long commitOutput(ProcessContext ctx, Path tempFile, Path outFile) throws IOException {
+    var event = new OutputWriteEvent();
+    event.begin();
 
+    var size = Files.size(tempFile);
+    var unchanged = this.writeIfChanged && FileUtils.hasSameContent(outFile, tempFile);
+    if (unchanged) {
+      Files.delete(tempFile);
+      ctx.stats.unchangedFiles.increment();
     } else {
-      // Cache?
-      var lines = sourceCache.computeIfAbsent(sourcePath.getFileName().toString(), k -> {
-        try {
-          return Files.readAllLines(sourcePath, StandardCharsets.UTF_8);
-        } catch (IOException ex) {
-          throw new UncheckedIOException(ex);
+      // A link left by a copied file is replaced
+      Files.move(tempFile, outFile, StandardCopyOption.REPLACE_EXISTING);
+      ctx.stats.written(outFile, size);
+    }
+
+    if (event.shouldCommit()) {
+      event.path = outFile.toString();
+      event.bytes = size;
+      event.unchanged = unchanged;
+      event.commit();
+    }
+    return size;
+  }
+
+  protected LayoutTemplate loadLayout(Path layoutPath, String layoutViewName, Path configPath,
+      ViewSourceHandler handler) throws Exception {
+    return loadLayout(layoutPath, layoutViewName, configPath, handler, new ArrayList<>());
+  }
+
+  // chain: the layouts extending this layout, to detect a cycle
+  LayoutTemplate loadLayout(Path layoutPath, String layoutViewName, Path configPath, ViewSourceHandler handler,
+      List<String> chain) throws Exception {
+    chain.add(layoutViewName);
+
+    // Compiled once, the views of the same layout wait for it
+    var layout = this.layoutCache.get(layoutPath, p -> LayoutTemplate.compile(p, layoutViewName, configPath, handler,
+        this.removeBlankLines, this.variablesCache, getSourceFiles(p)));
+
+    if (layout.getParentLayoutName() == null) {
+      return layout;
+    }
+    var parentViewName = layout.getParentLayoutName() + ViewUtils.getViewSuffix(layoutViewName);
+    if (chain.contains(parentViewName)) {
+      throw new IllegalArgumentException(
+          "__layout is cyclic (layouts=" + String.join(" -> ", chain) + " -> " + parentViewName + ")");
+    }
+
+    // The parent is loaded outside the lock of this layout, the composed chain is kept by the layout
+    var parentPath = configPath.resolve(parentViewName);
+    var parent = loadLayout(parentPath, parentViewName, configPath, handler, chain);
+    return layout.extend(parent, parentPath);
+  }
+
+  protected List<String> loadSource(Path sourcePath) throws Exception {
+    return getSourceFiles(sourcePath).readLines(sourcePath);
+  }
+
+  /**
+   * Saves the source to the given file.
+   *
+   * @return the encoded size of the source, in bytes
+   */
+  protected long saveSource(ProcessContext ctx, List<String> source, Path outFile) throws Exception {
+    var event = new OutputWriteEvent();
+    event.begin();
+
+    var encoder = SourceEncoder.get().encode(source, this.lineSeparator);
+    try {
+      // Same content -> Keep the file & its timestamp
+      var unchanged = (ctx.sink == null) && this.writeIfChanged && encoder.hasContent(outFile);
+      if (unchanged) {
+        ctx.stats.unchangedFiles.increment();
+
+      } else if (ctx.sink != null) {
+        ctx.sink.write(FileNameUtils.toUnixPath(outFile.toString()), encoder.toByteArray());
+        ctx.stats.written(outFile, encoder.size());
+
+      } else {
+        // A link left by a copied file: Don't write through it
+        if (this.copyStrategy.isLink()) {
+          Files.deleteIfExists(outFile);
         }
-      });
-      return new ArrayList<>(lines);
+        encoder.writeTo(outFile);
+        ctx.stats.written(outFile, encoder.size());
+      }
+
+      if (event.shouldCommit()) {
+        event.path = outFile.toString();
+        event.bytes = encoder.size();
+        event.unchanged = unchanged;
+        event.commit();
+      }
+      return encoder.size();
+
+    } finally {
+      encoder.release();
     }
   }
 
-  static void saveSource(List<String> source, Path outFile) throws Exception {
-    try (var out = Files.newBufferedWriter(outFile, StandardCharsets.UTF_8)) {
-      for (var i = 0; i < source.size(); i++) {
-        if (i > 0) {
-          out.newLine();
+  /**
+   * Copies or links a non-view file according to the copy strategy.
+   */
+  protected void copyFile(ProcessContext ctx, Path sourceFile, Path targetFile) throws IOException {
+    var event = new OutputWriteEvent();
+    event.begin();
+
+    if (ctx.sink != null) {
+      copyToSink(ctx, sourceFile, targetFile, event);
+      return;
+    }
+
+    var size = Files.size(sourceFile);
+    var bytesWritten = size;
+    var unchanged = false;
+
+    switch (this.copyStrategy) {
+    case COPY_IF_CHANGED:
+      unchanged = FileUtils.hasSameSizeAndTime(targetFile, sourceFile);
+      if (!unchanged) {
+        Files.copy(sourceFile, targetFile, StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(targetFile, Files.getLastModifiedTime(sourceFile));
+      }
+      break;
+
+    case HARDLINK:
+    case SYMLINK:
+      var symbolic = (this.copyStrategy == CopyStrategy.SYMLINK);
+      unchanged = FileUtils.isLinkTo(targetFile, sourceFile, symbolic);
+      if (!unchanged) {
+        if (FileUtils.createLink(targetFile, sourceFile, symbolic)) {
+          bytesWritten = 0;
+        } else {
+          Files.copy(sourceFile, targetFile, StandardCopyOption.REPLACE_EXISTING);
         }
-        out.write(source.get(i));
+      }
+      break;
+
+    default:
+      Files.copy(sourceFile, targetFile, StandardCopyOption.REPLACE_EXISTING);
+      break;
+    }
+
+    if (unchanged) {
+      ctx.stats.unchangedFiles.increment();
+    } else {
+      ctx.stats.written(targetFile, bytesWritten);
+    }
+
+    if (event.shouldCommit()) {
+      event.path = targetFile.toString();
+      event.bytes = unchanged ? size : bytesWritten;
+      event.copied = true;
+      event.unchanged = unchanged;
+      event.commit();
+    }
+  }
+
+  protected boolean isGzipped(ProcessContext ctx, Path file) throws IOException {
+    if (!this.gzip || (ctx.sink != null)) {
+      return false;
+    }
+    var fileName = file.getFileName().toString().toLowerCase(Locale.ROOT);
+    for (String suffix : this.gzipSuffixes) {
+      if (fileName.endsWith(suffix.toLowerCase(Locale.ROOT))) {
+        return Files.size(file) >= this.gzipMinSize;
       }
     }
+    return false;
+  }
+
+  static Path toGzipFile(Path targetFile) {
+    return targetFile.resolveSibling(targetFile.getFileName() + ".gz");
+  }
+
+  /**
+   * Writes the gzip sidecar of a copied file. The hash of the source & the level are kept in the gzip comment, the
+   * sidecar is written again only if one of them changed.
+   */
+  protected void gzipFile(ProcessContext ctx, Path sourceFile, Path targetFile) throws IOException {
+    var t = System.nanoTime();
+    var gzipFile = toGzipFile(targetFile);
+
+    var hash = (ctx.manifest != null) ? ctx.manifest.stamp(sourceFile).hash : FileUtils.sha256(sourceFile);
+    var comment = "sha256=" + hash + ";level=" + this.gzipLevel;
+
+    if (comment.equals(GzipFiles.readComment(gzipFile))) {
+      ctx.stats.unchangedFiles.increment();
+    } else {
+      var tempFile = newTempFile(gzipFile);
+      try {
+        var size = GzipFiles.write(sourceFile, tempFile, this.gzipLevel, comment);
+        Files.move(tempFile, gzipFile, StandardCopyOption.REPLACE_EXISTING);
+        ctx.stats.written(gzipFile, size);
+      } finally {
+        Files.deleteIfExists(tempFile);
+      }
+    }
+    ctx.metrics.add(Phase.GZIP, t);
+  }
+
+  void copyToSink(ProcessContext ctx, Path sourceFile, Path targetFile, OutputWriteEvent event) throws IOException {
+    var path = FileNameUtils.toUnixPath(targetFile.toString());
+    var sourceFiles = getSourceFiles(sourceFile);
+
+    long size;
+    if (sourceFiles == SourceFiles.DEFAULT) {
+      ctx.sink.copy(path, sourceFile);
+      size = Files.size(sourceFile);
+    } else {
+      var content = sourceFiles.readAllBytes(sourceFile);
+      ctx.sink.write(path, content);
+      size = content.length;
+    }
+    ctx.stats.written(targetFile, size);
+
+    if (event.shouldCommit()) {
+      event.path = path;
+      event.bytes = size;
+      event.copied = true;
+      event.commit();
+    }
   }
 
   static String getLayoutName(String viewName, Map<String, String> variables) {
@@ -257,6 +1383,28 @@ public class ViewProcessor {
     return layoutName;
   }
 
+  protected static class ProcessContext {
+    final Path inViewsPath;
+    final Path configPath;
+    final Path outViewsPath;
+
+    ViewManifest manifest;
+    Set<Path> outputFiles;
+    OutputSink sink;
+
+    // The copied files to compress: source & target
+    final Queue<Path[]> gzipFiles = new ConcurrentLinkedQueue<>();
+
+    final ProcessStats stats = new ProcessStats();
+    ProcessMetrics metrics = new ProcessMetrics(0);
+
+    public ProcessContext(Path inViewsPath, Path configPath, Path outViewsPath) {
+      this.inViewsPath = inViewsPath;
+      this.configPath = configPath;
+      this.outViewsPath = outViewsPath;
+    }
+  }
+
   static class ViewModel {
     String viewName;
     List<String> viewSource;
@@ -265,6 +1413,7 @@ public class ViewProcessor {
     final Map<String, List<String>> sections = new LinkedHashMap<>();
 
     String layoutViewName;
+    LayoutTemplate layout;
     List<String> layoutSource;
   }
 }
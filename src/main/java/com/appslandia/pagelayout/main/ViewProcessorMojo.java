@@ -20,6 +20,17 @@
 
 package com.appslandia.pagelayout.main;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -28,6 +39,7 @@ import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 
 import com.appslandia.pagelayout.utils.FileNameUtils;
+import com.appslandia.pagelayout.utils.StringUtils;
 
 /**
  *
@@ -49,44 +61,260 @@ public class ViewProcessorMojo extends AbstractMojo {
   @Parameter(property = "viewSuffixes", defaultValue = ".jsp,.jspx,.xhtml,.peb")
   protected String viewSuffixes;
 
+  // Comma separated globs, relative to inputViewsDir
+  @Parameter(property = "includes")
+  protected String includes;
+
+  @Parameter(property = "excludes")
+  protected String excludes;
+
+  @Parameter(property = "scanThreads", defaultValue = "1")
+  protected int scanThreads;
+
   @Parameter(property = "skipPlugin", defaultValue = "false")
-  private boolean skipPlugin;
+  protected boolean skipPlugin;
 
   @Parameter(property = "debugVariables", defaultValue = "false")
-  private boolean debugVariables;
+  protected boolean debugVariables;
 
   @Parameter(property = "removeBlankLines", defaultValue = "false")
-  private boolean removeBlankLines;
+  protected boolean removeBlankLines;
+
+  @Parameter(property = "incremental", defaultValue = "false")
+  protected boolean incremental;
+
+  @Parameter(property = "manifestFile", defaultValue = "${project.build.directory}/page-layout/manifest.txt")
+  protected String manifestFile;
+
+  @Parameter(property = "threads", defaultValue = "1")
+  protected int threads;
+
+  @Parameter(property = "writeIfChanged", defaultValue = "false")
+  protected boolean writeIfChanged;
+
+  @Parameter(property = "passthrough", defaultValue = "true")
+  protected boolean passthrough;
+
+  @Parameter(property = "inlineBody", defaultValue = "false")
+  protected boolean inlineBody;
+
+  // Comma separated view suffixes, e.g. .jsp,.xhtml
+  @Parameter(property = "minifySuffixes", defaultValue = "")
+  protected String minifySuffixes;
+
+  @Parameter(property = "streaming", defaultValue = "false")
+  protected boolean streaming;
+
+  @Parameter(property = "streamBufferSize", defaultValue = "65536")
+  protected int streamBufferSize;
+
+  // LF, CRLF or SYSTEM
+  @Parameter(property = "lineSeparator", defaultValue = "LF")
+  protected String lineSeparator;
+
+  // copy, copy-if-changed, hardlink or symlink
+  @Parameter(property = "copyStrategy", defaultValue = "copy-if-changed")
+  protected String copyStrategy;
+
+  // .gz sidecars of the copied files
+  @Parameter(property = "gzip", defaultValue = "false")
+  protected boolean gzip;
+
+  @Parameter(property = "gzipLevel", defaultValue = "9")
+  protected int gzipLevel;
+
+  @Parameter(property = "gzipMinSize", defaultValue = "1024")
+  protected int gzipMinSize;
+
+  @Parameter(property = "gzipSuffixes", defaultValue = ".css,.js,.svg,.json")
+  protected String gzipSuffixes;
+
+  @Parameter(property = "cacheSize", defaultValue = "256")
+  protected int cacheSize;
+
+  @Parameter(property = "cacheFile", defaultValue = "${project.build.directory}/page-layout/layout-cache.bin")
+  protected String cacheFile;
+
+  // Archive written instead of outputViewsDir, e.g. ${project.build.directory}/views.jar
+  @Parameter(property = "outputArchive")
+  protected String outputArchive;
+
+  @Parameter(property = "archivePrefix")
+  protected String archivePrefix;
+
+  @Parameter(property = "archiveLevel", defaultValue = "-1")
+  protected int archiveLevel;
+
+  // ISO-8601 or seconds since the epoch
+  @Parameter(property = "archiveTimestamp", defaultValue = "${project.build.outputTimestamp}")
+  protected String archiveTimestamp;
+
+  @Parameter(property = "slowestViews", defaultValue = "10")
+  protected int slowestViews;
+
+  @Parameter(property = "metricsReport", defaultValue = "false")
+  protected boolean metricsReport;
+
+  @Parameter(property = "metricsReportFile", defaultValue = "${project.build.directory}/page-layout/metrics.json")
+  protected String metricsReportFile;
 
   @Override
   public void execute() throws MojoExecutionException, MojoFailureException {
     this.inputViewsDir = FileNameUtils.toUnixPath(this.inputViewsDir);
 
     getLog().info("Invoking " + getClass().getName() + ".execute()");
+    logParameters();
+
+    if (this.skipPlugin) {
+      getLog().info("Execution skipped because skipPlugin=true.");
+      return;
+    }
+
+    try {
+      var processor = newProcessor();
+      if (StringUtils.trimToNull(this.outputArchive) == null) {
+        processor.process();
 
+      } else {
+        warnIgnoredByArchive();
+
+        // Written by close() only: No archive if the processing fails
+        var sink = newArchiveSink();
+        processor.loadCacheFile();
+        processor.process(processor.getInputViewsPath(), sink);
+        sink.close();
+        processor.saveCacheFile();
+        getLog().info("Output archive: " + sink.getArchive().toAbsolutePath());
+      }
+
+      var stats = processor.getStats();
+      getLog().info("Written files: " + stats.getWrittenFiles() + ", unchanged files: " + stats.getUnchangedFiles()
+          + ", deleted files: " + stats.getDeletedFiles() + ", written bytes: " + stats.getWrittenBytes());
+
+      getLog().info("Layout cache: " + processor.getLayoutCache() + ", variables file cache: "
+          + processor.getVariablesCache());
+
+      if (getLog().isDebugEnabled()) {
+        stats.getFileBytes().forEach((file, bytes) -> getLog().debug("Written " + bytes + " bytes: " + file));
+      }
+
+      var metrics = processor.getMetrics();
+      metrics.toSummary().forEach(line -> getLog().info(line));
+
+      if (this.metricsReport) {
+        var reportPath = Paths.get(this.metricsReportFile).toAbsolutePath();
+        Files.createDirectories(reportPath.getParent());
+        Files.writeString(reportPath, metrics.toJson(stats), StandardCharsets.UTF_8);
+        getLog().info("Metrics report: " + reportPath);
+      }
+
+    } catch (Exception ex) {
+      throw new MojoExecutionException(ex.getMessage(), ex);
+    }
+
+    getLog().info("Done " + getClass().getName() + ".execute()");
+  }
+
+  protected void warnIgnoredByArchive() {
+    List<String> ignored = new ArrayList<>();
+    if (this.incremental) {
+      ignored.add("incremental");
+    }
+    if (this.writeIfChanged) {
+      ignored.add("writeIfChanged");
+    }
+    if (CopyStrategy.parse(this.copyStrategy) != CopyStrategy.COPY_IF_CHANGED) {
+      ignored.add("copyStrategy");
+    }
+    if (!ignored.isEmpty()) {
+      getLog().warn(String.join(", ", ignored) + " ignored: The outputs are written into outputArchive.");
+    }
+  }
+
+  protected void logParameters() {
     getLog().info("inputViewsDir: " + this.inputViewsDir);
     getLog().info("outputViewsDir: " + this.outputViewsDir);
     getLog().info("configDir: " + this.configDir);
     getLog().info("viewSuffixes: " + this.viewSuffixes);
+    getLog().info("includes: " + this.includes);
+    getLog().info("excludes: " + this.excludes);
+    getLog().info("scanThreads: " + this.scanThreads);
 
     getLog().info("debugVariables: " + this.debugVariables);
     getLog().info("removeBlankLines: " + this.removeBlankLines);
+    getLog().info("incremental: " + this.incremental);
+    getLog().info("manifestFile: " + this.manifestFile);
+    getLog().info("threads: " + this.threads);
+    getLog().info("writeIfChanged: " + this.writeIfChanged);
+    getLog().info("passthrough: " + this.passthrough);
+    getLog().info("inlineBody: " + this.inlineBody);
+    getLog().info("minifySuffixes: " + this.minifySuffixes);
+    getLog().info("streaming: " + this.streaming);
+    getLog().info("streamBufferSize: " + this.streamBufferSize);
+    getLog().info("lineSeparator: " + this.lineSeparator);
+    getLog().info("copyStrategy: " + this.copyStrategy);
+    getLog().info("gzip: " + this.gzip);
+    getLog().info("gzipLevel: " + this.gzipLevel);
+    getLog().info("gzipMinSize: " + this.gzipMinSize);
+    getLog().info("gzipSuffixes: " + this.gzipSuffixes);
+    getLog().info("cacheSize: " + this.cacheSize);
+    getLog().info("cacheFile: " + this.cacheFile);
+    getLog().info("outputArchive: " + this.outputArchive);
+    getLog().info("archivePrefix: " + this.archivePrefix);
+    getLog().info("archiveLevel: " + this.archiveLevel);
+    getLog().info("archiveTimestamp: " + this.archiveTimestamp);
+    getLog().info("slowestViews: " + this.slowestViews);
+    getLog().info("metricsReport: " + this.metricsReport);
+    getLog().info("metricsReportFile: " + this.metricsReportFile);
     getLog().info("skipPlugin: " + this.skipPlugin);
+  }
 
-    if (this.skipPlugin) {
-      getLog().info("Execution skipped because skipPlugin=true.");
-      return;
-    }
+  protected ViewProcessor newProcessor() {
+    return new ViewProcessor().inputViewsDir(this.inputViewsDir).outputViewsDir(this.outputViewsDir)
+        .configDir(this.configDir).viewSuffixes(this.viewSuffixes).includes(this.includes).excludes(this.excludes)
+        .scanThreads(this.scanThreads).debugVariables(this.debugVariables).removeBlankLines(this.removeBlankLines)
+        .incremental(this.incremental).manifestFile(this.manifestFile).threads(this.threads)
+        .writeIfChanged(this.writeIfChanged).passthrough(this.passthrough).inlineBody(this.inlineBody)
+        .minifySuffixes(this.minifySuffixes).streaming(this.streaming).streamBufferSize(this.streamBufferSize)
+        .lineSeparator(toLineSeparator(this.lineSeparator)).cacheSize(this.cacheSize)
+        .copyStrategy(CopyStrategy.parse(this.copyStrategy)).gzip(this.gzip).gzipLevel(this.gzipLevel)
+        .gzipMinSize(this.gzipMinSize).gzipSuffixes(this.gzipSuffixes).cacheFile(this.cacheFile)
+        .slowestViews(this.slowestViews);
+  }
 
+  protected ZipOutputSink newArchiveSink() {
+    return new ZipOutputSink(Paths.get(this.outputArchive.strip())).prefix(this.archivePrefix).level(this.archiveLevel)
+        .entryTime(toEntryTime(this.archiveTimestamp));
+  }
+
+  static LocalDateTime toEntryTime(String timestamp) {
+    var value = StringUtils.trimToNull(timestamp);
+
+    // Not set, or disabled by a single character like project.build.outputTimestamp
+    if (value == null || value.length() < 2) {
+      return ZipOutputSink.DEFAULT_ENTRY_TIME;
+    }
     try {
-      new ViewProcessor().inputViewsDir(this.inputViewsDir).outputViewsDir(this.outputViewsDir)
-          .configDir(this.configDir).debugVariables(this.debugVariables).removeBlankLines(this.removeBlankLines)
-          .process();
+      if (value.chars().allMatch(Character::isDigit)) {
+        return LocalDateTime.ofEpochSecond(Long.parseLong(value), 0, ZoneOffset.UTC);
+      }
+      return OffsetDateTime.parse(value).withOffsetSameInstant(ZoneOffset.UTC).toLocalDateTime();
 
-    } catch (Exception ex) {
-      throw new MojoExecutionException(ex.getMessage(), ex);
+    } catch (DateTimeParseException | NumberFormatException ex) {
+      throw new IllegalArgumentException("archiveTimestamp is invalid (archiveTimestamp=" + timestamp + ")", ex);
     }
+  }
 
-    getLog().info("Done " + getClass().getName() + ".execute()");
+  static String toLineSeparator(String lineSeparator) {
+    switch (lineSeparator.toUpperCase(Locale.ENGLISH)) {
+    case "LF":
+      return "\n";
+    case "CRLF":
+      return "\r\n";
+    case "SYSTEM":
+      return System.lineSeparator();
+    default:
+      throw new IllegalArgumentException("lineSeparator is invalid (lineSeparator=" + lineSeparator + ")");
+    }
   }
 }
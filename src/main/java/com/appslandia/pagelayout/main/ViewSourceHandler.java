@@ -31,6 +31,8 @@ import java.util.Map;
  */
 public abstract class ViewSourceHandler {
 
+  protected static final byte[][] NO_MARKERS = new byte[0][];
+
   public abstract boolean incViewFile();
 
   public abstract void handleSource(List<String> source, String sourceView, boolean layoutSource);
@@ -38,6 +40,46 @@ public abstract class ViewSourceHandler {
   public abstract void insertBody(List<String> layoutSource, int bodyPos, String bodyIndent, List<String> bodySource,
       String incViewFile);
 
+  /**
+   * The UTF-8 markers of the view lines that {@link #handleSource} may change, so that a view containing none of them,
+   * nor a directive or a variable holder, is written as is. {@code null} makes every view go through the pipeline;
+   * a subclass that changes {@link #handleSource} must override it too.
+   */
+  public byte[][] getSourceMarkers() {
+    return null;
+  }
+
+  /**
+   * Returns true if {@link #handleSource} removes the JSP page directive of a view, and changes nothing else in the view;
+   * a subclass that changes {@link #handleSource} must override it too.
+   */
+  public boolean hasPageDirective() {
+    return false;
+  }
+
+  /**
+   * Returns the handler splicing the view body into the layout instead of including the {@code _inc} file. This handler
+   * if its body is already spliced; a subclass of a built-in handler must override it to keep its changes.
+   */
+  public ViewSourceHandler inlineBody() {
+    return this;
+  }
+
+  /**
+   * Returns true if {@link #insertBody} changes the body lines, beyond splicing them as they are. The views of such a
+   * handler are not streamed.
+   */
+  public boolean changesBody() {
+    return false;
+  }
+
+  protected static void spliceBody(List<String> layoutSource, int bodyPos, String bodyIndent,
+      List<String> bodySource) {
+    layoutSource.add(bodyPos, bodyIndent + "<!-- @doBody begin -->");
+    layoutSource.addAll(bodyPos + 1, bodySource);
+    layoutSource.add(bodyPos + 1 + bodySource.size(), bodyIndent + "<!-- @doBody end -->");
+  }
+
   static final Map<String, ViewSourceHandler> handlers;
   static {
     Map<String, ViewSourceHandler> map = new HashMap<>();
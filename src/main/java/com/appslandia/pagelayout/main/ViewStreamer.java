@@ -0,0 +1,584 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.main;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.appslandia.pagelayout.utils.DirectiveLexer;
+import com.appslandia.pagelayout.utils.LineReader;
+import com.appslandia.pagelayout.utils.VariableResolver;
+import com.appslandia.pagelayout.utils.ViewSourceUtils;
+import com.appslandia.pagelayout.utils.ViewUtils;
+
+/**
+ * Processes a view without loading it: a first read collects its variables and the line ranges of its directives, the
+ * body & the sections are then read again while the outputs are written, with the variables replaced line by line.
+ *
+ * <p>
+ * The memory used is bounded by the buffer size and the longest line, not by the view size. The outputs are the same
+ * as the ones of the in-memory pipeline.
+ * </p>
+ *
+ * @author Loc Ha
+ *
+ */
+public class ViewStreamer implements Closeable {
+
+  // The body lines passed to ViewSourceHandler.insertBody: all but the last one, then the last one. The layout lines
+  // differing between the two inserts are the indexes of the body lines, see ViewSourceHandler.changesBody()
+  static final List<String> BODY_SLOTS = List.of("@doBody head", "@doBody tail");
+  static final List<String> OTHER_BODY_SLOTS = List.of("@doBody head (other)", "@doBody tail (other)");
+
+  final String viewName;
+  final boolean removeBlankLines;
+  final boolean pageDirective;
+  final int bufferSize;
+
+  final LineReader reader;
+  LineReader sectionReader;
+  final Path viewPath;
+
+  // @variables: Parsed on the source lines
+  final Map<String, String> variables = new LinkedHashMap<>();
+  final List<int[]> variablesRanges = new ArrayList<>();
+  int sourceLines;
+  boolean holderLines;
+  boolean holderMarkers;
+
+  // Page directive & sections: Parsed on the lines with the variables replaced
+  int[] pageDirRange;
+  final Map<String, Section> sections = new HashMap<>();
+  int bodyLines;
+  boolean bodyDoBody;
+  IllegalArgumentException pageDirError;
+  IllegalArgumentException sectionError;
+
+  VariableResolver resolver;
+  List<String> extraLines = Collections.emptyList();
+  List<int[]> bodyRemoved;
+
+  // Body cursor
+  int bodyIndex;
+  int extraIndex;
+  int removedIndex;
+
+  public ViewStreamer(Path viewPath, String viewName, ViewSourceHandler handler, int bufferSize,
+      boolean removeBlankLines) throws IOException {
+    this.viewPath = viewPath;
+    this.viewName = viewName;
+    this.bufferSize = bufferSize;
+    this.removeBlankLines = removeBlankLines;
+    this.pageDirective = handler.hasPageDirective();
+    this.reader = new LineReader(viewPath, bufferSize);
+  }
+
+  /**
+   * Returns true if the view source changes of the handler are known: none, or the JSP page directive removal; and
+   * its body is included or spliced as is.
+   */
+  public static boolean isStreamable(ViewSourceHandler handler) {
+    var markers = handler.getSourceMarkers();
+    return (markers != null) && ((markers.length == 0) || handler.hasPageDirective()) && !handler.changesBody();
+  }
+
+  /**
+   * Reads the view: its variables, and its page directive & section ranges as if no variable was replaced.
+   *
+   * @return the variables of the view
+   */
+  public Map<String, String> scan() throws IOException {
+    scan(null);
+    return Collections.unmodifiableMap(this.variables);
+  }
+
+  public int getSourceLines() {
+    return this.sourceLines;
+  }
+
+  /**
+   * Sets the variables of the view merged with its layout's, and the lines added to its body.
+   *
+   * <p>
+   * The view is read again if a replaced variable can change its directives: a holder on a line with a {@code -} or a
+   * {@code %}, or a value with one of them, or a holder on a line that can become blank.
+   * </p>
+   */
+  public void resolve(Map<String, String> mergedVariables, List<String> extraLines) throws IOException {
+    this.resolver = new VariableResolver(mergedVariables);
+    this.extraLines = extraLines;
+
+    if (this.holderLines && (this.holderMarkers || this.removeBlankLines || hasMarkers(mergedVariables.values()))) {
+      scan(this.resolver);
+    }
+    if (this.pageDirError != null) {
+      throw this.pageDirError;
+    }
+    if (this.sectionError != null) {
+      throw this.sectionError;
+    }
+
+    // Ranges removed from the body
+    List<int[]> removed = new ArrayList<>(this.variablesRanges);
+    if (this.pageDirRange != null) {
+      removed.add(this.pageDirRange);
+    }
+    for (Section section : this.sections.values()) {
+      removed.add(new int[] { section.begin, section.end });
+    }
+    removed.sort(Comparator.comparingInt(r -> r[0]));
+    this.bodyRemoved = removed;
+  }
+
+  static boolean hasMarkers(Collection<String> values) {
+    for (String value : values) {
+      if (value.indexOf('-') >= 0 || value.indexOf('%') >= 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // resolver: null on the first read, the variables are collected
+  void scan(VariableResolver resolver) throws IOException {
+    var collect = (resolver == null);
+    this.pageDirRange = null;
+    this.sections.clear();
+    this.bodyLines = 0;
+    this.bodyDoBody = false;
+    this.pageDirError = null;
+    this.sectionError = null;
+
+    var reader = this.reader;
+    reader.seek(0);
+
+    var index = -1;
+    var varStart = -1;
+    IllegalArgumentException varError = null;
+    var rangeIndex = 0;
+
+    var pageDirStart = -1;
+    String pageDirLine = null;
+    Section section = null;
+
+    String line;
+    while ((line = reader.readLine()) != null) {
+      index++;
+
+      // @variables
+      if (collect) {
+        if (varStart >= 0) {
+          if (DirectiveLexer.is(line, DirectiveLexer.VARIABLES_END)) {
+            if (varError != null) {
+              throw varError;
+            }
+            this.variablesRanges.add(new int[] { varStart, index });
+            varStart = -1;
+
+          } else if (varError == null) {
+            try {
+              ViewSourceUtils.parseVariable(line, this.viewName, this.variables);
+            } catch (IllegalArgumentException ex) {
+              varError = ex;
+            }
+          }
+          continue;
+        }
+        if (DirectiveLexer.is(line, DirectiveLexer.VARIABLES_BEGIN)) {
+          varStart = index;
+          continue;
+        }
+        if (line.indexOf("@(") >= 0) {
+          this.holderLines = true;
+          this.holderMarkers |= (line.indexOf('-') >= 0) || (line.indexOf('%') >= 0);
+        }
+      } else {
+        while ((rangeIndex < this.variablesRanges.size()) && (this.variablesRanges.get(rangeIndex)[1] < index)) {
+          rangeIndex++;
+        }
+        if ((rangeIndex < this.variablesRanges.size()) && (this.variablesRanges.get(rangeIndex)[0] <= index)) {
+          continue;
+        }
+        line = resolver.resolve(line);
+      }
+
+      if (this.removeBlankLines && DirectiveLexer.isBlank(line)) {
+        continue;
+      }
+      var flags = DirectiveLexer.classify(line);
+
+      // JSP: The page directive is removed before the sections are parsed
+      if (this.pageDirective && ((pageDirStart >= 0) || ((flags & DirectiveLexer.PAGE_DIRECTIVE) != 0))) {
+        if (pageDirStart < 0) {
+          pageDirStart = index;
+          pageDirLine = line;
+        }
+        if ((flags & DirectiveLexer.DIRECTIVE_END) != 0) {
+          if (this.pageDirRange == null) {
+            this.pageDirRange = new int[] { pageDirStart, index };
+
+          } else if (this.pageDirError == null) {
+            this.pageDirError = new IllegalArgumentException(
+                "<% page ... %> is duplicated (sourceView=" + this.viewName + ")");
+          }
+          pageDirStart = -1;
+        }
+        continue;
+      }
+
+      // Sections
+      if (section != null) {
+        if ((flags & DirectiveLexer.SECTION_END) != 0) {
+          section.end = index;
+          if (this.sections.putIfAbsent(section.name, section) != null) {
+            sectionError(new IllegalArgumentException(
+                "@" + section.name + " is duplicated (viewName=" + this.viewName + ")"));
+          }
+          section = null;
+
+        } else if ((flags & DirectiveLexer.SECTION_BEGIN) != 0) {
+          sectionError(new IllegalArgumentException(
+              "@" + section.name + " must have a closing directive (viewName=" + this.viewName + ")"));
+          section = null;
+        }
+        continue;
+      }
+      if ((flags & DirectiveLexer.SECTION_BEGIN) != 0) {
+        section = new Section(ViewSourceUtils.getSectionName(line), index, reader.getOffset());
+        continue;
+      }
+
+      this.bodyLines++;
+      this.bodyDoBody |= (flags & DirectiveLexer.DO_BODY) != 0;
+    }
+
+    if (collect) {
+      this.sourceLines = index + 1;
+      if (varStart >= 0) {
+        throw new IllegalArgumentException(
+            "@variables must have a closing directive (viewName=" + this.viewName + ")");
+      }
+    }
+    if ((pageDirStart >= 0) && (this.pageDirError == null)) {
+      this.pageDirError = new IllegalArgumentException(
+          "No close for the '" + pageDirLine + "' (sourceView=" + this.viewName + ")");
+    }
+    if (section != null) {
+      sectionError(new IllegalArgumentException(
+          "@" + section.name + " must have a closing directive (viewName=" + this.viewName + ")"));
+    }
+  }
+
+  void sectionError(IllegalArgumentException error) {
+    if (this.sectionError == null) {
+      this.sectionError = error;
+    }
+  }
+
+  /**
+   * Writes the body of the view: the view without its directives, the section holders are kept.
+   */
+  public void writeBody(LineWriter out) throws IOException {
+    this.reader.seek(0);
+    this.bodyIndex = 0;
+    this.extraIndex = 0;
+    this.removedIndex = 0;
+
+    writeBodyLines(out, this.bodyLines + this.extraLines.size(), false);
+  }
+
+  /**
+   * Writes the given layout filled with the body & the sections of the view.
+   */
+  public void writeLayout(LayoutTemplate layout, ViewSourceHandler handler, LineWriter out) throws IOException {
+    for (LayoutTemplate.Segment segment : layout.segments) {
+      switch (segment.type) {
+      case LayoutTemplate.LITERAL:
+        out.write(segment.value);
+        break;
+
+      case LayoutTemplate.VARIABLE:
+        var line = this.resolver.resolve(segment.value);
+        if (!layout.removeBlankLines || !DirectiveLexer.isBlank(line)) {
+          out.write(line);
+        }
+        break;
+
+      case LayoutTemplate.BODY:
+        var bodyCount = this.bodyLines + this.extraLines.size();
+        var incViewName = ViewUtils.getInclViewName(this.viewName);
+
+        List<String> body = new ArrayList<>();
+        handler.insertBody(body, 0, segment.value, (bodyCount > 0) ? BODY_SLOTS : List.of(), incViewName);
+
+        // head, tail: -1 if the body is included
+        var head = -1;
+        var tail = -1;
+        if (bodyCount > 0) {
+          List<String> otherBody = new ArrayList<>();
+          handler.insertBody(otherBody, 0, segment.value, OTHER_BODY_SLOTS, incViewName);
+
+          var slots = indexesOfBodySlots(body, otherBody, layout.layoutViewName);
+          if (slots != null) {
+            head = slots[0];
+            tail = slots[1];
+          }
+        }
+
+        for (var i = 0; i < body.size(); i++) {
+          var doBody = (i == head || i == tail) ? this.bodyDoBody
+              : DirectiveLexer.is(body.get(i), DirectiveLexer.DO_BODY);
+          if (doBody) {
+            throw new IllegalArgumentException("@doBody is duplicated (layoutViewName=" + layout.layoutViewName + ")");
+          }
+        }
+
+        // An inlined body can have section holders
+        this.reader.seek(0);
+        this.bodyIndex = 0;
+        this.extraIndex = 0;
+        this.removedIndex = 0;
+
+        for (var i = 0; i < body.size(); i++) {
+          if (i == head) {
+            writeBodyLines(out, bodyCount - 1, true);
+
+          } else if (i == tail) {
+            writeBodyLines(out, 1, true);
+          } else {
+            writeLine(body.get(i), out);
+          }
+        }
+        break;
+
+      default:
+        writeLine(segment.value, out);
+        break;
+      }
+    }
+  }
+
+  // @return the indexes of the head & tail body lines, null if the body is included
+  static int[] indexesOfBodySlots(List<String> body, List<String> otherBody, String layoutViewName) {
+    List<Integer> indexes = new ArrayList<>(2);
+    for (var i = 0; (i < body.size()) && (body.size() == otherBody.size()); i++) {
+      if (!body.get(i).equals(otherBody.get(i))) {
+        indexes.add(i);
+      }
+    }
+    if (indexes.isEmpty() && (body.size() == otherBody.size())) {
+      return null;
+    }
+    if ((indexes.size() != 2) || !body.get(indexes.get(0)).equals(BODY_SLOTS.get(0))) {
+      throw new IllegalArgumentException("The body lines are changed (layoutViewName=" + layoutViewName + ")");
+    }
+    return new int[] { indexes.get(0), indexes.get(1) };
+  }
+
+  // Writes the next body lines
+  void writeBodyLines(LineWriter out, int count, boolean replaceSections) throws IOException {
+    var written = 0;
+    while (written < count) {
+      String line;
+      if (this.bodyIndex < this.sourceLines) {
+        line = this.reader.readLine();
+        var index = this.bodyIndex++;
+
+        while ((this.removedIndex < this.bodyRemoved.size()) && (this.bodyRemoved.get(this.removedIndex)[1] < index)) {
+          this.removedIndex++;
+        }
+        if ((this.removedIndex < this.bodyRemoved.size()) && (this.bodyRemoved.get(this.removedIndex)[0] <= index)) {
+          continue;
+        }
+        line = this.resolver.resolve(line);
+        if (this.removeBlankLines && DirectiveLexer.isBlank(line)) {
+          continue;
+        }
+      } else {
+        line = this.extraLines.get(this.extraIndex++);
+      }
+
+      if (replaceSections) {
+        writeLine(line, out);
+      } else {
+        out.write(line);
+      }
+      written++;
+    }
+  }
+
+  // Replaces a section holder, see ViewSourceUtils.replaceSections
+  void writeLine(String line, LineWriter out) throws IOException {
+    if (!DirectiveLexer.is(line, DirectiveLexer.SECTION_HOLDER)) {
+      out.write(line);
+      return;
+    }
+    var sectionName = line.substring(line.indexOf("@") + 1, line.indexOf("-->")).strip();
+
+    var sectionRequired = true;
+    if (sectionName.endsWith("?")) {
+      sectionName = sectionName.substring(0, sectionName.length() - 1);
+      sectionRequired = false;
+    }
+
+    var section = this.sections.get(sectionName);
+    if (section != null) {
+      // A section inserted again has its directives once more, like the in-memory pipeline
+      var uses = ++section.uses;
+      for (var i = 0; i < uses; i++) {
+        out.write("<!-- @" + sectionName + " begin -->");
+      }
+      writeSection(section, out);
+      for (var i = 0; i < uses; i++) {
+        out.write("<!-- @" + sectionName + " end -->");
+      }
+    } else {
+      if (sectionRequired) {
+        throw new IllegalArgumentException("@" + sectionName + " is required (viewName=" + this.viewName + ")");
+      } else {
+        out.write("<!-- @" + sectionName + "? undefined -->");
+      }
+    }
+  }
+
+  void writeSection(Section section, LineWriter out) throws IOException {
+    if (this.sectionReader == null) {
+      this.sectionReader = new LineReader(this.viewPath, this.bufferSize);
+    }
+    var reader = this.sectionReader;
+    reader.seek(section.contentOffset);
+
+    for (var index = section.begin + 1; index < section.end; index++) {
+      var line = reader.readLine();
+      if (isVariablesLine(index) || isPageDirLine(index)) {
+        continue;
+      }
+      line = this.resolver.resolve(line);
+      if (this.removeBlankLines && DirectiveLexer.isBlank(line)) {
+        continue;
+      }
+
+      // The inserted sections are scanned too
+      if (DirectiveLexer.is(line, DirectiveLexer.SECTION_HOLDER)) {
+        var offset = reader.getOffset();
+        writeLine(line, out);
+        reader.seek(offset);
+      } else {
+        out.write(line);
+      }
+    }
+  }
+
+  boolean isVariablesLine(int index) {
+    var low = 0;
+    var high = this.variablesRanges.size() - 1;
+    while (low <= high) {
+      var mid = (low + high) >>> 1;
+      var range = this.variablesRanges.get(mid);
+      if (range[1] < index) {
+        low = mid + 1;
+      } else if (range[0] > index) {
+        high = mid - 1;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  boolean isPageDirLine(int index) {
+    return (this.pageDirRange != null) && (this.pageDirRange[0] <= index) && (index <= this.pageDirRange[1]);
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      this.reader.close();
+    } finally {
+      if (this.sectionReader != null) {
+        this.sectionReader.close();
+      }
+    }
+  }
+
+  static class Section {
+    final String name;
+    final int begin;
+    final long contentOffset;
+    int end;
+    int uses;
+
+    Section(String name, int begin, long contentOffset) {
+      this.name = name;
+      this.begin = begin;
+      this.contentOffset = contentOffset;
+    }
+  }
+
+  /**
+   * Writes lines separated by the line separator through a buffer.
+   */
+  public static class LineWriter implements Closeable {
+
+    final Writer writer;
+    final String lineSeparator;
+    int lines;
+
+    public LineWriter(Path file, String lineSeparator, int bufferSize) throws IOException {
+      this.writer = new BufferedWriter(new OutputStreamWriter(
+          Files.newOutputStream(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), StandardCharsets.UTF_8),
+          bufferSize);
+      this.lineSeparator = lineSeparator;
+    }
+
+    public void write(String line) throws IOException {
+      if (this.lines > 0) {
+        this.writer.write(this.lineSeparator);
+      }
+      this.writer.write(line);
+      this.lines++;
+    }
+
+    public int getLines() {
+      return this.lines;
+    }
+
+    @Override
+    public void close() throws IOException {
+      this.writer.close();
+    }
+  }
+}
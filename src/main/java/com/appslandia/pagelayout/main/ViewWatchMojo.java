@@ -0,0 +1,66 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.main;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import com.appslandia.pagelayout.utils.FileNameUtils;
+
+/**
+ * Stays resident and regenerates the views affected by the changes under inputViewsDir.
+ *
+ * @author Loc Ha
+ *
+ */
+@Mojo(name = "watch", requiresDirectInvocation = true)
+public class ViewWatchMojo extends ViewProcessorMojo {
+
+  @Parameter(property = "debounceMillis", defaultValue = "50")
+  protected long debounceMillis;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    this.inputViewsDir = FileNameUtils.toUnixPath(this.inputViewsDir);
+
+    getLog().info("Invoking " + getClass().getName() + ".execute()");
+    logParameters();
+    getLog().info("debounceMillis: " + this.debounceMillis);
+
+    if (this.skipPlugin) {
+      getLog().info("Execution skipped because skipPlugin=true.");
+      return;
+    }
+
+    try {
+      var processor = newProcessor().incremental(true);
+      new ViewWatcher(processor).debounceMillis(this.debounceMillis).logger(getLog()::info)
+          .errorLogger(getLog()::error).watch();
+
+    } catch (Exception ex) {
+      throw new MojoExecutionException(ex.getMessage(), ex);
+    }
+
+    getLog().info("Done " + getClass().getName() + ".execute()");
+  }
+}
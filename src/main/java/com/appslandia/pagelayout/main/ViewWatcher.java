@@ -0,0 +1,181 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.main;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import com.appslandia.pagelayout.utils.Arguments;
+
+/**
+ * Watches the input views directory and regenerates the affected views with {@link ViewProcessor#processChanges}.
+ *
+ * <p>
+ * Events are coalesced until no new event arrives within {@code debounceMillis}, so a burst of events (editor save,
+ * VCS checkout) is handled by a single run.
+ * </p>
+ *
+ * @author Loc Ha
+ *
+ */
+public class ViewWatcher {
+
+  final ViewProcessor processor;
+  final Path inViewsPath;
+  final Path outViewsPath;
+
+  private long debounceMillis = 50;
+  private Consumer<String> logger = message -> {
+  };
+  private BiConsumer<String, Throwable> errorLogger = (message, error) -> {
+  };
+
+  final Map<WatchKey, Path> watchKeys = new HashMap<>();
+
+  public ViewWatcher(ViewProcessor processor) {
+    this.processor = Arguments.notNull(processor);
+    this.inViewsPath = processor.getInputViewsPath().toAbsolutePath().normalize();
+    this.outViewsPath = processor.getOutputViewsPath().toAbsolutePath().normalize();
+  }
+
+  public ViewWatcher debounceMillis(long debounceMillis) {
+    Arguments.isTrue(debounceMillis >= 0, "debounceMillis must be >= 0");
+    this.debounceMillis = debounceMillis;
+    return this;
+  }
+
+  public ViewWatcher logger(Consumer<String> logger) {
+    this.logger = Arguments.notNull(logger);
+    return this;
+  }
+
+  public ViewWatcher errorLogger(BiConsumer<String, Throwable> errorLogger) {
+    this.errorLogger = Arguments.notNull(errorLogger);
+    return this;
+  }
+
+  /**
+   * Runs a first {@link ViewProcessor#process()}, then blocks until the current thread is interrupted.
+   */
+  public void watch() throws Exception {
+    try (var watchService = FileSystems.getDefault().newWatchService()) {
+      register(watchService, this.inViewsPath);
+
+      this.processor.process();
+      this.logger.accept("Watching " + this.inViewsPath + " (" + this.processor.getStats() + ")");
+
+      while (!Thread.currentThread().isInterrupted()) {
+        Set<Path> changedPaths = new LinkedHashSet<>();
+        boolean overflow;
+        try {
+          overflow = pollEvents(watchService, watchService.take(), changedPaths);
+
+          // Coalesce
+          WatchKey key;
+          while ((key = watchService.poll(this.debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+            overflow |= pollEvents(watchService, key, changedPaths);
+          }
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+
+        if (!overflow && changedPaths.isEmpty()) {
+          continue;
+        }
+        var start = System.nanoTime();
+        try {
+          ProcessStats stats;
+          if (overflow) {
+            this.processor.process();
+            stats = this.processor.getStats();
+          } else {
+            stats = this.processor.processChanges(changedPaths);
+          }
+          this.logger.accept("Processed " + changedPaths.size() + " change(s) in "
+              + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms (" + stats + ")");
+
+        } catch (Exception ex) {
+          // Keep watching, the next change may fix the error
+          this.errorLogger.accept("Failed to process changes: " + ex, ex);
+        }
+      }
+    } finally {
+      this.watchKeys.clear();
+    }
+  }
+
+  protected boolean pollEvents(WatchService watchService, WatchKey key, Set<Path> changedPaths) throws IOException {
+    var dir = this.watchKeys.get(key);
+    var overflow = false;
+
+    for (var event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW) {
+        overflow = true;
+        continue;
+      }
+      if (dir == null) {
+        continue;
+      }
+      var path = dir.resolve((Path) event.context());
+      if (path.startsWith(this.outViewsPath)) {
+        continue;
+      }
+      changedPaths.add(path);
+
+      // New directory
+      if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+        register(watchService, path);
+      }
+    }
+    if (!key.reset()) {
+      this.watchKeys.remove(key);
+    }
+    return overflow;
+  }
+
+  protected void register(WatchService watchService, Path root) throws IOException {
+    try (var dirs = Files.walk(root)) {
+      for (Path dir : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) {
+        if (dir.startsWith(this.outViewsPath)) {
+          continue;
+        }
+        this.watchKeys.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+      }
+    }
+  }
+}
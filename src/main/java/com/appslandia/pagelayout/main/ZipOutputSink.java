@@ -0,0 +1,167 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.main;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.appslandia.pagelayout.utils.Arguments;
+
+/**
+ * Writes the outputs into a ZIP/JAR archive.
+ *
+ * <p>
+ * The archive is reproducible: the entries, and their parent directories, are sorted by name and all have the same
+ * time. Nothing is written before {@link #close()}: the views are kept in memory, the copied files are read from
+ * their sources by {@link #close()}. The archive is written to a temporary file first, then moved.
+ * </p>
+ *
+ * @author Loc Ha
+ *
+ */
+public class ZipOutputSink implements OutputSink, Closeable {
+
+  // The earliest DOS time, 1980-01-01, is read differently by some tools
+  public static final LocalDateTime DEFAULT_ENTRY_TIME = LocalDateTime.of(1980, 2, 1, 0, 0);
+
+  final Path archive;
+  final Map<String, Object> entries = new ConcurrentSkipListMap<>();
+
+  String prefix = "";
+  int level = Deflater.DEFAULT_COMPRESSION;
+  LocalDateTime entryTime = DEFAULT_ENTRY_TIME;
+  boolean closed;
+
+  public ZipOutputSink(Path archive) {
+    this.archive = Arguments.notNull(archive);
+  }
+
+  /**
+   * Directory of the entries in the archive, e.g. {@code META-INF/resources/WEB-INF/views}.
+   */
+  public ZipOutputSink prefix(String prefix) {
+    var dir = (prefix == null) ? "" : prefix.strip().replace('\\', '/');
+    while (dir.startsWith("/")) {
+      dir = dir.substring(1);
+    }
+    this.prefix = (dir.isEmpty() || dir.endsWith("/")) ? dir : dir + "/";
+    return this;
+  }
+
+  /**
+   * Deflate level: {@code 0} (no compression) to {@code 9}, {@code -1} for the default level.
+   */
+  public ZipOutputSink level(int level) {
+    Arguments.isTrue(level >= -1 && level <= 9, "level must be in [-1, 9]");
+    this.level = level;
+    return this;
+  }
+
+  /**
+   * Time of all the entries, {@link #DEFAULT_ENTRY_TIME} by default. It is stored as is, in no time zone.
+   */
+  public ZipOutputSink entryTime(LocalDateTime entryTime) {
+    this.entryTime = Arguments.notNull(entryTime);
+    return this;
+  }
+
+  public Path getArchive() {
+    return this.archive;
+  }
+
+  @Override
+  public void write(String path, byte[] content) {
+    this.entries.put(this.prefix + path, content);
+  }
+
+  @Override
+  public void copy(String path, Path source) {
+    this.entries.put(this.prefix + path, source);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+
+    var parent = this.archive.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    var tmpFile = Files.createTempFile(parent, this.archive.getFileName().toString(), ".tmp");
+    try {
+      try (var zos = new ZipOutputStream(Files.newOutputStream(tmpFile))) {
+        zos.setLevel(this.level);
+
+        // A directory comes right before its entries
+        for (String name : getNames()) {
+          zos.putNextEntry(newEntry(name));
+
+          var content = this.entries.get(name);
+          if (content != null) {
+            writeContent(content, zos);
+          }
+          zos.closeEntry();
+        }
+      }
+      Files.move(tmpFile, this.archive, StandardCopyOption.REPLACE_EXISTING);
+
+    } finally {
+      Files.deleteIfExists(tmpFile);
+    }
+  }
+
+  TreeSet<String> getNames() {
+    var names = new TreeSet<String>(this.entries.keySet());
+    for (String name : this.entries.keySet()) {
+      var idx = name.lastIndexOf('/');
+      while (idx > 0 && names.add(name.substring(0, idx + 1))) {
+        idx = name.lastIndexOf('/', idx - 1);
+      }
+    }
+    return names;
+  }
+
+  ZipEntry newEntry(String name) {
+    var entry = new ZipEntry(name);
+    entry.setTimeLocal(this.entryTime);
+    return entry;
+  }
+
+  static void writeContent(Object content, OutputStream os) throws IOException {
+    if (content instanceof byte[]) {
+      os.write((byte[]) content);
+    } else {
+      Files.copy((Path) content, os);
+    }
+  }
+}
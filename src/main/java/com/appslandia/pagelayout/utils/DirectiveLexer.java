@@ -0,0 +1,196 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Classifies source lines into directive tokens in a single pass.
+ *
+ * <p>
+ * Plain markup lines are rejected by a prefilter (every directive contains {@code --} or {@code %}), so the directive
+ * patterns only run on candidate lines.
+ * </p>
+ *
+ * @author Loc Ha
+ *
+ */
+public class DirectiveLexer {
+
+  // <!-- @variables
+  public static final int VARIABLES_BEGIN = 1;
+
+  // -->
+  public static final int VARIABLES_END = 1 << 1;
+
+  // <!-- @variables:fileLocation -->
+  public static final int VARIABLES_FILE = 1 << 2;
+
+  // <!-- @someSection begin -->
+  public static final int SECTION_BEGIN = 1 << 3;
+
+  // <!-- @someSection end -->
+  public static final int SECTION_END = 1 << 4;
+
+  // <!-- @doBody -->
+  public static final int DO_BODY = 1 << 5;
+
+  // <!-- @someSection? -->
+  public static final int SECTION_HOLDER = 1 << 6;
+
+  // <%@ page ...
+  public static final int PAGE_DIRECTIVE = 1 << 7;
+
+  // ... %>
+  public static final int DIRECTIVE_END = 1 << 8;
+
+  static final Pattern varStartPattern = Pattern.compile("^\\s*<!--\\s*@variables\\s*$", Pattern.CASE_INSENSITIVE);
+
+  static final Pattern varEndPattern = Pattern.compile("^\\s*-->\\s*$");
+
+  static final Pattern varFilePattern = Pattern.compile("^\\s*<!--\\s*@variables\\s*:\\s*[^\\s]+\\s*-->\\s*$",
+      Pattern.CASE_INSENSITIVE);
+
+  static final Pattern sectionStartPattern = Pattern.compile("^\\s*<!--\\s*@[^\\s]+\\s+begin\\s*-->\\s*$",
+      Pattern.CASE_INSENSITIVE);
+
+  static final Pattern sectionEndPattern = Pattern.compile("^\\s*<!--\\s*@[^\\s]+\\s+end\\s*-->\\s*$",
+      Pattern.CASE_INSENSITIVE);
+
+  static final Pattern doBodyPattern = Pattern.compile("^\\s*<!--\\s*@doBody\\s*-->\\s*$", Pattern.CASE_INSENSITIVE);
+
+  static final Pattern sectionPattern = Pattern.compile("^\\s*<!--\\s*@\\w+(\\?)?\\s*-->\\s*$",
+      Pattern.CASE_INSENSITIVE);
+
+  static final Pattern startPageDirPattern = Pattern.compile("^\\s*<%@\\s*page.*");
+
+  static final Pattern endDirPattern = Pattern.compile(".*%>\\s*$");
+
+  public static int classify(String line) {
+    var dashes = line.indexOf("--");
+    var percent = line.indexOf('%');
+    if (dashes < 0 && percent < 0) {
+      return 0;
+    }
+
+    var lead = 0;
+    while (lead < line.length() && isSpace(line.charAt(lead))) {
+      lead++;
+    }
+
+    var flags = 0;
+    if (dashes >= 0) {
+      if (line.startsWith("<!--", lead)) {
+        if (line.indexOf('@', lead) >= 0) {
+          flags |= classifyComment(line);
+        }
+      } else if (line.startsWith("-->", lead) && varEndPattern.matcher(line).matches()) {
+        flags |= VARIABLES_END;
+      }
+    }
+    if (percent >= 0) {
+      if (line.startsWith("<%@", lead) && startPageDirPattern.matcher(line).matches()) {
+        flags |= PAGE_DIRECTIVE;
+      }
+      if (line.indexOf("%>", percent) >= 0 && endDirPattern.matcher(line).matches()) {
+        flags |= DIRECTIVE_END;
+      }
+    }
+    return flags;
+  }
+
+  static int classifyComment(String line) {
+    var flags = 0;
+    if (varStartPattern.matcher(line).matches()) {
+      flags |= VARIABLES_BEGIN;
+    }
+    if (varFilePattern.matcher(line).matches()) {
+      flags |= VARIABLES_FILE;
+    }
+    if (sectionStartPattern.matcher(line).matches()) {
+      flags |= SECTION_BEGIN;
+    }
+    if (sectionEndPattern.matcher(line).matches()) {
+      flags |= SECTION_END;
+    }
+    if (doBodyPattern.matcher(line).matches()) {
+      flags |= DO_BODY;
+    }
+    if (sectionPattern.matcher(line).matches()) {
+      flags |= SECTION_HOLDER;
+    }
+    return flags;
+  }
+
+  // Whitespace of the regex \s class
+  public static boolean isSpace(char ch) {
+    return ch == ' ' || ch == '\t' || ch == '\n' || ch == '\u000B' || ch == '\f' || ch == '\r';
+  }
+
+  public static boolean isBlank(String line) {
+    for (var i = 0; i < line.length(); i++) {
+      if (!isSpace(line.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public static boolean is(String line, int type) {
+    return (classify(line) & type) != 0;
+  }
+
+  /**
+   * Returns the tokens of the lines matching at least one of the given types, in line order.
+   */
+  public static List<Token> tokenize(List<String> source, int types) {
+    List<Token> tokens = new ArrayList<>();
+    var i = 0;
+    for (String line : source) {
+      var flags = classify(line) & types;
+      if (flags != 0) {
+        tokens.add(new Token(i, flags));
+      }
+      i++;
+    }
+    return tokens;
+  }
+
+  public static class Token {
+    final int index;
+    final int flags;
+
+    public Token(int index, int flags) {
+      this.index = index;
+      this.flags = flags;
+    }
+
+    public int getIndex() {
+      return this.index;
+    }
+
+    public boolean is(int type) {
+      return (this.flags & type) != 0;
+    }
+  }
+}
@@ -0,0 +1,312 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Size-bounded LRU cache of values loaded from files.
+ *
+ * <p>
+ * Entries are keyed by the normalized absolute path. An entry is reused only while the modified time and the size of
+ * its file, and of the files it depends on, are unchanged. A value is loaded once: the threads getting the same file
+ * wait for it.
+ * </p>
+ *
+ * @author Loc Ha
+ *
+ */
+public class FileCache<V> {
+
+  @FunctionalInterface
+  public interface Loader<V> {
+    V load(Path file) throws Exception;
+  }
+
+  @FunctionalInterface
+  public interface Stamper {
+    FileStamp stamp(Path file) throws IOException;
+  }
+
+  final int maxSize;
+  final Function<V, Collection<Path>> dependencies;
+  final Stamper stamper;
+
+  final Map<Path, CacheEntry<V>> entries;
+  final Map<Path, Object> loadLocks = new ConcurrentHashMap<>();
+
+  final LongAdder hits = new LongAdder();
+  final LongAdder misses = new LongAdder();
+  final LongAdder evictions = new LongAdder();
+
+  public FileCache(int maxSize) {
+    this(maxSize, null);
+  }
+
+  public FileCache(int maxSize, Function<V, Collection<Path>> dependencies) {
+    this(maxSize, dependencies, FileStamp::of);
+  }
+
+  /**
+   * @param stamper
+   *          the stamps of the files, e.g. of {@link SourceFiles} kept in memory
+   */
+  public FileCache(int maxSize, Function<V, Collection<Path>> dependencies, Stamper stamper) {
+    Arguments.isTrue(maxSize > 0, "maxSize must be > 0");
+    this.maxSize = maxSize;
+    this.dependencies = dependencies;
+    this.stamper = Arguments.notNull(stamper);
+
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Path, CacheEntry<V>> eldest) {
+        if (size() > FileCache.this.maxSize) {
+          FileCache.this.evictions.increment();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  public V get(Path file, Loader<V> loader) throws Exception {
+    var key = file.toAbsolutePath().normalize();
+    var value = getValid(key);
+    if (value != null) {
+      this.hits.increment();
+      return value;
+    }
+
+    var lock = this.loadLocks.computeIfAbsent(key, k -> new Object());
+    try {
+      synchronized (lock) {
+        // Loaded by another thread?
+        value = getValid(key);
+        if (value != null) {
+          this.hits.increment();
+          return value;
+        }
+        this.misses.increment();
+
+        var stamp = this.stamper.stamp(key);
+        value = Objects.requireNonNull(loader.load(file));
+
+        List<Path> dependencyFiles = new ArrayList<>();
+        List<FileStamp> dependencyStamps = new ArrayList<>();
+        if (this.dependencies != null) {
+          for (Path dependency : this.dependencies.apply(value)) {
+            var dependencyFile = dependency.toAbsolutePath().normalize();
+            dependencyFiles.add(dependencyFile);
+            dependencyStamps.add(this.stamper.stamp(dependencyFile));
+          }
+        }
+
+        putEntry(new CacheEntry<>(key, value, stamp, dependencyFiles, dependencyStamps));
+        return value;
+      }
+    } finally {
+      this.loadLocks.remove(key, lock);
+    }
+  }
+
+  V getValid(Path key) throws IOException {
+    CacheEntry<V> entry;
+    synchronized (this.entries) {
+      entry = this.entries.get(key);
+    }
+    if (entry == null || !entry.isValid(this.stamper)) {
+      return null;
+    }
+    return entry.value;
+  }
+
+  /**
+   * Adds an entry loaded elsewhere, it is reused while its stamps match the files.
+   */
+  public void putEntry(CacheEntry<V> entry) {
+    synchronized (this.entries) {
+      this.entries.put(entry.key, entry);
+    }
+  }
+
+  /**
+   * The entries from the least recently used.
+   */
+  public List<CacheEntry<V>> getEntries() {
+    synchronized (this.entries) {
+      return new ArrayList<>(this.entries.values());
+    }
+  }
+
+  /**
+   * Removes the entry of the given file and the entries depending on it.
+   */
+  public void invalidate(Path file) {
+    var key = file.toAbsolutePath().normalize();
+    synchronized (this.entries) {
+      this.entries.remove(key);
+      this.entries.values().removeIf(entry -> entry.dependencyFiles.contains(key));
+    }
+  }
+
+  public void clear() {
+    synchronized (this.entries) {
+      this.entries.clear();
+    }
+  }
+
+  public int size() {
+    synchronized (this.entries) {
+      return this.entries.size();
+    }
+  }
+
+  public long getHits() {
+    return this.hits.sum();
+  }
+
+  public long getMisses() {
+    return this.misses.sum();
+  }
+
+  public long getEvictions() {
+    return this.evictions.sum();
+  }
+
+  @Override
+  public String toString() {
+    return "hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions();
+  }
+
+  public static class CacheEntry<V> {
+    final Path key;
+    final V value;
+    final FileStamp stamp;
+    final List<Path> dependencyFiles;
+    final List<FileStamp> dependencyStamps;
+
+    public CacheEntry(Path key, V value, FileStamp stamp, List<Path> dependencyFiles,
+        List<FileStamp> dependencyStamps) {
+      Arguments.isTrue(dependencyFiles.size() == dependencyStamps.size(), "dependencyStamps is invalid");
+      this.key = key.toAbsolutePath().normalize();
+      this.value = value;
+      this.stamp = stamp;
+      this.dependencyFiles = Collections.unmodifiableList(dependencyFiles);
+      this.dependencyStamps = Collections.unmodifiableList(dependencyStamps);
+    }
+
+    public boolean isValid() throws IOException {
+      return isValid(FileStamp::of);
+    }
+
+    public boolean isValid(Stamper stamper) throws IOException {
+      if (!Objects.equals(this.stamp, stamper.stamp(this.key))) {
+        return false;
+      }
+      for (var i = 0; i < this.dependencyFiles.size(); i++) {
+        if (!Objects.equals(this.dependencyStamps.get(i), stamper.stamp(this.dependencyFiles.get(i)))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    public Path getKey() {
+      return this.key;
+    }
+
+    public V getValue() {
+      return this.value;
+    }
+
+    public FileStamp getStamp() {
+      return this.stamp;
+    }
+
+    public List<Path> getDependencyFiles() {
+      return this.dependencyFiles;
+    }
+
+    public List<FileStamp> getDependencyStamps() {
+      return this.dependencyStamps;
+    }
+  }
+
+  public static class FileStamp {
+    final FileTime lastModified;
+    final long size;
+
+    public FileStamp(FileTime lastModified, long size) {
+      this.lastModified = lastModified;
+      this.size = size;
+    }
+
+    public FileTime getLastModified() {
+      return this.lastModified;
+    }
+
+    public long getSize() {
+      return this.size;
+    }
+
+    // null: the file does not exist
+    public static FileStamp of(Path file) throws IOException {
+      try {
+        var attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        return new FileStamp(attrs.lastModifiedTime(), attrs.size());
+
+      } catch (NoSuchFileException ex) {
+        return null;
+      }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof FileStamp)) {
+        return false;
+      }
+      var other = (FileStamp) obj;
+      return this.size == other.size && this.lastModified.equals(other.lastModified);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.lastModified, this.size);
+    }
+  }
+}
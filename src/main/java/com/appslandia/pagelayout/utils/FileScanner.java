@@ -0,0 +1,293 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Lists the regular files of a directory tree, following symbolic links like {@link java.io.File#isDirectory()}.
+ *
+ * <p>
+ * The include & exclude globs match the path relative to the root, with {@code /} separators. A file is kept if it
+ * matches an include glob (any file if none) and no exclude glob. A directory matched by an exclude glob, with or
+ * without its trailing <code>/&#42;&#42;</code>, is not walked at all. A leading <code>&#42;&#42;/</code> also matches
+ * at the root: <code>&#42;&#42;/node_modules</code> skips {@code node_modules} and {@code a/node_modules}.
+ * </p>
+ *
+ * @author Loc Ha
+ *
+ */
+public class FileScanner {
+
+  static final String ANY_DIRS = "**/";
+  static final String ANY_FILES = "/**";
+
+  final Path root;
+  final Set<Path> skipDirs = new HashSet<>();
+  final List<PathMatcher> includes = new ArrayList<>();
+  final List<PathMatcher> fileExcludes = new ArrayList<>();
+  final List<PathMatcher> dirExcludes = new ArrayList<>();
+  int threads = 1;
+
+  public FileScanner(Path root) {
+    this.root = Arguments.notNull(root);
+  }
+
+  /**
+   * Directory not walked, e.g. the output directory.
+   */
+  public FileScanner skipDir(Path dir) {
+    this.skipDirs.add(dir.normalize());
+    return this;
+  }
+
+  public FileScanner includes(Collection<String> globs) {
+    for (String glob : globs) {
+      addMatchers(this.includes, glob);
+    }
+    return this;
+  }
+
+  public FileScanner excludes(Collection<String> globs) {
+    for (String glob : globs) {
+      addMatchers(this.fileExcludes, glob);
+      addMatchers(this.dirExcludes, glob);
+
+      if (glob.endsWith(ANY_FILES) && glob.length() > ANY_FILES.length()) {
+        addMatchers(this.dirExcludes, glob.substring(0, glob.length() - ANY_FILES.length()));
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Number of threads walking the directories; {@code 0} uses all available processors.
+   */
+  public FileScanner threads(int threads) {
+    Arguments.isTrue(threads >= 0, "threads must be >= 0");
+    this.threads = threads;
+    return this;
+  }
+
+  static void addMatchers(List<PathMatcher> matchers, String glob) {
+    var fs = FileSystems.getDefault();
+    matchers.add(fs.getPathMatcher("glob:" + glob));
+
+    if (glob.startsWith(ANY_DIRS) && glob.length() > ANY_DIRS.length()) {
+      matchers.add(fs.getPathMatcher("glob:" + glob.substring(ANY_DIRS.length())));
+    }
+  }
+
+  static boolean matches(List<PathMatcher> matchers, Path relativePath) {
+    for (PathMatcher matcher : matchers) {
+      if (matcher.matches(relativePath)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  protected boolean acceptDir(Path dir) {
+    if (this.skipDirs.contains(dir.normalize())) {
+      return false;
+    }
+    var relativePath = this.root.relativize(dir);
+    return relativePath.toString().isEmpty() || !matches(this.dirExcludes, relativePath);
+  }
+
+  protected boolean acceptFile(Path file) {
+    var relativePath = this.root.relativize(file);
+    if (!this.includes.isEmpty() && !matches(this.includes, relativePath)) {
+      return false;
+    }
+    return !matches(this.fileExcludes, relativePath);
+  }
+
+  /**
+   * Returns true if the given path, or one of its directories under the root, is skipped or excluded.
+   */
+  public boolean isExcluded(Path path) {
+    if (!acceptParents(path)) {
+      return true;
+    }
+    return Files.isDirectory(path) ? !acceptDir(path) : !acceptFile(path);
+  }
+
+  /**
+   * Returns true if the given file would be listed, without accessing the file system.
+   */
+  public boolean accept(Path file) {
+    return acceptParents(file) && acceptFile(file);
+  }
+
+  boolean acceptParents(Path path) {
+    if (!path.startsWith(this.root)) {
+      return false;
+    }
+    for (var dir = path.getParent(); dir != null && dir.startsWith(this.root); dir = dir.getParent()) {
+      if (!acceptDir(dir)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public List<Path> scan() throws IOException {
+    return scan(this.root);
+  }
+
+  /**
+   * Lists the accepted files under the given path, a directory under the root or a file, sorted by path.
+   */
+  public List<Path> scan(Path start) throws IOException {
+    Queue<Path> files = new ConcurrentLinkedQueue<>();
+
+    if (isExcluded(start)) {
+      return new ArrayList<>();
+    }
+    var threads = (this.threads > 0) ? this.threads : Runtime.getRuntime().availableProcessors();
+    if (threads > 1 && Files.isDirectory(start)) {
+      var pool = new ForkJoinPool(threads);
+      try {
+        pool.invoke(new ScanTask(start, new ArrayList<>(), files));
+
+      } catch (UncheckedIOException ex) {
+        Throwable cause = ex;
+        while (cause instanceof UncheckedIOException) {
+          cause = cause.getCause();
+        }
+        throw (IOException) cause;
+      } finally {
+        pool.shutdownNow();
+      }
+    } else {
+      walk(start, files);
+    }
+
+    // Deterministic processing & error reporting order
+    List<Path> sorted = new ArrayList<>(files);
+    sorted.sort(Comparator.comparing(Path::toString));
+    return sorted;
+  }
+
+  protected void walk(Path start, Collection<Path> files) throws IOException {
+    Files.walkFileTree(start, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+        new SimpleFileVisitor<Path>() {
+
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+            return acceptDir(dir) ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            if (attrs.isRegularFile() && acceptFile(file)) {
+              files.add(file);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFileFailed(Path file, IOException ex) throws IOException {
+            // Symbolic link to a parent directory
+            if (ex instanceof FileSystemLoopException) {
+              return FileVisitResult.CONTINUE;
+            }
+            throw ex;
+          }
+        });
+  }
+
+  static Object dirKey(Path dir, BasicFileAttributes attrs) throws IOException {
+    var key = attrs.fileKey();
+    return (key != null) ? key : dir.toRealPath();
+  }
+
+  class ScanTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    final Path dir;
+    final List<Object> ancestorKeys;
+    final Queue<Path> files;
+
+    ScanTask(Path dir, List<Object> ancestorKeys, Queue<Path> files) {
+      this.dir = dir;
+      this.ancestorKeys = ancestorKeys;
+      this.files = files;
+    }
+
+    @Override
+    protected void compute() {
+      try {
+        var attrs = Files.readAttributes(this.dir, BasicFileAttributes.class);
+        List<Object> dirKeys = new ArrayList<>(this.ancestorKeys);
+        dirKeys.add(dirKey(this.dir, attrs));
+
+        List<ScanTask> subTasks = new ArrayList<>();
+        try (var entries = Files.newDirectoryStream(this.dir)) {
+          for (Path entry : entries) {
+            BasicFileAttributes entryAttrs;
+            try {
+              entryAttrs = Files.readAttributes(entry, BasicFileAttributes.class);
+            } catch (IOException ex) {
+              // Broken symbolic link
+              entryAttrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            }
+
+            if (entryAttrs.isDirectory()) {
+              if (acceptDir(entry) && !dirKeys.contains(dirKey(entry, entryAttrs))) {
+                subTasks.add(new ScanTask(entry, dirKeys, this.files));
+              }
+            } else if (entryAttrs.isRegularFile() && acceptFile(entry)) {
+              this.files.add(entry);
+            }
+          }
+        }
+        invokeAll(subTasks);
+
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+  }
+}
@@ -22,12 +22,22 @@ package com.appslandia.pagelayout.utils;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.FileVisitResult;
+import java.nio.file.FileSystemException;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 
 /**
  *
@@ -59,4 +69,197 @@ public class FileUtils {
       }
     });
   }
+
+  public static boolean deleteFileAndEmptyParents(Path file, Path root) throws IOException {
+    if (!Files.deleteIfExists(file)) {
+      return false;
+    }
+    var dir = file.getParent();
+    while (dir != null && !dir.equals(root) && dir.startsWith(root)) {
+      try {
+        Files.delete(dir);
+      } catch (DirectoryNotEmptyException ex) {
+        break;
+      }
+      dir = dir.getParent();
+    }
+    return true;
+  }
+
+  public static boolean hasContent(Path file, byte[] content) throws IOException {
+    return hasContent(file, content, content.length);
+  }
+
+  public static boolean hasContent(Path file, byte[] content, int length) throws IOException {
+    try {
+      if (Files.size(file) != length) {
+        return false;
+      }
+      return Arrays.equals(Files.readAllBytes(file), 0, length, content, 0, length);
+
+    } catch (NoSuchFileException ex) {
+      return false;
+    }
+  }
+
+  public static boolean hasContent(Path file, ByteBuffer content) throws IOException {
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() != content.remaining()) {
+        return false;
+      }
+      var buf = ByteBuffer.allocate(Math.min(content.remaining(), 8192));
+      var expected = content.duplicate();
+      while (expected.hasRemaining()) {
+        buf.clear().limit(Math.min(buf.capacity(), expected.remaining()));
+        while (buf.hasRemaining()) {
+          if (channel.read(buf) < 0) {
+            return false;
+          }
+        }
+        buf.flip();
+
+        var chunk = expected.slice().limit(buf.remaining());
+        if (!chunk.equals(buf)) {
+          return false;
+        }
+        expected.position(expected.position() + buf.remaining());
+      }
+      return true;
+
+    } catch (NoSuchFileException ex) {
+      return false;
+    }
+  }
+
+  public static boolean hasSameContent(Path file, Path other) throws IOException {
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ);
+        var otherChannel = FileChannel.open(other, StandardOpenOption.READ)) {
+      if (channel.size() != otherChannel.size()) {
+        return false;
+      }
+      var buf = ByteBuffer.allocate(8192);
+      var otherBuf = ByteBuffer.allocate(8192);
+      while (true) {
+        buf.clear();
+        otherBuf.clear();
+        var count = readFully(channel, buf);
+        if (count != readFully(otherChannel, otherBuf)) {
+          return false;
+        }
+        if (count == 0) {
+          return true;
+        }
+        if (!buf.flip().equals(otherBuf.flip())) {
+          return false;
+        }
+      }
+    } catch (NoSuchFileException ex) {
+      return false;
+    }
+  }
+
+  static int readFully(FileChannel channel, ByteBuffer buf) throws IOException {
+    while (buf.hasRemaining() && channel.read(buf) >= 0) {
+    }
+    return buf.position();
+  }
+
+  /**
+   * Writes the first bytes of the source channel to the target file, transferred by the OS where it can.
+   */
+  public static void transfer(FileChannel source, long count, Path target) throws IOException {
+    try (var channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      var position = 0L;
+      while (position < count) {
+        var transferred = source.transferTo(position, count - position, channel);
+        if (transferred <= 0) {
+          throw new IOException("Source is truncated (size=" + source.size() + ", count=" + count + ")");
+        }
+        position += transferred;
+      }
+    }
+  }
+
+  /**
+   * Returns true if the target is a regular file, not a link, with the size & modified time of the source.
+   */
+  public static boolean hasSameSizeAndTime(Path target, Path source) throws IOException {
+    try {
+      var targetAttrs = Files.readAttributes(target, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+      if (!targetAttrs.isRegularFile()) {
+        return false;
+      }
+      var sourceAttrs = Files.readAttributes(source, BasicFileAttributes.class);
+      return (targetAttrs.size() == sourceAttrs.size())
+          && (targetAttrs.lastModifiedTime().toMillis() == sourceAttrs.lastModifiedTime().toMillis());
+
+    } catch (NoSuchFileException ex) {
+      return false;
+    }
+  }
+
+  /**
+   * Returns true if the target is a hard link to the source, or a symbolic link to its absolute path.
+   */
+  public static boolean isLinkTo(Path target, Path source, boolean symbolic) throws IOException {
+    try {
+      if (symbolic) {
+        return Files.isSymbolicLink(target) && Files.readSymbolicLink(target).equals(source.toAbsolutePath());
+      }
+      return !Files.isSymbolicLink(target) && Files.isSameFile(target, source);
+
+    } catch (NoSuchFileException ex) {
+      return false;
+    }
+  }
+
+  /**
+   * Replaces the target by a link to the source, returns false if the file system can't link them.
+   */
+  public static boolean createLink(Path target, Path source, boolean symbolic) throws IOException {
+    Files.deleteIfExists(target);
+    try {
+      if (symbolic) {
+        Files.createSymbolicLink(target, source.toAbsolutePath());
+      } else {
+        Files.createLink(target, source);
+      }
+      return true;
+
+    } catch (UnsupportedOperationException | FileSystemException ex) {
+      return false;
+    }
+  }
+
+  public static String sha256(Path file) throws IOException {
+    var md = newSha256();
+    var buf = new byte[8192];
+    try (InputStream is = Files.newInputStream(file)) {
+      int count;
+      while ((count = is.read(buf)) != -1) {
+        md.update(buf, 0, count);
+      }
+    }
+    return toHex(md.digest());
+  }
+
+  static MessageDigest newSha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  static String toHex(byte[] bytes) {
+    var chars = new char[bytes.length * 2];
+    for (var i = 0; i < bytes.length; i++) {
+      chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0x0F];
+      chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0F];
+    }
+    return new String(chars);
+  }
 }
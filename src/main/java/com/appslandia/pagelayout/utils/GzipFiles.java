@@ -0,0 +1,141 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes the gzip sidecar of a file with a {@link Deflater}. The header has no modification time and keeps a comment,
+ * e.g. the hash of the source, which {@link #readComment(Path)} reads back without inflating the file.
+ *
+ * @author Loc Ha
+ *
+ */
+public class GzipFiles {
+
+  static final int FEXTRA = 0x04;
+  static final int FNAME = 0x08;
+  static final int FCOMMENT = 0x10;
+
+  static final int MAX_COMMENT_LENGTH = 1024;
+
+  /**
+   * @return the size of the gzip file, in bytes
+   */
+  public static long write(Path source, Path target, int level, String comment) throws IOException {
+    var commentBytes = comment.getBytes(StandardCharsets.ISO_8859_1);
+    var deflater = new Deflater(level, true);
+    var crc = new CRC32();
+    long inputSize = 0;
+
+    try (var in = Files.newInputStream(source); var out = new BufferedOutputStream(Files.newOutputStream(target))) {
+      // ID1 ID2 CM FLG, MTIME (none), XFL OS (unknown)
+      var xfl = (level == Deflater.BEST_COMPRESSION) ? 2 : (level == Deflater.BEST_SPEED) ? 4 : 0;
+      out.write(new byte[] { 0x1f, (byte) 0x8b, Deflater.DEFLATED, FCOMMENT, 0, 0, 0, 0, (byte) xfl, (byte) 255 });
+      out.write(commentBytes);
+      out.write(0);
+
+      var buf = new byte[8192];
+      var deflated = new byte[8192];
+      int count;
+      while ((count = in.read(buf)) != -1) {
+        crc.update(buf, 0, count);
+        inputSize += count;
+
+        deflater.setInput(buf, 0, count);
+        while (!deflater.needsInput()) {
+          out.write(deflated, 0, deflater.deflate(deflated));
+        }
+      }
+      deflater.finish();
+      while (!deflater.finished()) {
+        out.write(deflated, 0, deflater.deflate(deflated));
+      }
+
+      // CRC32 & ISIZE
+      writeIntLE(out, crc.getValue());
+      writeIntLE(out, inputSize);
+      return 10 + commentBytes.length + 1 + deflater.getBytesWritten() + 8;
+
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * @return the comment of the given gzip file, {@code null} if the file does not exist or has no comment
+   */
+  public static String readComment(Path gzipFile) throws IOException {
+    try (var in = new BufferedInputStream(Files.newInputStream(gzipFile))) {
+      if ((in.read() != 0x1f) || (in.read() != 0x8b) || (in.read() != Deflater.DEFLATED)) {
+        return null;
+      }
+      var flags = in.read();
+      if ((flags < 0) || (in.skip(6) != 6)) {
+        return null;
+      }
+      if ((flags & FEXTRA) != 0) {
+        var length = in.read() | (in.read() << 8);
+        if ((length < 0) || (in.skip(length) != length)) {
+          return null;
+        }
+      }
+      if ((flags & FNAME) != 0) {
+        if (readZeroTerminated(in) == null) {
+          return null;
+        }
+      }
+      return ((flags & FCOMMENT) != 0) ? readZeroTerminated(in) : null;
+
+    } catch (NoSuchFileException ex) {
+      return null;
+    }
+  }
+
+  static String readZeroTerminated(InputStream in) throws IOException {
+    var sb = new StringBuilder();
+    int b;
+    while ((b = in.read()) > 0) {
+      if (sb.length() == MAX_COMMENT_LENGTH) {
+        return null;
+      }
+      sb.append((char) b);
+    }
+    return (b == 0) ? sb.toString() : null;
+  }
+
+  static void writeIntLE(OutputStream out, long value) throws IOException {
+    out.write((int) (value & 0xFF));
+    out.write((int) ((value >> 8) & 0xFF));
+    out.write((int) ((value >> 16) & 0xFF));
+    out.write((int) ((value >> 24) & 0xFF));
+  }
+}
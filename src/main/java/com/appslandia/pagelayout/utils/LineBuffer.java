@@ -0,0 +1,222 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+/**
+ * Gap buffer of source lines.
+ *
+ * <p>
+ * The free slots are kept at the last edited position, so inserts and range removals that move forward through the
+ * source only shift the lines between two edits instead of the whole tail.
+ * </p>
+ *
+ * @author Loc Ha
+ *
+ */
+public class LineBuffer extends AbstractList<String> implements RandomAccess {
+
+  static final int DEFAULT_CAPACITY = 16;
+
+  String[] lines;
+  int gapStart;
+  int gapEnd;
+
+  public LineBuffer() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  public LineBuffer(int capacity) {
+    Arguments.isTrue(capacity >= 0, "capacity must be >= 0");
+    this.lines = new String[capacity];
+    this.gapEnd = capacity;
+  }
+
+  public LineBuffer(Collection<String> source) {
+    this(source.size());
+    addAll(source);
+  }
+
+  public static LineBuffer readAll(Path file) throws IOException {
+    try (var reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      return readAll(reader);
+    }
+  }
+
+  public static LineBuffer readAll(BufferedReader reader) throws IOException {
+    var lines = new LineBuffer();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      lines.add(line);
+    }
+    return lines;
+  }
+
+  int gapLength() {
+    return this.gapEnd - this.gapStart;
+  }
+
+  @Override
+  public int size() {
+    return this.lines.length - gapLength();
+  }
+
+  @Override
+  public String get(int index) {
+    checkIndex(index, size());
+    return this.lines[index < this.gapStart ? index : index + gapLength()];
+  }
+
+  @Override
+  public String set(int index, String line) {
+    checkIndex(index, size());
+    var i = index < this.gapStart ? index : index + gapLength();
+    var old = this.lines[i];
+    this.lines[i] = line;
+    return old;
+  }
+
+  @Override
+  public boolean add(String line) {
+    add(size(), line);
+    return true;
+  }
+
+  @Override
+  public void add(int index, String line) {
+    checkIndex(index, size() + 1);
+    moveGap(index);
+    ensureGap(1);
+
+    this.lines[this.gapStart++] = line;
+    this.modCount++;
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends String> source) {
+    return addAll(size(), source);
+  }
+
+  @Override
+  public boolean addAll(int index, Collection<? extends String> source) {
+    checkIndex(index, size() + 1);
+    var added = source.toArray();
+    if (added.length == 0) {
+      return false;
+    }
+    moveGap(index);
+    ensureGap(added.length);
+
+    System.arraycopy(added, 0, this.lines, this.gapStart, added.length);
+    this.gapStart += added.length;
+    this.modCount++;
+    return true;
+  }
+
+  @Override
+  public String remove(int index) {
+    checkIndex(index, size());
+    moveGap(index);
+
+    var old = this.lines[this.gapEnd];
+    this.lines[this.gapEnd++] = null;
+    this.modCount++;
+    return old;
+  }
+
+  @Override
+  protected void removeRange(int fromIndex, int toIndex) {
+    if (fromIndex >= toIndex) {
+      return;
+    }
+    moveGap(fromIndex);
+
+    var newGapEnd = this.gapEnd + (toIndex - fromIndex);
+    Arrays.fill(this.lines, this.gapEnd, newGapEnd, null);
+    this.gapEnd = newGapEnd;
+    this.modCount++;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(this.lines, null);
+    this.gapStart = 0;
+    this.gapEnd = this.lines.length;
+    this.modCount++;
+  }
+
+  @Override
+  public Object[] toArray() {
+    var array = new Object[size()];
+    System.arraycopy(this.lines, 0, array, 0, this.gapStart);
+    System.arraycopy(this.lines, this.gapEnd, array, this.gapStart, this.lines.length - this.gapEnd);
+    return array;
+  }
+
+  void moveGap(int index) {
+    if (index < this.gapStart) {
+      // Shift [index, gapStart) to the end of the gap
+      var count = this.gapStart - index;
+      System.arraycopy(this.lines, index, this.lines, this.gapEnd - count, count);
+      Arrays.fill(this.lines, index, Math.min(this.gapStart, this.gapEnd - count), null);
+      this.gapStart = index;
+      this.gapEnd -= count;
+
+    } else if (index > this.gapStart) {
+      // Shift [gapEnd, gapEnd + count) to the start of the gap
+      var count = index - this.gapStart;
+      System.arraycopy(this.lines, this.gapEnd, this.lines, this.gapStart, count);
+      Arrays.fill(this.lines, Math.max(this.gapEnd, index), this.gapEnd + count, null);
+      this.gapStart = index;
+      this.gapEnd += count;
+    }
+  }
+
+  void ensureGap(int count) {
+    if (gapLength() >= count) {
+      return;
+    }
+    var size = size();
+    var capacity = Math.max(Math.max(this.lines.length * 2, size + count), DEFAULT_CAPACITY);
+    var newLines = new String[capacity];
+    var tail = this.lines.length - this.gapEnd;
+
+    System.arraycopy(this.lines, 0, newLines, 0, this.gapStart);
+    System.arraycopy(this.lines, this.gapEnd, newLines, capacity - tail, tail);
+    this.lines = newLines;
+    this.gapEnd = capacity - tail;
+  }
+
+  static void checkIndex(int index, int length) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + length);
+    }
+  }
+}
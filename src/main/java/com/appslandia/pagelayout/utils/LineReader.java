@@ -0,0 +1,152 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the UTF-8 lines of a file through a fixed buffer, with the byte offset of each line so that it can be read
+ * again later.
+ *
+ * <p>
+ * Lines end with LF, CR or CRLF like {@link java.io.BufferedReader#readLine()}; malformed input is reported. The memory
+ * used is the buffer plus the longest line.
+ * </p>
+ *
+ * @author Loc Ha
+ *
+ */
+public class LineReader implements Closeable {
+
+  final FileChannel channel;
+  final ByteBuffer buf;
+  final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+      .onUnmappableCharacter(CodingErrorAction.REPORT);
+
+  // File position of the buffer end
+  long filePos;
+  boolean skipLF;
+
+  byte[] line = new byte[128];
+  int lineLen;
+
+  public LineReader(Path file, int bufferSize) throws IOException {
+    Arguments.isTrue(bufferSize > 0, "bufferSize must be > 0");
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    this.buf = ByteBuffer.allocate(bufferSize).flip();
+  }
+
+  /**
+   * Returns the offset of the next line.
+   */
+  public long getOffset() throws IOException {
+    // CR read last: The LF is part of the previous line
+    if (this.skipLF && fill()) {
+      if (this.buf.get(this.buf.position()) == '\n') {
+        this.buf.get();
+      }
+      this.skipLF = false;
+    }
+    return this.filePos - this.buf.remaining();
+  }
+
+  public void seek(long offset) {
+    this.filePos = offset;
+    this.buf.clear().flip();
+    this.skipLF = false;
+  }
+
+  /**
+   * Returns the next line without its terminator, {@code null} at the end of the file.
+   */
+  public String readLine() throws IOException {
+    this.lineLen = 0;
+    var read = false;
+
+    while (fill()) {
+      var buf = this.buf;
+      if (this.skipLF) {
+        this.skipLF = false;
+        if (buf.get(buf.position()) == '\n') {
+          buf.get();
+          continue;
+        }
+      }
+      read = true;
+
+      var start = buf.position();
+      var limit = buf.limit();
+      for (var i = start; i < limit; i++) {
+        var b = buf.get(i);
+        if (b == '\n' || b == '\r') {
+          append(start, i);
+          buf.position(i + 1);
+          this.skipLF = (b == '\r');
+          return decodeLine();
+        }
+      }
+      append(start, limit);
+      buf.position(limit);
+    }
+    return read ? decodeLine() : null;
+  }
+
+  boolean fill() throws IOException {
+    if (this.buf.hasRemaining()) {
+      return true;
+    }
+    this.buf.clear();
+    var count = this.channel.read(this.buf, this.filePos);
+    this.buf.flip();
+    if (count <= 0) {
+      return false;
+    }
+    this.filePos += count;
+    return true;
+  }
+
+  void append(int start, int end) {
+    var len = end - start;
+    if (this.lineLen + len > this.line.length) {
+      this.line = Arrays.copyOf(this.line, Math.max(this.line.length * 2, this.lineLen + len));
+    }
+    System.arraycopy(this.buf.array(), start, this.line, this.lineLen, len);
+    this.lineLen += len;
+  }
+
+  String decodeLine() throws IOException {
+    return this.decoder.decode(ByteBuffer.wrap(this.line, 0, this.lineLen)).toString();
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+}
@@ -0,0 +1,187 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Scans the raw UTF-8 bytes of a view for the markers of the lines the pipeline may change.
+ *
+ * <p>
+ * A view without them, without a CR and with valid UTF-8 is written as is, minus its last line feed.
+ * </p>
+ *
+ * @author Loc Ha
+ *
+ */
+public class MarkerScanner {
+
+  // <!-- @directive & @( name )
+  public static final byte[][] DIRECTIVE_MARKERS = { toBytes("<!--"), toBytes("@(") };
+
+  static final int MAP_THRESHOLD = 64 * 1024;
+
+  static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[8192]);
+
+  final byte[][] markers;
+  final boolean[] firstBytes = new boolean[256];
+
+  public MarkerScanner(byte[]... markers) {
+    this.markers = new byte[DIRECTIVE_MARKERS.length + markers.length][];
+    System.arraycopy(DIRECTIVE_MARKERS, 0, this.markers, 0, DIRECTIVE_MARKERS.length);
+    System.arraycopy(markers, 0, this.markers, DIRECTIVE_MARKERS.length, markers.length);
+
+    for (byte[] marker : this.markers) {
+      Arguments.isTrue(marker.length > 0, "marker is required");
+      this.firstBytes[marker[0] & 0xFF] = true;
+    }
+  }
+
+  public static byte[] toBytes(String marker) {
+    return marker.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Reads the whole file: mapped if large, else into a buffer pooled per thread.
+   *
+   * @return the content, {@code null} if the file is too large to be scanned
+   */
+  public static ByteBuffer read(FileChannel channel) throws IOException {
+    var size = channel.size();
+    if (size > Integer.MAX_VALUE - 8) {
+      return null;
+    }
+    if (size >= MAP_THRESHOLD) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    // Smaller than MAP_THRESHOLD: The pooled buffer is bounded
+    var buf = BUFFERS.get();
+    if (buf.length < size) {
+      buf = new byte[(int) size];
+      BUFFERS.set(buf);
+    }
+    var content = ByteBuffer.wrap(buf, 0, (int) size);
+    while (content.hasRemaining() && channel.read(content, content.position()) >= 0) {
+    }
+    return content.flip();
+  }
+
+  /**
+   * Returns the number of lines of the given content, or {@code -1} if it contains a marker, a CR or malformed UTF-8.
+   */
+  public int countPlainLines(ByteBuffer content) {
+    var limit = content.limit();
+    var lines = 0;
+    var i = content.position();
+
+    while (i < limit) {
+      var b = content.get(i);
+      if (b >= 0) {
+        if (b == '\n') {
+          lines++;
+        } else if (b == '\r') {
+          return -1;
+        } else if (this.firstBytes[b] && hasMarker(content, i)) {
+          return -1;
+        }
+        i++;
+      } else {
+        i = skipUtf8(content, i, limit);
+        if (i < 0) {
+          return -1;
+        }
+      }
+    }
+    // The last line may not end with a line feed
+    if (limit > content.position() && content.get(limit - 1) != '\n') {
+      lines++;
+    }
+    return lines;
+  }
+
+  boolean hasMarker(ByteBuffer content, int pos) {
+    for (byte[] marker : this.markers) {
+      if (startsWith(content, pos, marker)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  static boolean startsWith(ByteBuffer content, int pos, byte[] marker) {
+    if (pos + marker.length > content.limit()) {
+      return false;
+    }
+    for (var j = 0; j < marker.length; j++) {
+      if (content.get(pos + j) != marker[j]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Rejects the sequences that the UTF-8 decoder reports: overlong forms, surrogates & code points above U+10FFFF
+  static int skipUtf8(ByteBuffer content, int pos, int limit) {
+    var b = content.get(pos) & 0xFF;
+    int count;
+    var min = 0x80;
+    var max = 0xBF;
+
+    if (b >= 0xC2 && b <= 0xDF) {
+      count = 1;
+    } else if (b >= 0xE0 && b <= 0xEF) {
+      count = 2;
+      if (b == 0xE0) {
+        min = 0xA0;
+      } else if (b == 0xED) {
+        max = 0x9F;
+      }
+    } else if (b >= 0xF0 && b <= 0xF4) {
+      count = 3;
+      if (b == 0xF0) {
+        min = 0x90;
+      } else if (b == 0xF4) {
+        max = 0x8F;
+      }
+    } else {
+      return -1;
+    }
+    if (pos + count >= limit) {
+      return -1;
+    }
+
+    // The second byte has the narrowed range
+    var next = content.get(pos + 1) & 0xFF;
+    if (next < min || next > max) {
+      return -1;
+    }
+    for (var j = 2; j <= count; j++) {
+      if ((content.get(pos + j) & 0xC0) != 0x80) {
+        return -1;
+      }
+    }
+    return pos + count + 1;
+  }
+}
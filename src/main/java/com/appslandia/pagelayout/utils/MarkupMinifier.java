@@ -0,0 +1,314 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.utils;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Minifies the markup of a generated view: the indentation and the comments are removed, the whitespace runs are
+ * collapsed and the ones between two tags are dropped next to a block tag, where they are not rendered.
+ *
+ * <p>
+ * The content of pre, textarea, script, style & the JSP document scriptlets, the JSP scriptlets, directives &
+ * comments, the EL expressions, the Pebble tags, the CDATA sections and the conditional comments are kept as is, as
+ * are the attribute values.
+ * </p>
+ *
+ * @author Loc Ha
+ *
+ */
+public class MarkupMinifier {
+
+  static final Set<String> RAW_TAGS = Set.of("pre", "textarea", "script", "style", "jsp:scriptlet",
+      "jsp:declaration", "jsp:expression", "jsp:text");
+
+  // ! & ?: The doctype, the XML prolog and the conditional comments
+  static final Set<String> BLOCK_TAGS = Set.of("!", "?", "address", "article", "aside", "base", "blockquote", "body",
+      "br", "caption", "col", "colgroup", "dd", "details", "dialog", "div", "dl", "dt", "fieldset", "figcaption",
+      "figure", "footer", "form", "h1", "h2", "h3", "h4", "h5", "h6", "head", "header", "hgroup", "hr", "html",
+      "legend", "li", "link", "main", "meta", "nav", "ol", "optgroup", "option", "p", "script", "section", "style",
+      "summary", "table", "tbody", "td", "tfoot", "th", "thead", "title", "tr", "ul");
+
+  final String source;
+  final StringBuilder out;
+  int pos;
+
+  // The name of the last written tag, null after a text
+  String lastTag;
+
+  // The pending whitespace: 0, ' ' or '\n'
+  char space;
+
+  MarkupMinifier(String source) {
+    this.source = source;
+    this.out = new StringBuilder(source.length());
+  }
+
+  public static List<String> minify(List<String> source) {
+    var minifier = new MarkupMinifier(String.join("\n", source));
+    minifier.run();
+
+    List<String> result = new LineBuffer();
+    var out = minifier.out;
+    var start = 0;
+    for (var i = 0; i < out.length(); i++) {
+      if (out.charAt(i) == '\n') {
+        result.add(out.substring(start, i));
+        start = i + 1;
+      }
+    }
+    if (start < out.length()) {
+      result.add(out.substring(start));
+    }
+    return result;
+  }
+
+  void run() {
+    var len = this.source.length();
+    while (this.pos < len) {
+      var c = this.source.charAt(this.pos);
+
+      if (Character.isWhitespace(c)) {
+        if (c == '\n') {
+          this.space = '\n';
+        } else if (this.space == 0) {
+          this.space = ' ';
+        }
+        this.pos++;
+        continue;
+      }
+
+      // <% %>, ${ }, #{ }, {{ }}, {% %} & {# #}
+      var end = findProtectedEnd(this.pos);
+      if (end >= 0) {
+        writeSpace(null);
+        this.out.append(this.source, this.pos, end);
+        this.pos = end;
+        this.lastTag = null;
+        continue;
+      }
+
+      if (this.source.startsWith("<!--", this.pos)) {
+        end = findEnd(this.pos + 4, "-->");
+        if (this.source.startsWith("<!--[", this.pos) || this.source.startsWith("<!--<![", this.pos)) {
+          writeSpace("!");
+          this.out.append(this.source, this.pos, end);
+          this.lastTag = "!";
+        }
+        // A removed comment keeps the whitespace around it pending
+        this.pos = end;
+        continue;
+      }
+
+      if (this.source.startsWith("<![CDATA[", this.pos)) {
+        end = findEnd(this.pos + 9, "]]>");
+        writeSpace(null);
+        this.out.append(this.source, this.pos, end);
+        this.pos = end;
+        this.lastTag = null;
+        continue;
+      }
+
+      if ((c == '<') && isTagStart(this.pos + 1)) {
+        writeTag();
+        continue;
+      }
+
+      writeSpace(null);
+      this.out.append(c);
+      this.pos++;
+      this.lastTag = null;
+    }
+  }
+
+  // The whitespace between two tags is dropped next to a block tag, or at the start
+  void writeSpace(String nextTag) {
+    if (this.space == 0) {
+      return;
+    }
+    var drop = (this.out.length() == 0) || ((this.lastTag != null) && (nextTag != null)
+        && (BLOCK_TAGS.contains(this.lastTag) || BLOCK_TAGS.contains(nextTag)));
+    if (!drop) {
+      this.out.append(this.space);
+    }
+    this.space = 0;
+  }
+
+  boolean isTagStart(int index) {
+    if (index >= this.source.length()) {
+      return false;
+    }
+    var c = this.source.charAt(index);
+    return Character.isLetter(c) || (c == '/') || (c == '!') || (c == '?');
+  }
+
+  void writeTag() {
+    var start = this.pos + 1;
+    var closing = this.source.charAt(start) == '/';
+    if (closing) {
+      start++;
+    }
+    var nameEnd = start;
+    while ((nameEnd < this.source.length()) && isNameChar(this.source.charAt(nameEnd))) {
+      nameEnd++;
+    }
+    var first = this.source.charAt(this.pos + 1);
+    var tagName = ((first == '!') || (first == '?')) ? String.valueOf(first)
+        : this.source.substring(start, nameEnd).toLowerCase(Locale.ROOT);
+
+    writeSpace(tagName);
+    this.out.append(this.source, this.pos, nameEnd);
+    this.pos = nameEnd;
+
+    // Attributes: the whitespace is collapsed, the values are kept
+    var selfClosing = false;
+    var len = this.source.length();
+    while (this.pos < len) {
+      var c = this.source.charAt(this.pos);
+
+      var end = findProtectedEnd(this.pos);
+      if (end >= 0) {
+        this.out.append(this.source, this.pos, end);
+        this.pos = end;
+
+      } else if (Character.isWhitespace(c)) {
+        while ((this.pos < len) && Character.isWhitespace(this.source.charAt(this.pos))) {
+          this.pos++;
+        }
+        if ((this.pos < len) && (this.source.charAt(this.pos) != '>') && !this.source.startsWith("/>", this.pos)) {
+          this.out.append(' ');
+        }
+      } else if ((c == '"') || (c == '\'')) {
+        writeQuoted(c);
+
+      } else {
+        this.out.append(c);
+        this.pos++;
+        if (c == '>') {
+          selfClosing = (this.pos >= 2) && (this.source.charAt(this.pos - 2) == '/');
+          break;
+        }
+      }
+    }
+    this.lastTag = tagName;
+
+    // <pre>, <textarea>, <script>...: The content is kept until the end tag
+    if (!closing && !selfClosing && RAW_TAGS.contains(tagName)) {
+      var end = this.pos;
+      while ((end < len) && !isEndTag(end, tagName)) {
+        end++;
+      }
+      if (end > this.pos) {
+        this.out.append(this.source, this.pos, end);
+        this.pos = end;
+        this.lastTag = null;
+      }
+    }
+  }
+
+  void writeQuoted(char quote) {
+    this.out.append(quote);
+    this.pos++;
+    var len = this.source.length();
+    while (this.pos < len) {
+      var end = findProtectedEnd(this.pos);
+      if (end >= 0) {
+        this.out.append(this.source, this.pos, end);
+        this.pos = end;
+        continue;
+      }
+      var c = this.source.charAt(this.pos++);
+      this.out.append(c);
+      if (c == quote) {
+        return;
+      }
+    }
+  }
+
+  boolean isEndTag(int index, String tagName) {
+    return this.source.startsWith("</", index)
+        && this.source.regionMatches(true, index + 2, tagName, 0, tagName.length())
+        && ((index + 2 + tagName.length() >= this.source.length())
+            || !isNameChar(this.source.charAt(index + 2 + tagName.length())));
+  }
+
+  static boolean isNameChar(char c) {
+    return Character.isLetterOrDigit(c) || (c == ':') || (c == '-') || (c == '_') || (c == '.');
+  }
+
+  // @return the end of the protected span starting at the given index, -1 if none
+  int findProtectedEnd(int index) {
+    if (index + 1 >= this.source.length()) {
+      return -1;
+    }
+    var c = this.source.charAt(index);
+    var next = this.source.charAt(index + 1);
+
+    if ((c == '<') && (next == '%')) {
+      return this.source.startsWith("<%--", index) ? findEnd(index + 4, "--%>") : findEnd(index + 2, "%>");
+    }
+    if (((c == '$') || (c == '#')) && (next == '{')) {
+      return findExpressionEnd(index + 2);
+    }
+    if (c == '{') {
+      if (next == '{') {
+        return findEnd(index + 2, "}}");
+      }
+      if (next == '%') {
+        return findEnd(index + 2, "%}");
+      }
+      if (next == '#') {
+        return findEnd(index + 2, "#}");
+      }
+    }
+    return -1;
+  }
+
+  int findEnd(int from, String end) {
+    var idx = this.source.indexOf(end, from);
+    return (idx < 0) ? this.source.length() : idx + end.length();
+  }
+
+  // EL: The braces are balanced, the quoted strings skipped
+  int findExpressionEnd(int from) {
+    var depth = 1;
+    char quote = 0;
+    for (var i = from; i < this.source.length(); i++) {
+      var c = this.source.charAt(i);
+      if (quote != 0) {
+        if (c == '\\') {
+          i++;
+        } else if (c == quote) {
+          quote = 0;
+        }
+      } else if ((c == '"') || (c == '\'')) {
+        quote = c;
+      } else if (c == '{') {
+        depth++;
+      } else if ((c == '}') && (--depth == 0)) {
+        return i + 1;
+      }
+    }
+    return this.source.length();
+  }
+}
@@ -0,0 +1,150 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.utils;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.appslandia.pagelayout.utils.FileCache.FileStamp;
+
+/**
+ * Sources kept in memory, keyed by their path relative to a root that does not exist on disk.
+ *
+ * <p>
+ * The stamp of a source changes only when {@link #update(Map)} gives it another content, so the caches keyed by these
+ * paths stay warm between the updates.
+ * </p>
+ *
+ * @author Loc Ha
+ *
+ */
+public class MemorySourceFiles implements SourceFiles {
+
+  public static final Path DEFAULT_ROOT = Paths.get("/__page-layout-memory__").toAbsolutePath();
+
+  final Path root;
+  volatile Map<Path, Source> sources = new HashMap<>();
+  long version;
+
+  public MemorySourceFiles() {
+    this(DEFAULT_ROOT);
+  }
+
+  public MemorySourceFiles(Path root) {
+    this.root = root.toAbsolutePath().normalize();
+  }
+
+  public Path getRoot() {
+    return this.root;
+  }
+
+  /**
+   * Replaces the sources, keyed by their path relative to the root with {@code /} separators.
+   */
+  public synchronized void update(Map<String, byte[]> sources) {
+    var prevSources = this.sources;
+    Map<Path, Source> newSources = new HashMap<>();
+
+    for (Map.Entry<String, byte[]> source : sources.entrySet()) {
+      var path = this.root.resolve(source.getKey()).normalize();
+      if (!path.startsWith(this.root) || path.equals(this.root)) {
+        throw new IllegalArgumentException("The source path is invalid (path=" + source.getKey() + ")");
+      }
+      var content = Arguments.notNull(source.getValue());
+
+      var prevSource = prevSources.get(path);
+      if (prevSource != null && Arrays.equals(prevSource.content, content)) {
+        newSources.put(path, prevSource);
+      } else {
+        newSources.put(path, new Source(content.clone(), ++this.version));
+      }
+    }
+    this.sources = newSources;
+  }
+
+  Source getSource(Path file) throws NoSuchFileException {
+    var source = this.sources.get(file.toAbsolutePath().normalize());
+    if (source == null) {
+      throw new NoSuchFileException(file.toString());
+    }
+    return source;
+  }
+
+  @Override
+  public boolean exists(Path file) {
+    return this.sources.containsKey(file.toAbsolutePath().normalize());
+  }
+
+  @Override
+  public BufferedReader newReader(Path file) throws IOException {
+    var source = getSource(file);
+    return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(source.content), StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public byte[] readAllBytes(Path file) throws IOException {
+    return getSource(file).content.clone();
+  }
+
+  @Override
+  public FileStamp stamp(Path file) throws IOException {
+    var source = this.sources.get(file.toAbsolutePath().normalize());
+    if (source == null) {
+      return null;
+    }
+    return new FileStamp(FileTime.fromMillis(source.version), source.content.length);
+  }
+
+  @Override
+  public List<Path> scan(FileScanner scanner) throws IOException {
+    List<Path> files = new ArrayList<>();
+    for (Path file : this.sources.keySet()) {
+      if (scanner.accept(file)) {
+        files.add(file);
+      }
+    }
+    files.sort(Comparator.comparing(Path::toString));
+    return files;
+  }
+
+  static class Source {
+    final byte[] content;
+    final long version;
+
+    Source(byte[] content, long version) {
+      this.content = content;
+      this.version = version;
+    }
+  }
+}
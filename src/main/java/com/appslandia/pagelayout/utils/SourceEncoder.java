@@ -0,0 +1,170 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes source lines to UTF-8 into a reusable byte buffer, one instance per thread.
+ *
+ * <p>
+ * Unpaired surrogates are encoded as '?' like {@link String#getBytes(java.nio.charset.Charset)} does.
+ * </p>
+ *
+ * @author Loc Ha
+ *
+ */
+public class SourceEncoder {
+
+  static final int INITIAL_SIZE = 8192;
+  static final int MAX_POOLED_SIZE = 1024 * 1024;
+
+  static final ThreadLocal<SourceEncoder> POOL = ThreadLocal.withInitial(SourceEncoder::new);
+
+  byte[] buf = new byte[INITIAL_SIZE];
+  int size;
+
+  public static SourceEncoder get() {
+    return POOL.get();
+  }
+
+  public SourceEncoder encode(List<String> source, String lineSeparator) {
+    // Pre-size: one byte per char, grown per line for non ASCII chars
+    long chars = (long) lineSeparator.length() * Math.max(source.size() - 1, 0);
+    for (String line : source) {
+      chars += line.length();
+    }
+    this.size = 0;
+    ensureCapacity(chars);
+
+    var first = true;
+    for (String line : source) {
+      if (!first) {
+        append(lineSeparator);
+      }
+      append(line);
+      first = false;
+    }
+    return this;
+  }
+
+  void append(String str) {
+    var len = str.length();
+    ensureCapacity((long) this.size + len);
+
+    var buf = this.buf;
+    var pos = this.size;
+    var i = 0;
+
+    // ASCII
+    while (i < len) {
+      var ch = str.charAt(i);
+      if (ch >= 0x80) {
+        break;
+      }
+      buf[pos++] = (byte) ch;
+      i++;
+    }
+
+    if (i < len) {
+      // Up to 3 bytes per remaining char, a surrogate pair takes 4 bytes for 2 chars
+      this.size = pos;
+      ensureCapacity((long) pos + (long) (len - i) * 3);
+      buf = this.buf;
+
+      while (i < len) {
+        var ch = str.charAt(i++);
+        if (ch < 0x80) {
+          buf[pos++] = (byte) ch;
+
+        } else if (ch < 0x800) {
+          buf[pos++] = (byte) (0xC0 | (ch >> 6));
+          buf[pos++] = (byte) (0x80 | (ch & 0x3F));
+
+        } else if (Character.isSurrogate(ch)) {
+          if (Character.isHighSurrogate(ch) && i < len && Character.isLowSurrogate(str.charAt(i))) {
+            var cp = Character.toCodePoint(ch, str.charAt(i++));
+            buf[pos++] = (byte) (0xF0 | (cp >> 18));
+            buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            buf[pos++] = (byte) (0x80 | (cp & 0x3F));
+          } else {
+            buf[pos++] = '?';
+          }
+        } else {
+          buf[pos++] = (byte) (0xE0 | (ch >> 12));
+          buf[pos++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+          buf[pos++] = (byte) (0x80 | (ch & 0x3F));
+        }
+      }
+    }
+    this.size = pos;
+  }
+
+  void ensureCapacity(long capacity) {
+    if (capacity <= this.buf.length) {
+      return;
+    }
+    if (capacity > Integer.MAX_VALUE - 8) {
+      throw new OutOfMemoryError("Encoded source is too large (size=" + capacity + ")");
+    }
+    var newLength = (int) Math.min(Math.max(capacity, this.buf.length * 2L), Integer.MAX_VALUE - 8);
+    this.buf = Arrays.copyOf(this.buf, newLength);
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  public byte[] toByteArray() {
+    return Arrays.copyOf(this.buf, this.size);
+  }
+
+  public boolean hasContent(Path file) throws IOException {
+    return FileUtils.hasContent(file, this.buf, this.size);
+  }
+
+  public void writeTo(Path file) throws IOException {
+    var content = ByteBuffer.wrap(this.buf, 0, this.size);
+    try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (content.hasRemaining()) {
+        channel.write(content);
+      }
+    }
+  }
+
+  /**
+   * Drops a buffer grown by a large source so that the pooled instance stays small.
+   */
+  public void release() {
+    if (this.buf.length > MAX_POOLED_SIZE) {
+      this.buf = new byte[INITIAL_SIZE];
+    }
+    this.size = 0;
+  }
+}
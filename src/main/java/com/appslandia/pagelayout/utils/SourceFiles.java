@@ -0,0 +1,90 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.appslandia.pagelayout.utils.FileCache.FileStamp;
+
+/**
+ * Read access to the views, layouts and variables files: the NIO file system of their paths by default, or sources
+ * kept in memory.
+ *
+ * @author Loc Ha
+ *
+ */
+public interface SourceFiles {
+
+  SourceFiles DEFAULT = new SourceFiles() {
+
+    @Override
+    public boolean exists(Path file) {
+      return Files.exists(file);
+    }
+
+    @Override
+    public BufferedReader newReader(Path file) throws IOException {
+      return Files.newBufferedReader(file, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] readAllBytes(Path file) throws IOException {
+      return Files.readAllBytes(file);
+    }
+
+    @Override
+    public FileStamp stamp(Path file) throws IOException {
+      return FileStamp.of(file);
+    }
+  };
+
+  boolean exists(Path file);
+
+  /**
+   * Opens a UTF-8 reader of the given file.
+   */
+  BufferedReader newReader(Path file) throws IOException;
+
+  byte[] readAllBytes(Path file) throws IOException;
+
+  /**
+   * Returns the stamp of the given file, {@code null} if it does not exist.
+   */
+  FileStamp stamp(Path file) throws IOException;
+
+  default LineBuffer readLines(Path file) throws IOException {
+    try (var reader = newReader(file)) {
+      return LineBuffer.readAll(reader);
+    }
+  }
+
+  /**
+   * Lists the files accepted by the given scanner, sorted by path.
+   */
+  default List<Path> scan(FileScanner scanner) throws IOException {
+    return scanner.scan();
+  }
+}
@@ -0,0 +1,170 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.utils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Replaces the {@code @( name )} holders of the given variables in one pass over a line.
+ *
+ * <p>
+ * Names are matched ignoring the US-ASCII case and the whitespace around them. The variables are applied as if they
+ * were replaced one after another in the map order: a value may contain the holders of the variables that come after
+ * it, which are replaced too.
+ * </p>
+ *
+ * @author Loc Ha
+ *
+ */
+public class VariableResolver {
+
+  final String[] values;
+  final String[] resolvedValues;
+  final Map<String, int[]> index;
+  final boolean parenNames;
+
+  public VariableResolver(Map<String, String> variables) {
+    this.values = new String[variables.size()];
+    this.resolvedValues = new String[variables.size()];
+    this.index = new HashMap<>(variables.size() * 4 / 3 + 1);
+
+    var parenNames = false;
+    var i = 0;
+    for (Map.Entry<String, String> variable : variables.entrySet()) {
+      this.values[i] = variable.getValue();
+
+      // Names that differ by case only share one key, in the map order
+      this.index.merge(toLowerAscii(variable.getKey()), new int[] { i }, VariableResolver::concat);
+      parenNames |= variable.getKey().indexOf(')') >= 0;
+      i++;
+    }
+    this.parenNames = parenNames;
+  }
+
+  public String resolve(String line) {
+    return resolve(line, 0);
+  }
+
+  // Replaces the holders of the variables at minIndex or after
+  String resolve(String text, int minIndex) {
+    var holder = text.indexOf("@(");
+    if (holder < 0 || this.values.length == 0) {
+      return text;
+    }
+
+    StringBuilder sb = null;
+    var copied = 0;
+
+    while (holder >= 0) {
+      var nameStart = holder + 2;
+      while (nameStart < text.length() && DirectiveLexer.isSpace(text.charAt(nameStart))) {
+        nameStart++;
+      }
+
+      var end = -1;
+      var varIndex = -1;
+      var close = text.indexOf(')', nameStart);
+
+      while (close >= 0) {
+        var nameEnd = close;
+        while (nameEnd > nameStart && DirectiveLexer.isSpace(text.charAt(nameEnd - 1))) {
+          nameEnd--;
+        }
+        var idx = indexOf(this.index.get(toLowerAscii(text, nameStart, nameEnd)), minIndex);
+
+        // A name may contain ')': the variable that comes first in the map wins
+        if (idx >= 0 && (varIndex < 0 || idx < varIndex)) {
+          varIndex = idx;
+          end = close + 1;
+        }
+        if (!this.parenNames) {
+          break;
+        }
+        close = text.indexOf(')', close + 1);
+      }
+
+      if (varIndex < 0) {
+        holder = text.indexOf("@(", holder + 2);
+        continue;
+      }
+
+      if (sb == null) {
+        sb = new StringBuilder(text.length() + 16);
+      }
+      sb.append(text, copied, holder).append(resolvedValue(varIndex));
+      copied = end;
+      holder = text.indexOf("@(", end);
+    }
+
+    if (sb == null) {
+      return text;
+    }
+    return sb.append(text, copied, text.length()).toString();
+  }
+
+  String resolvedValue(int varIndex) {
+    var resolved = this.resolvedValues[varIndex];
+    if (resolved == null) {
+      resolved = resolve(this.values[varIndex], varIndex + 1);
+      this.resolvedValues[varIndex] = resolved;
+    }
+    return resolved;
+  }
+
+  static int indexOf(int[] indexes, int minIndex) {
+    if (indexes != null) {
+      for (int idx : indexes) {
+        if (idx >= minIndex) {
+          return idx;
+        }
+      }
+    }
+    return -1;
+  }
+
+  static int[] concat(int[] indexes, int[] more) {
+    var result = Arrays.copyOf(indexes, indexes.length + more.length);
+    System.arraycopy(more, 0, result, indexes.length, more.length);
+    return result;
+  }
+
+  static String toLowerAscii(String str) {
+    return toLowerAscii(str, 0, str.length());
+  }
+
+  static String toLowerAscii(String str, int start, int end) {
+    for (var i = start; i < end; i++) {
+      var ch = str.charAt(i);
+      if (ch >= 'A' && ch <= 'Z') {
+        var chars = str.substring(start, end).toCharArray();
+        for (var j = i - start; j < chars.length; j++) {
+          if (chars[j] >= 'A' && chars[j] <= 'Z') {
+            chars[j] = (char) (chars[j] + ('a' - 'A'));
+          }
+        }
+        return new String(chars);
+      }
+    }
+    return str.substring(start, end);
+  }
+}
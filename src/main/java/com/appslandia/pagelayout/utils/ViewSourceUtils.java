@@ -20,18 +20,18 @@
 
 package com.appslandia.pagelayout.utils;
 
+import java.io.IOException;
 import java.io.Reader;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Properties;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.appslandia.pagelayout.jfr.VariablesFileLoadedEvent;
 import com.appslandia.pagelayout.main.ViewSourceHandler;
 
 /**
@@ -57,39 +57,102 @@ public class ViewSourceUtils {
   }
 
   public static void removeSubSource(List<String> source, int start, int end) {
-    for (var i = end; i >= start; i--) {
-      source.remove(i);
-    }
+    source.subList(start, end + 1).clear();
   }
 
   public static void removeSubSource(List<String> source, int pos) {
-    while (pos < source.size()) {
-      source.remove(pos);
+    source.subList(pos, source.size()).clear();
+  }
+
+  // removed: sorted, non overlapping [start, end] ranges
+  public static void removeSubSources(List<String> source, List<int[]> removed) {
+    if (removed.isEmpty()) {
+      return;
+    }
+    var w = removed.get(0)[0];
+    var r = w;
+    for (int[] range : removed) {
+      while (r < range[0]) {
+        source.set(w++, source.get(r++));
+      }
+      r = range[1] + 1;
+    }
+    while (r < source.size()) {
+      source.set(w++, source.get(r++));
     }
+    removeSubSource(source, w);
   }
 
-  static final Pattern blankLinePattern = Pattern.compile("\\s*");
+  // @return the index of the first non blank line from the given index, -1 if none
+  public static int indexOfNonBlank(List<String> source, int from) {
+    for (var i = from; i < source.size(); i++) {
+      if (!DirectiveLexer.isBlank(source.get(i))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  // <?xml version="1.0" encoding="UTF-8"?>
+  // <!DOCTYPE html>
+
+  public static void removeXmlProlog(List<String> source) {
+    removeDeclaration(source, "<?xml", "?>");
+    removeDeclaration(source, "<!DOCTYPE", ">");
+  }
+
+  // The leading declaration, from its start to its first end; the text after the end is kept
+  static void removeDeclaration(List<String> source, String start, String end) {
+    var pos = indexOfNonBlank(source, 0);
+    if (pos < 0) {
+      return;
+    }
+    var line = source.get(pos).stripLeading();
+    if (!line.regionMatches(true, 0, start, 0, start.length())) {
+      return;
+    }
+    for (var i = pos; i < source.size(); i++) {
+      var idx = source.get(i).indexOf(end);
+      if (idx >= 0) {
+        var rest = source.get(i).substring(idx + end.length());
+        removeSubSource(source, pos, i);
+
+        if (!DirectiveLexer.isBlank(rest)) {
+          source.add(pos, rest);
+        }
+        return;
+      }
+    }
+  }
 
   public static void removeBlankLines(List<String> source) {
-    for (var i = source.size() - 1; i >= 0; i--) {
-      if (blankLinePattern.matcher(source.get(i)).matches()) {
-        source.remove(i);
+    List<int[]> removed = new ArrayList<>();
+    for (var i = 0; i < source.size(); i++) {
+      if (DirectiveLexer.isBlank(source.get(i))) {
+        removed.add(new int[] { i, i });
       }
     }
+    removeSubSources(source, removed);
   }
 
   public static void replaceVariables(List<String> source, Map<String, String> variables) {
+    replaceVariables(source, new VariableResolver(variables));
+  }
+
+  public static void replaceVariables(List<String> source, VariableResolver variables) {
     for (var i = 0; i < source.size(); i++) {
       var line = source.get(i);
-      for (Entry<String, String> entry : variables.entrySet()) {
-        var holder = "@\\(\\s*" + Pattern.quote(entry.getKey()) + "\\s*\\)";
-        line = Pattern.compile(holder, Pattern.CASE_INSENSITIVE).matcher(line)
-            .replaceAll(Matcher.quoteReplacement(entry.getValue()));
+      var replaced = variables.resolve(line);
+      if (replaced != line) {
+        source.set(i, replaced);
       }
-      source.set(i, line);
     }
   }
 
+  public static String replaceVariables(String line, Map<String, String> variables) {
+    return new VariableResolver(variables).resolve(line);
+  }
+
   public static List<String> toVariableList(Map<String, String> variables) {
     List<String> list = new ArrayList<>();
     list.add("<!-- @variables");
@@ -101,38 +164,76 @@ public class ViewSourceUtils {
   }
 
   // <!-- @variables:fileLocation -->
-  static final Pattern varFilePattern = Pattern.compile("^\\s*<!--\\s*@variables\\s*:\\s*[^\\s]+\\s*-->\\s*$",
-      Pattern.CASE_INSENSITIVE);
 
   public static void parseVariablesFile(List<String> source, Path configPath, Map<String, String> variables)
       throws Exception {
+    parseVariablesFile(source, configPath, variables, null);
+  }
+
+  public static void parseVariablesFile(List<String> source, Path configPath, Map<String, String> variables,
+      List<Path> variablesFiles) throws Exception {
+    parseVariablesFile(source, configPath, variables, variablesFiles, null);
+  }
+
+  public static void parseVariablesFile(List<String> source, Path configPath, Map<String, String> variables,
+      List<Path> variablesFiles, FileCache<Map<String, String>> variablesCache) throws Exception {
+    parseVariablesFile(source, configPath, variables, variablesFiles, variablesCache, SourceFiles.DEFAULT);
+  }
+
+  public static void parseVariablesFile(List<String> source, Path configPath, Map<String, String> variables,
+      List<Path> variablesFiles, FileCache<Map<String, String>> variablesCache, SourceFiles sourceFiles)
+      throws Exception {
 
     // @variables:fileLocation
-    while (true) {
-      var pos = -1;
-      while ((++pos < source.size()) && !varFilePattern.matcher(source.get(pos)).matches()) {
-      }
-      if (pos == source.size()) {
-        break;
-      }
+    List<int[]> removed = new ArrayList<>();
+    for (DirectiveLexer.Token token : DirectiveLexer.tokenize(source, DirectiveLexer.VARIABLES_FILE)) {
+      var pos = token.getIndex();
 
       var varFileLine = source.get(pos);
       var varIdx = varFileLine.indexOf(":");
       var fileLocation = varFileLine.substring(varIdx + 1, varFileLine.indexOf("-->", varIdx)).strip();
 
       var filePath = configPath.resolve(fileLocation);
-      if (!Files.exists(filePath)) {
+      if (!sourceFiles.exists(filePath)) {
         throw new IllegalArgumentException("The variables file does not exist: " + filePath.toAbsolutePath());
       }
-      source.remove(pos);
+      removed.add(new int[] { pos, pos });
+
+      if (variablesFiles != null) {
+        variablesFiles.add(filePath);
+      }
 
       // Import Variables
-      var props = new Properties();
-      try (Reader r = Files.newBufferedReader(filePath, StandardCharsets.UTF_8)) {
-        props.load(r);
+      if (variablesCache != null) {
+        variables.putAll(variablesCache.get(filePath, p -> loadVariablesFile(sourceFiles, p)));
+      } else {
+        variables.putAll(loadVariablesFile(sourceFiles, filePath));
       }
-      props.forEach((k, v) -> variables.put((String) k, (String) v));
     }
+    removeSubSources(source, removed);
+  }
+
+  public static Map<String, String> loadVariablesFile(Path filePath) throws IOException {
+    return loadVariablesFile(SourceFiles.DEFAULT, filePath);
+  }
+
+  public static Map<String, String> loadVariablesFile(SourceFiles sourceFiles, Path filePath) throws IOException {
+    var event = new VariablesFileLoadedEvent();
+    event.begin();
+
+    var props = new Properties();
+    try (Reader r = sourceFiles.newReader(filePath)) {
+      props.load(r);
+    }
+    Map<String, String> variables = new LinkedHashMap<>();
+    props.forEach((k, v) -> variables.put((String) k, (String) v));
+
+    if (event.shouldCommit()) {
+      event.path = filePath.toString();
+      event.variables = variables.size();
+      event.commit();
+    }
+    return Collections.unmodifiableMap(variables);
   }
 
   // <!-- @variables
@@ -140,86 +241,78 @@ public class ViewSourceUtils {
   // __layout=layout
   // -->
 
-  static final Pattern varStartPattern = Pattern.compile("^\\s*<!--\\s*@variables\\s*$", Pattern.CASE_INSENSITIVE);
-
-  static final Pattern varEndPattern = Pattern.compile("^\\s*-->\\s*$");
-
   static final Pattern varNameValPattern = Pattern.compile("^\\s*[^\\s=]+\\s*=.*$", Pattern.CASE_INSENSITIVE);
 
   public static void parseVariables(List<String> source, String viewName, Map<String, String> variables)
       throws Exception {
 
     // @variables
-    while (true) {
-      var start = -1;
-      while ((++start < source.size()) && !varStartPattern.matcher(source.get(start)).matches()) {
-      }
-      if (start == source.size()) {
-        break;
+    var tokens = DirectiveLexer.tokenize(source, DirectiveLexer.VARIABLES_BEGIN | DirectiveLexer.VARIABLES_END);
+    List<int[]> removed = new ArrayList<>();
+
+    var t = 0;
+    while (t < tokens.size()) {
+      if (!tokens.get(t).is(DirectiveLexer.VARIABLES_BEGIN)) {
+        t++;
+        continue;
       }
+      var start = tokens.get(t).getIndex();
 
-      var end = start;
-      while ((++end < source.size()) && !varEndPattern.matcher(source.get(end)).matches()) {
+      // The closing directive: the next --> line
+      while ((++t < tokens.size()) && !tokens.get(t).is(DirectiveLexer.VARIABLES_END)) {
       }
-
-      if (end == source.size()) {
+      if (t == tokens.size()) {
         throw new IllegalArgumentException("@variables must have a closing directive (viewName=" + viewName + ")");
       }
+      var end = tokens.get(t++).getIndex();
 
       // variables: start-end
       for (var i = start + 1; i < end; i++) {
-        var nameVal = source.get(i).strip();
-        if ((nameVal.isEmpty()) || nameVal.startsWith("//")) {
-          continue;
-        }
-        if (!varNameValPattern.matcher(nameVal).matches()) {
-          throw new IllegalArgumentException(
-              "Variable is invalid (name/value=" + nameVal + ", viewName=" + viewName + ")");
-        }
-        var idx = nameVal.indexOf('=');
-        variables.put(nameVal.substring(0, idx).strip(), StringUtils.trimToEmpty(nameVal.substring(idx + 1)));
+        parseVariable(source.get(i), viewName, variables);
       }
+      removed.add(new int[] { start, end });
+    }
+    removeSubSources(source, removed);
+  }
 
-      removeSubSource(source, start, end);
+  // A line of the @variables directive: name=value, blank or // comment
+  public static void parseVariable(String line, String viewName, Map<String, String> variables) {
+    var nameVal = line.strip();
+    if ((nameVal.isEmpty()) || nameVal.startsWith("//")) {
+      return;
+    }
+    if (!varNameValPattern.matcher(nameVal).matches()) {
+      throw new IllegalArgumentException(
+          "Variable is invalid (name/value=" + nameVal + ", viewName=" + viewName + ")");
     }
+    var idx = nameVal.indexOf('=');
+    variables.put(nameVal.substring(0, idx).strip(), StringUtils.trimToEmpty(nameVal.substring(idx + 1)));
   }
 
   // <!-- @someSection begin -->
   // <!-- @someSection end -->
 
-  static final Pattern sectionStartPattern = Pattern.compile("^\\s*<!--\\s*@[^\\s]+\\s+begin\\s*-->\\s*$",
-      Pattern.CASE_INSENSITIVE);
-
-  static final Pattern sectionEndPattern = Pattern.compile("^\\s*<!--\\s*@[^\\s]+\\s+end\\s*-->\\s*$",
-      Pattern.CASE_INSENSITIVE);
-
   public static void parseSections(List<String> viewSource, Map<String, List<String>> sections, String viewName) {
-    while (true) {
-
-      var start = -1;
-      while ((++start < viewSource.size()) && !sectionStartPattern.matcher(viewSource.get(start)).matches()) {
+    var tokens = DirectiveLexer.tokenize(viewSource, DirectiveLexer.SECTION_BEGIN | DirectiveLexer.SECTION_END);
+    List<int[]> removed = new ArrayList<>();
+
+    var t = 0;
+    while (t < tokens.size()) {
+      if (!tokens.get(t).is(DirectiveLexer.SECTION_BEGIN)) {
+        t++;
+        continue;
       }
-      if (start == viewSource.size()) {
-        break;
-      }
-
-      var sectionLine = viewSource.get(start);
-      var idx = sectionLine.indexOf("@");
-      var sectionName = sectionLine.substring(idx + 1, sectionLine.indexOf(' ', idx)).strip();
+      var start = tokens.get(t).getIndex();
 
-      var end = start;
-      var hasClosing = true;
+      var sectionName = getSectionName(viewSource.get(start));
 
-      while ((++end < viewSource.size()) && !sectionEndPattern.matcher(viewSource.get(end)).matches()) {
-        if (sectionStartPattern.matcher(viewSource.get(end)).matches()) {
-          hasClosing = false;
-          break;
-        }
-      }
-      if (!hasClosing || (end == viewSource.size())) {
+      // The closing directive: the next section directive must be an end
+      if ((++t == tokens.size()) || !tokens.get(t).is(DirectiveLexer.SECTION_END)) {
         throw new IllegalArgumentException(
             "@" + sectionName + " must have a closing directive (viewName=" + viewName + ")");
       }
+      var end = tokens.get(t++).getIndex();
+
       if (sections.containsKey(sectionName)) {
         throw new IllegalArgumentException("@" + sectionName + " is duplicated (viewName=" + viewName + ")");
       }
@@ -229,64 +322,71 @@ public class ViewSourceUtils {
       } else {
         sections.put(sectionName, new ArrayList<>());
       }
-
-      removeSubSource(viewSource, start, end);
+      removed.add(new int[] { start, end });
     }
+    removeSubSources(viewSource, removed);
   }
 
-  // <!-- @doBody -->
+  // <!-- @someSection begin -->
+  public static String getSectionName(String sectionLine) {
+    var idx = sectionLine.indexOf("@");
+    return sectionLine.substring(idx + 1, sectionLine.indexOf(' ', idx)).strip();
+  }
 
-  static final Pattern doBodyPattern = Pattern.compile("^\\s*<!--\\s*@doBody\\s*-->\\s*$", Pattern.CASE_INSENSITIVE);
+  // <!-- @doBody -->
 
   public static void replaceBody(List<String> layoutSource, String layoutViewName, List<String> viewSource,
       String viewName, ViewSourceHandler handler) {
 
     // @doBody
-    var doBody = false;
-    while (true) {
-
-      var pos = -1;
-      while ((++pos < layoutSource.size()) && !doBodyPattern.matcher(layoutSource.get(pos)).matches()) {
-      }
-      if (pos == layoutSource.size()) {
-        break;
-      }
-      if (doBody) {
-        throw new IllegalArgumentException("@doBody is duplicated (layoutViewName=" + layoutViewName + ")");
-      }
-
-      var bodyLine = layoutSource.get(pos);
-      var indent = copyIndent(bodyLine);
-      layoutSource.remove(pos);
+    var tokens = DirectiveLexer.tokenize(layoutSource, DirectiveLexer.DO_BODY);
+    if (tokens.isEmpty()) {
+      throw new IllegalArgumentException("@doBody is required (layoutViewName=" + layoutViewName + ")");
+    }
+    if (tokens.size() > 1) {
+      throw new IllegalArgumentException("@doBody is duplicated (layoutViewName=" + layoutViewName + ")");
+    }
 
-      var incViewName = ViewUtils.getInclViewName(viewName);
-      handler.insertBody(layoutSource, pos, indent, viewSource, incViewName);
+    var pos = tokens.get(0).getIndex();
+    var bodyLine = layoutSource.get(pos);
+    var indent = copyIndent(bodyLine);
+    layoutSource.remove(pos);
 
-      doBody = true;
-    }
+    var sizeBefore = layoutSource.size();
+    var incViewName = ViewUtils.getInclViewName(viewName);
+    handler.insertBody(layoutSource, pos, indent, viewSource, incViewName);
 
-    if (!doBody) {
-      throw new IllegalArgumentException("@doBody is required (layoutViewName=" + layoutViewName + ")");
+    // The inserted body must not have another @doBody
+    var inserted = layoutSource.size() - sizeBefore;
+    for (var i = pos; i < pos + inserted; i++) {
+      if (DirectiveLexer.is(layoutSource.get(i), DirectiveLexer.DO_BODY)) {
+        throw new IllegalArgumentException("@doBody is duplicated (layoutViewName=" + layoutViewName + ")");
+      }
     }
   }
 
   // <!-- @someSection? -->
 
-  static final Pattern sectionPattern = Pattern.compile("^\\s*<!--\\s*@\\w+(\\?)?\\s*-->\\s*$",
-      Pattern.CASE_INSENSITIVE);
-
   public static void replaceSections(List<String> layoutSource, String viewName, Map<String, List<String>> sections) {
+    List<String> result = new ArrayList<>(layoutSource.size());
+    if (replaceSections(layoutSource, viewName, sections, result)) {
+      layoutSource.clear();
+      layoutSource.addAll(result);
+    }
+  }
 
-    while (true) {
-      var pos = -1;
-      while ((++pos < layoutSource.size()) && !sectionPattern.matcher(layoutSource.get(pos)).matches()) {
-      }
-      if (pos == layoutSource.size()) {
-        break;
+  // The inserted sections are scanned too, as their holders are replaced in the same pass
+  public static boolean replaceSections(List<String> source, String viewName, Map<String, List<String>> sections,
+      List<String> result) {
+    var replaced = false;
+    for (String line : source) {
+      if (!DirectiveLexer.is(line, DirectiveLexer.SECTION_HOLDER)) {
+        result.add(line);
+        continue;
       }
+      replaced = true;
 
-      var sectionLine = layoutSource.get(pos);
-      var sectionName = sectionLine.substring(sectionLine.indexOf("@") + 1, sectionLine.indexOf("-->")).strip();
+      var sectionName = line.substring(line.indexOf("@") + 1, line.indexOf("-->")).strip();
 
       var sectionRequired = true;
       if (sectionName.endsWith("?")) {
@@ -300,15 +400,15 @@ public class ViewSourceUtils {
         sectionSource.add(0, "<!-- @" + sectionName + " begin -->");
         sectionSource.add("<!-- @" + sectionName + " end -->");
 
-        layoutSource.remove(pos);
-        layoutSource.addAll(pos, sectionSource);
+        replaceSections(new ArrayList<>(sectionSource), viewName, sections, result);
       } else {
         if (sectionRequired) {
           throw new IllegalArgumentException("@" + sectionName + " is required (viewName=" + viewName + ")");
         } else {
-          layoutSource.set(pos, "<!-- @" + sectionName + "? undefined -->");
+          result.add("<!-- @" + sectionName + "? undefined -->");
         }
       }
     }
+    return replaced;
   }
 }
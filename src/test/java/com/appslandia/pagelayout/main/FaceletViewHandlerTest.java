@@ -0,0 +1,107 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.main;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Loc Ha
+ *
+ */
+public class FaceletViewHandlerTest {
+
+  @Test
+  public void test_insertBody() {
+    var layout = insertBody(new FaceletViewHandler(), List.of("<p/>"));
+
+    Assertions.assertEquals(List.of("<main>", "  <!-- @doBody begin -->", "  <ui:include src=\"page_inc.xhtml\" />",
+        "  <!-- @doBody end -->", "</main>"), layout);
+  }
+
+  @Test
+  public void test_insertBody_inline() {
+    var layout = insertBody(new FaceletViewHandler(true), List.of("<?xml version=\"1.0\" encoding=\"UTF-8\"?>",
+        "<ui:composition xmlns:ui=\"jakarta.faces.facelets\">", "  <p/>", "</ui:composition>"));
+
+    Assertions.assertEquals(List.of("<main>", "  <!-- @doBody begin -->",
+        "<ui:fragment xmlns:ui=\"jakarta.faces.facelets\">", "  <p/>", "</ui:fragment>", "  <!-- @doBody end -->",
+        "</main>"), layout);
+  }
+
+  @Test
+  public void test_insertBody_inlineWrapper() {
+    var layout = insertBody(new FaceletViewHandler(true),
+        List.of("<!DOCTYPE html>", "<html xmlns=\"http://www.w3.org/1999/xhtml\"", "  xmlns:ui=\"jakarta.faces.facelets\"",
+            "  xmlns:h=\"jakarta.faces.html\">", "<head><title>Ignored</title></head>",
+            "<body><ui:composition xmlns:h=\"jakarta.faces.html\">", "  <h:outputText value=\"a\" />",
+            "</ui:composition></body>", "</html>"));
+
+    Assertions.assertEquals(List.of("<main>", "  <!-- @doBody begin -->",
+        "<ui:fragment xmlns:h=\"jakarta.faces.html\" xmlns=\"http://www.w3.org/1999/xhtml\""
+            + " xmlns:ui=\"jakarta.faces.facelets\">",
+        "  <h:outputText value=\"a\" />", "</ui:fragment>", "  <!-- @doBody end -->", "</main>"), layout);
+  }
+
+  @Test
+  public void test_insertBody_inlineOneLine() {
+    var layout = insertBody(new FaceletViewHandler(true),
+        List.of("<html xmlns:ui=\"jakarta.faces.facelets\"><body><ui:component>a</ui:component></body></html>"));
+
+    Assertions.assertEquals(List.of("<main>", "  <!-- @doBody begin -->",
+        "<ui:fragment xmlns:ui=\"jakarta.faces.facelets\">a</ui:fragment>", "  <!-- @doBody end -->", "</main>"),
+        layout);
+
+    layout = insertBody(new FaceletViewHandler(true),
+        List.of("<html xmlns:ui=\"jakarta.faces.facelets\">", "  <ui:component />", "</html>"));
+    Assertions.assertEquals(List.of("<main>", "  <!-- @doBody begin -->",
+        "  <ui:fragment xmlns:ui=\"jakarta.faces.facelets\" />", "  <!-- @doBody end -->", "</main>"), layout);
+  }
+
+  @Test
+  public void test_insertBody_inlineTemplate() {
+    var body = List.of("<html xmlns:ui=\"jakarta.faces.facelets\">", "<ui:composition",
+        "  template=\"/layout.xhtml\">", "</ui:composition>", "</html>");
+
+    var ex = Assertions.assertThrows(IllegalArgumentException.class,
+        () -> insertBody(new FaceletViewHandler(true), body));
+    Assertions.assertTrue(ex.getMessage().contains("<ui:composition template> can't be inlined"));
+  }
+
+  @Test
+  public void test_insertBody_inlineNoEndTag() {
+    var body = List.of("<ui:composition xmlns:ui=\"jakarta.faces.facelets\">", "<p/>");
+
+    var ex = Assertions.assertThrows(IllegalArgumentException.class,
+        () -> insertBody(new FaceletViewHandler(true), body));
+    Assertions.assertTrue(ex.getMessage().contains("</ui:composition> is required"));
+  }
+
+  static List<String> insertBody(ViewSourceHandler handler, List<String> body) {
+    List<String> layout = new ArrayList<>(List.of("<main>", "</main>"));
+    handler.insertBody(layout, 1, "  ", body, "page_inc.xhtml");
+    return layout;
+  }
+}
@@ -0,0 +1,85 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.main;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Loc Ha
+ *
+ */
+public class JspViewHandlerTest {
+
+  @Test
+  public void test_insertBody() {
+    var layout = insertBody(new JspViewHandler(), List.of("<p/>"));
+
+    Assertions.assertEquals(List.of("<main>", "  <!-- @doBody begin -->", "  <%@ include file=\"page_inc.jsp\" %>",
+        "  <!-- @doBody end -->", "</main>"), layout);
+  }
+
+  @Test
+  public void test_insertBody_inline() {
+    var layout = insertBody(new JspViewHandler(true),
+        List.of("<?xml version=\"1.0\" encoding=\"UTF-8\"?>", "<p>a</p>", "<p>b</p>"));
+
+    Assertions.assertEquals(
+        List.of("<main>", "  <!-- @doBody begin -->", "<p>a</p>", "<p>b</p>", "  <!-- @doBody end -->", "</main>"),
+        layout);
+  }
+
+  @Test
+  public void test_insertBody_inlineJspRoot() {
+    var body = List.of("<?xml version=\"1.0\"?>", "",
+        "  <jsp:root xmlns:jsp=\"http://java.sun.com/JSP/Page\" version=\"2.0\">", "</jsp:root>");
+
+    var ex = Assertions.assertThrows(IllegalArgumentException.class, () -> insertBody(new JspViewHandler(true), body));
+    Assertions.assertTrue(ex.getMessage().contains("<jsp:root> can't be inlined"));
+  }
+
+  @Test
+  public void test_hasPageDirective() {
+    Assertions.assertTrue(new JspViewHandler().hasPageDirective());
+    Assertions.assertTrue(ViewStreamer.isStreamable(new JspViewHandler()));
+    Assertions.assertFalse(ViewStreamer.isStreamable(new JspViewHandler(true)));
+
+    // The markers of the page directive, another source change
+    var handler = new OtherViewHandler() {
+      @Override
+      public byte[][] getSourceMarkers() {
+        return JspViewHandler.PAGE_DIR_MARKERS;
+      }
+    };
+    Assertions.assertFalse(handler.hasPageDirective());
+    Assertions.assertFalse(ViewStreamer.isStreamable(handler));
+  }
+
+  static List<String> insertBody(ViewSourceHandler handler, List<String> body) {
+    List<String> layout = new ArrayList<>(List.of("<main>", "</main>"));
+    handler.insertBody(layout, 1, "  ", body, "page_inc.jsp");
+    return layout;
+  }
+}
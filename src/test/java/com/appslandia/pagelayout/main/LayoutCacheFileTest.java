@@ -0,0 +1,233 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.main;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.appslandia.pagelayout.utils.FileCache;
+
+/**
+ *
+ * @author Loc Ha
+ *
+ */
+public class LayoutCacheFileTest {
+
+  static final List<String> LAYOUTS = List.of("main.jsp", "child.jsp", "page.jsp");
+
+  @Test
+  public void test_saveLoad(@TempDir Path dir) throws Exception {
+    for (boolean removeBlankLines : new boolean[] { false, true }) {
+      var configPath = writeConfig(dir);
+      var cacheFile = dir.resolve("cache.bin");
+      var layoutCache = newLayoutCache();
+      var variablesCache = new FileCache<Map<String, String>>(10);
+      compile(configPath, removeBlankLines, layoutCache, variablesCache);
+      LayoutCacheFile.save(cacheFile, removeBlankLines, layoutCache, variablesCache);
+
+      var loadedLayouts = newLayoutCache();
+      var loadedVariables = new FileCache<Map<String, String>>(10);
+      Assertions.assertEquals(4, LayoutCacheFile.load(cacheFile, removeBlankLines, loadedLayouts, loadedVariables));
+
+      for (String layout : LAYOUTS) {
+        var layoutPath = configPath.resolve(layout);
+        Assertions.assertEquals(toString(layoutCache.get(layoutPath, p -> Assertions.fail(layout))),
+            toString(loadedLayouts.get(layoutPath, p -> Assertions.fail(layout))));
+      }
+      var variablesFile = configPath.resolve("common.properties");
+      Assertions.assertEquals(variablesCache.get(variablesFile, p -> Assertions.fail()),
+          loadedVariables.get(variablesFile, p -> Assertions.fail()));
+      Assertions.assertTrue(loadedLayouts.get(configPath.resolve("page.jsp"), p -> Assertions.fail()).isHandledPerView());
+    }
+  }
+
+  @Test
+  public void test_load_touched(@TempDir Path dir) throws Exception {
+    var configPath = writeConfig(dir);
+    var cacheFile = save(configPath, dir);
+
+    // Same content -> Reused with the new stamps
+    for (String file : List.of("main.jsp", "common.properties")) {
+      var path = configPath.resolve(file);
+      Files.setLastModifiedTime(path, FileTime.fromMillis(Files.getLastModifiedTime(path).toMillis() + 10_000));
+    }
+    var layoutCache = newLayoutCache();
+    Assertions.assertEquals(4, LayoutCacheFile.load(cacheFile, false, layoutCache, new FileCache<>(10)));
+
+    layoutCache.get(configPath.resolve("main.jsp"), p -> Assertions.fail());
+    Assertions.assertEquals(0, layoutCache.getMisses());
+  }
+
+  @Test
+  public void test_load_changed(@TempDir Path dir) throws Exception {
+    var configPath = writeConfig(dir);
+    var cacheFile = save(configPath, dir);
+
+    // Same size, other content
+    var mainPath = configPath.resolve("main.jsp");
+    var lastModified = Files.getLastModifiedTime(mainPath);
+    write(mainPath, new String(Files.readAllBytes(mainPath), StandardCharsets.UTF_8).replace("<main>", "<MAIN>"));
+    Files.setLastModifiedTime(mainPath, FileTime.fromMillis(lastModified.toMillis() + 10_000));
+
+    var layoutCache = newLayoutCache();
+    Assertions.assertEquals(3, LayoutCacheFile.load(cacheFile, false, layoutCache, new FileCache<>(10)));
+    Assertions.assertFalse(isCached(layoutCache, mainPath));
+  }
+
+  @Test
+  public void test_load_changedDependency(@TempDir Path dir) throws Exception {
+    var configPath = writeConfig(dir);
+    var cacheFile = save(configPath, dir);
+
+    write(configPath.resolve("common.properties"), "site=Other Site\n");
+
+    var layoutCache = newLayoutCache();
+    var variablesCache = new FileCache<Map<String, String>>(10);
+    Assertions.assertEquals(2, LayoutCacheFile.load(cacheFile, false, layoutCache, variablesCache));
+    Assertions.assertFalse(isCached(layoutCache, configPath.resolve("main.jsp")));
+    Assertions.assertFalse(isCached(variablesCache, configPath.resolve("common.properties")));
+
+    // Deleted
+    Files.delete(configPath.resolve("page.jsp"));
+    Assertions.assertEquals(1, LayoutCacheFile.load(cacheFile, false, newLayoutCache(), new FileCache<>(10)));
+  }
+
+  @Test
+  public void test_save_changed(@TempDir Path dir) throws Exception {
+    var configPath = writeConfig(dir);
+    var layoutCache = newLayoutCache();
+    var variablesCache = new FileCache<Map<String, String>>(10);
+    compile(configPath, false, layoutCache, variablesCache);
+
+    // Changed after it was compiled -> Not saved
+    write(configPath.resolve("child.jsp"), "<!-- @doBody -->");
+    var cacheFile = dir.resolve("cache.bin");
+    LayoutCacheFile.save(cacheFile, false, layoutCache, variablesCache);
+
+    var loadedLayouts = newLayoutCache();
+    Assertions.assertEquals(3, LayoutCacheFile.load(cacheFile, false, loadedLayouts, new FileCache<>(10)));
+    Assertions.assertFalse(isCached(loadedLayouts, configPath.resolve("child.jsp")));
+  }
+
+  @Test
+  public void test_load_mismatch(@TempDir Path dir) throws Exception {
+    var cacheFile = save(writeConfig(dir), dir);
+    Assertions.assertEquals(-1, LayoutCacheFile.load(cacheFile, true, newLayoutCache(), new FileCache<>(10)));
+
+    // VERSION
+    var bytes = Files.readAllBytes(cacheFile);
+    bytes[7]++;
+    Files.write(cacheFile, bytes);
+    Assertions.assertEquals(-1, LayoutCacheFile.load(cacheFile, false, newLayoutCache(), new FileCache<>(10)));
+
+    Assertions.assertEquals(-1,
+        LayoutCacheFile.load(dir.resolve("none.bin"), false, newLayoutCache(), new FileCache<>(10)));
+  }
+
+  @Test
+  public void test_load_truncated(@TempDir Path dir) throws Exception {
+    var cacheFile = save(writeConfig(dir), dir);
+    var bytes = Files.readAllBytes(cacheFile);
+
+    for (int length : new int[] { 0, 6, bytes.length / 2, bytes.length - 1 }) {
+      Files.write(cacheFile, Arrays.copyOf(bytes, length));
+
+      var layoutCache = newLayoutCache();
+      var variablesCache = new FileCache<Map<String, String>>(10);
+      Assertions.assertEquals(-1, LayoutCacheFile.load(cacheFile, false, layoutCache, variablesCache));
+      Assertions.assertTrue(layoutCache.getEntries().isEmpty());
+      Assertions.assertTrue(variablesCache.getEntries().isEmpty());
+    }
+  }
+
+  static Path writeConfig(Path dir) throws Exception {
+    var configPath = dir.resolve("__config");
+    write(configPath.resolve("main.jsp"), "<!-- @variables:common.properties -->\n<!-- @variables\n  title=Main\n-->\n"
+        + "<title>@(title) - @(site)</title>\n\n<main>\n  <!-- @doBody -->\n</main>\n<!-- @js? -->");
+    write(configPath.resolve("common.properties"), "site=Site\n");
+    write(configPath.resolve("child.jsp"), "<!-- @variables\n  __layout=main\n-->\n<nav/>\n<!-- @doBody -->\n"
+        + "<!-- @js begin -->\n<js/>\n<!-- @js end -->");
+    write(configPath.resolve("page.jsp"),
+        "<!-- @variables\n  sess=true\n-->\n<%@ page session=\"@(sess)\" %>\n<!-- @doBody -->");
+    return configPath;
+  }
+
+  static Path save(Path configPath, Path dir) throws Exception {
+    var layoutCache = newLayoutCache();
+    var variablesCache = new FileCache<Map<String, String>>(10);
+    compile(configPath, false, layoutCache, variablesCache);
+
+    var cacheFile = dir.resolve("cache.bin");
+    LayoutCacheFile.save(cacheFile, false, layoutCache, variablesCache);
+    return cacheFile;
+  }
+
+  static void compile(Path configPath, boolean removeBlankLines, FileCache<LayoutTemplate> layoutCache,
+      FileCache<Map<String, String>> variablesCache) throws Exception {
+    for (String layout : LAYOUTS) {
+      layoutCache.get(configPath.resolve(layout), p -> LayoutTemplate.compile(p, layout, configPath,
+          new JspViewHandler(), removeBlankLines, variablesCache));
+    }
+  }
+
+  static FileCache<LayoutTemplate> newLayoutCache() {
+    return new FileCache<>(10, LayoutTemplate::getVariablesFiles);
+  }
+
+  static boolean isCached(FileCache<?> cache, Path file) {
+    var key = file.toAbsolutePath().normalize();
+    return cache.getEntries().stream().anyMatch(entry -> entry.getKey().equals(key));
+  }
+
+  static String toString(LayoutTemplate layout) {
+    var sb = new StringBuilder();
+    sb.append(layout.layoutViewName).append('|').append(layout.variables).append('|').append(layout.variablesFiles)
+        .append('|').append(layout.removeBlankLines).append('|').append(layout.lineCount).append('|')
+        .append(layout.parentLayoutName).append('|').append(layout.handledPerView);
+    appendSegments(sb, layout.segments);
+    for (Map.Entry<String, List<LayoutTemplate.Segment>> section : layout.sections.entrySet()) {
+      sb.append("\n@").append(section.getKey());
+      appendSegments(sb, section.getValue());
+    }
+    return sb.toString();
+  }
+
+  static void appendSegments(StringBuilder sb, List<LayoutTemplate.Segment> segments) {
+    for (LayoutTemplate.Segment segment : segments) {
+      sb.append('\n').append(segment.type).append(':').append(segment.value);
+    }
+  }
+
+  static void write(Path file, String content) throws Exception {
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+}
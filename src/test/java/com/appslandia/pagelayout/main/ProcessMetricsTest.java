@@ -0,0 +1,170 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.main;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.appslandia.pagelayout.main.ProcessMetrics.Phase;
+import com.appslandia.pagelayout.main.ProcessMetrics.ViewTime;
+import com.appslandia.pagelayout.utils.FileCache;
+
+/**
+ *
+ * @author Loc Ha
+ *
+ */
+public class ProcessMetricsTest {
+
+  @Test
+  public void test_slowestViews() {
+    var metrics = new ProcessMetrics(3);
+    metrics.viewProcessed("a.jsp", 5);
+    metrics.viewProcessed("b.jsp", 1);
+    metrics.viewProcessed("c.jsp", 9);
+    metrics.viewProcessed("d.jsp", 3);
+    metrics.viewProcessed("e.jsp", 7);
+    metrics.viewProcessed("f.jsp", 5);
+
+    Assertions.assertEquals(6, metrics.getViews());
+    Assertions.assertEquals(List.of("c.jsp", "e.jsp", "a.jsp"), toViewNames(metrics.getSlowestViews()));
+    Assertions.assertEquals(List.of(9L, 7L, 5L),
+        metrics.getSlowestViews().stream().map(ViewTime::getNanos).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void test_slowestViews_none() {
+    var metrics = new ProcessMetrics(0);
+    metrics.viewProcessed("a.jsp", 5);
+
+    Assertions.assertEquals(1, metrics.getViews());
+    Assertions.assertTrue(metrics.getSlowestViews().isEmpty());
+    Assertions.assertFalse(metrics.toSummary().contains("Slowest views:"));
+  }
+
+  @Test
+  public void test_escapeJson() {
+    Assertions.assertEquals("page.jsp", ProcessMetrics.escapeJson("page.jsp"));
+    Assertions.assertEquals("a\\\"b\\\\c.jsp", ProcessMetrics.escapeJson("a\"b\\c.jsp"));
+    Assertions.assertEquals("a\\u0009b\\u000a", ProcessMetrics.escapeJson("a\tb\n"));
+  }
+
+  @Test
+  public void test_toJson() {
+    var metrics = new ProcessMetrics(2);
+    metrics.add(Phase.LOAD, System.nanoTime());
+    metrics.fileProcessed();
+    metrics.viewProcessed("dir\\\"quoted\".jsp", 2_000_000);
+    metrics.finish();
+
+    var json = metrics.toJson(new ProcessStats());
+    Assertions.assertTrue(json.startsWith("{\n") && json.endsWith("}\n"), json);
+    Assertions.assertTrue(json.contains("\"files\": 1,\n"), json);
+    Assertions.assertTrue(json.contains("{ \"name\": \"LOAD\", \"count\": 1, \"millis\": "), json);
+    Assertions.assertTrue(json.contains("\"caches\": [],\n"), json);
+    Assertions.assertTrue(json.contains("{ \"view\": \"dir\\\\\\\"quoted\\\".jsp\", \"millis\": 2.000 }"), json);
+  }
+
+  @Test
+  public void test_toSummary() {
+    var metrics = new ProcessMetrics(2);
+    metrics.add(Phase.LOAD, System.nanoTime() - 1_000_000);
+    metrics.add(Phase.LOAD, System.nanoTime() - 1_000_000);
+    metrics.fileProcessed();
+    metrics.viewProcessed("page.jsp", 3_000_000);
+
+    var cache = new FileCache<String>(10);
+    metrics.cacheEnd(metrics.cacheStart("layout", cache), cache);
+    metrics.finish();
+
+    var lines = metrics.toSummary();
+    Assertions.assertTrue(lines.get(0).startsWith("Phase"), lines.get(0));
+    Assertions.assertTrue(lines.get(1).matches("load\\s+2\\s+[\\d.]+\\s+[\\d.]+\\s+100\\.0"), lines.get(1));
+    Assertions.assertTrue(lines.get(2).startsWith("Wall time: ") && lines.get(2).contains("files: 1, views: 1"),
+        lines.get(2));
+    Assertions.assertEquals("Cache layout: hits=0, misses=0, hit rate=0.0%", lines.get(3));
+    Assertions.assertEquals("Slowest views:", lines.get(4));
+    Assertions.assertEquals("      3.00 ms  page.jsp", lines.get(5));
+    Assertions.assertEquals(6, lines.size());
+  }
+
+  @Test
+  public void test_cacheStartEnd() throws Exception {
+    var metrics = new ProcessMetrics(0);
+    var cache = new FileCache<String>(10);
+    cache.get(Path.of("a"), p -> "a");
+
+    // Counted from the start
+    var cacheMetrics = metrics.cacheStart("layout", cache);
+    cache.get(Path.of("a"), p -> "a");
+    cache.get(Path.of("a"), p -> "a");
+    cache.get(Path.of("b"), p -> "b");
+    metrics.cacheEnd(cacheMetrics, cache);
+
+    Assertions.assertEquals(2, cacheMetrics.getHits());
+    Assertions.assertEquals(1, cacheMetrics.getMisses());
+    Assertions.assertEquals(2.0 / 3, cacheMetrics.getHitRate(), 1e-9);
+  }
+
+  @Test
+  public void test_caches_twoRuns(@TempDir Path dir) throws Exception {
+    var inViewsPath = dir.resolve("__views");
+    write(inViewsPath.resolve("__config/main.jsp"), "<!-- @variables:common.properties -->\n<main>@(site)\n"
+        + "<!-- @doBody -->\n</main>");
+    write(inViewsPath.resolve("__config/common.properties"), "site=Site\n");
+    for (var i = 0; i < 3; i++) {
+      write(inViewsPath.resolve("page" + i + ".jsp"), "<!-- @variables\n  __layout=main\n-->\npage " + i);
+    }
+    var processor = new ViewProcessor().inputViewsDir(inViewsPath.toString()).outputViewsDir("views");
+
+    processor.process();
+    var layout = getCache(processor.getMetrics(), "layout");
+    Assertions.assertEquals(1, layout.getMisses());
+    Assertions.assertEquals(2, layout.getHits());
+
+    // The caches are kept: this run only
+    processor.process();
+    layout = getCache(processor.getMetrics(), "layout");
+    Assertions.assertEquals(0, layout.getMisses());
+    Assertions.assertEquals(3, layout.getHits());
+    Assertions.assertEquals(0, getCache(processor.getMetrics(), "variables file").getMisses());
+  }
+
+  static ProcessMetrics.CacheMetrics getCache(ProcessMetrics metrics, String name) {
+    return metrics.getCaches().stream().filter(cache -> cache.getName().equals(name)).findFirst().get();
+  }
+
+  static List<String> toViewNames(List<ViewTime> views) {
+    return views.stream().map(ViewTime::getViewName).collect(Collectors.toList());
+  }
+
+  static void write(Path file, String content) throws Exception {
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+}
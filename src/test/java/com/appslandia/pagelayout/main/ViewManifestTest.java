@@ -0,0 +1,88 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.main;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author Loc Ha
+ *
+ */
+public class ViewManifestTest {
+
+  @Test
+  public void test_load(@TempDir Path dir) throws Exception {
+    var manifestFile = dir.resolve("manifest.txt");
+    write(manifestFile, "S\t3\t100\tabc\tpage.jsp", "E\tpage.jsp", "O\tpage.jsp", "D\t__config/layout.jsp");
+
+    var manifest = newManifest(dir);
+    manifest.load(manifestFile);
+
+    Assertions.assertTrue(manifest.isLoaded());
+    Assertions.assertEquals(List.of("__config/layout.jsp"), manifest.getPrevDependencies("page.jsp"));
+  }
+
+  @Test
+  public void test_load_outputBeforeEntry(@TempDir Path dir) throws Exception {
+    assertNotLoaded(dir, "S\t3\t100\tabc\tpage.jsp", "O\tpage.jsp", "E\tpage.jsp");
+    assertNotLoaded(dir, "D\t__config/layout.jsp", "E\tpage.jsp");
+  }
+
+  @Test
+  public void test_load_truncatedStamp(@TempDir Path dir) throws Exception {
+    assertNotLoaded(dir, "E\tpage.jsp", "O\tpage.jsp", "S\t3\t100");
+    assertNotLoaded(dir, "E\tpage.jsp", "S\t3\tx\tabc\tpage.jsp");
+  }
+
+  @Test
+  public void test_load_unknownTag(@TempDir Path dir) throws Exception {
+    assertNotLoaded(dir, "E\tpage.jsp", "O\tpage.jsp", "X\tpage.jsp");
+  }
+
+  static void assertNotLoaded(Path dir, String... lines) throws Exception {
+    var manifestFile = dir.resolve("manifest.txt");
+    write(manifestFile, lines);
+
+    var manifest = newManifest(dir);
+    manifest.load(manifestFile);
+
+    Assertions.assertFalse(manifest.isLoaded());
+    Assertions.assertTrue(manifest.prevStamps.isEmpty());
+    Assertions.assertTrue(manifest.getPrevSources().isEmpty());
+  }
+
+  static ViewManifest newManifest(Path dir) {
+    return new ViewManifest(dir.resolve("__views"), dir.resolve("views"), "test");
+  }
+
+  static void write(Path manifestFile, String... lines) throws Exception {
+    var content = ViewManifest.HEADER + "\noptions=test\n" + String.join("\n", lines) + "\n";
+    Files.write(manifestFile, content.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,610 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.main;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.appslandia.pagelayout.utils.FileNameUtils;
+import com.appslandia.pagelayout.utils.GzipFiles;
+import com.appslandia.pagelayout.utils.MarkupMinifier;
+
+/**
+ *
+ * @author Loc Ha
+ *
+ */
+public class ViewProcessorTest {
+
+  @Test
+  public void test_incremental_unchanged(@TempDir Path dir) throws Exception {
+    writeTree(dir);
+    newProcessor(dir).process();
+
+    var processor = newProcessor(dir);
+    processor.process();
+    Assertions.assertEquals(0, processor.getStats().getWrittenFiles());
+    Assertions.assertEquals(0, processor.getStats().getDeletedFiles());
+  }
+
+  @Test
+  public void test_incremental_layoutChanged(@TempDir Path dir) throws Exception {
+    writeTree(dir);
+    newProcessor(dir).process();
+
+    write(dir.resolve("__views/__config/admin.jsp"), "<admin>\n<!-- @doBody -->\n</admin>\n<!-- admin -->");
+    var processor = newProcessor(dir);
+    processor.process();
+
+    Assertions.assertEquals(Set.of("admin/users.jsp", "admin/users_inc.jsp"), writtenFiles(dir, processor));
+    Assertions.assertTrue(read(dir.resolve("views/admin/users.jsp")).contains("<!-- admin -->"));
+  }
+
+  @Test
+  public void test_incremental_variablesFileChanged(@TempDir Path dir) throws Exception {
+    writeTree(dir);
+    newProcessor(dir).process();
+
+    write(dir.resolve("__views/__config/common.properties"), "site=New Site\n");
+    var processor = newProcessor(dir);
+    processor.process();
+
+    Assertions.assertEquals(Set.of("about.jsp", "about_inc.jsp"), writtenFiles(dir, processor));
+    Assertions.assertTrue(read(dir.resolve("views/about.jsp")).contains("New Site"));
+  }
+
+  @Test
+  public void test_incremental_sourceDeleted(@TempDir Path dir) throws Exception {
+    writeTree(dir);
+    newProcessor(dir).process();
+
+    Files.delete(dir.resolve("__views/index.jsp"));
+    var processor = newProcessor(dir);
+    processor.process();
+
+    Assertions.assertEquals(0, processor.getStats().getWrittenFiles());
+    Assertions.assertEquals(2, processor.getStats().getDeletedFiles());
+    Assertions.assertFalse(Files.exists(dir.resolve("views/index.jsp")));
+    Assertions.assertFalse(Files.exists(dir.resolve("views/index_inc.jsp")));
+    Assertions.assertTrue(Files.exists(dir.resolve("views/about.jsp")));
+    Assertions.assertTrue(Files.exists(dir.resolve("views/admin/users.jsp")));
+  }
+
+  @Test
+  public void test_processChanges_view(@TempDir Path dir) throws Exception {
+    writeTree(dir);
+    var processor = newProcessor(dir);
+    processor.process();
+
+    var indexFile = dir.resolve("__views/index.jsp");
+    write(indexFile, "<!-- @variables\n  __layout=main\n-->\nnew index");
+    processor.processChanges(List.of(indexFile));
+
+    Assertions.assertEquals(Set.of("index.jsp", "index_inc.jsp"), writtenFiles(dir, processor));
+    Assertions.assertTrue(read(dir.resolve("views/index_inc.jsp")).contains("new index"));
+  }
+
+  @Test
+  public void test_processChanges_layout(@TempDir Path dir) throws Exception {
+    writeTree(dir);
+    var processor = newProcessor(dir);
+    processor.process();
+
+    var layoutFile = dir.resolve("__views/__config/main.jsp");
+    write(layoutFile, "<main>\n<!-- @doBody -->\n</main>\n<!-- main -->");
+    processor.processChanges(List.of(layoutFile));
+
+    Assertions.assertEquals(Set.of("index.jsp", "index_inc.jsp"), writtenFiles(dir, processor));
+    Assertions.assertTrue(read(dir.resolve("views/index.jsp")).contains("<!-- main -->"));
+  }
+
+  @Test
+  public void test_processChanges_newAndDeleted(@TempDir Path dir) throws Exception {
+    writeTree(dir);
+    var processor = newProcessor(dir);
+    processor.process();
+
+    var newFile = dir.resolve("__views/admin/roles.jsp");
+    write(newFile, "<!-- @variables\n  __layout=admin\n-->\nroles");
+    var deletedFile = dir.resolve("__views/index.jsp");
+    Files.delete(deletedFile);
+    processor.processChanges(List.of(newFile, deletedFile));
+
+    Assertions.assertEquals(Set.of("admin/roles.jsp", "admin/roles_inc.jsp"), writtenFiles(dir, processor));
+    Assertions.assertEquals(2, processor.getStats().getDeletedFiles());
+    Assertions.assertFalse(Files.exists(dir.resolve("views/index.jsp")));
+    Assertions.assertTrue(Files.exists(dir.resolve("views/admin/users.jsp")));
+  }
+
+  @Test
+  public void test_copyIfChanged(@TempDir Path dir) throws Exception {
+    writeTree(dir);
+    var sourceFile = dir.resolve("__views/css/app.css");
+    write(sourceFile, "body {}");
+    newProcessor(dir).copyStrategy(CopyStrategy.COPY_IF_CHANGED).process();
+
+    // Same size & modified time -> Kept as is
+    var targetFile = dir.resolve("views/css/app.css");
+    var lastModified = Files.getLastModifiedTime(targetFile);
+    write(targetFile, "body []");
+    Files.setLastModifiedTime(targetFile, lastModified);
+
+    var processor = new ViewProcessor().inputViewsDir(dir.resolve("__views").toString()).outputViewsDir("views")
+        .copyStrategy(CopyStrategy.COPY_IF_CHANGED);
+    processor.process();
+
+    Assertions.assertEquals(1, processor.getStats().getUnchangedFiles());
+    Assertions.assertEquals("body []", read(targetFile));
+    Assertions.assertEquals(lastModified, Files.getLastModifiedTime(targetFile));
+  }
+
+  @Test
+  public void test_copyLinks(@TempDir Path dir) throws Exception {
+    writeTree(dir);
+    var sourceFile = dir.resolve("__views/css/app.css");
+    write(sourceFile, "body {}");
+    var targetFile = dir.resolve("views/css/app.css");
+
+    newProcessor(dir).copyStrategy(CopyStrategy.HARDLINK).process();
+    Assertions.assertFalse(Files.isSymbolicLink(targetFile));
+    Assertions.assertTrue(Files.isSameFile(sourceFile, targetFile));
+
+    newProcessor(dir).copyStrategy(CopyStrategy.SYMLINK).process();
+    Assertions.assertTrue(Files.isSymbolicLink(targetFile));
+    Assertions.assertEquals(sourceFile.toAbsolutePath(), Files.readSymbolicLink(targetFile));
+  }
+
+  @Test
+  public void test_copyLinks_viewReplacingLink(@TempDir Path dir) throws Exception {
+    writeTree(dir);
+    var layoutSource = "<!-- @variables\n  __layout=main\n-->\nhome";
+    write(dir.resolve("__views/__config/main.html"), "<main>\n<!-- @doBody -->\n</main>");
+    write(dir.resolve("__views/home.html"), layoutSource);
+    write(dir.resolve("__views/plain.html"), "plain\n");
+
+    for (CopyStrategy copyStrategy : List.of(CopyStrategy.HARDLINK, CopyStrategy.SYMLINK)) {
+      var processor = new ViewProcessor().inputViewsDir(dir.resolve("__views").toString()).outputViewsDir("views")
+          .copyStrategy(copyStrategy);
+      processor.process();
+
+      // The .html files are views now: Written through the pipeline and the passthrough
+      processor.viewSuffixes(".jsp,.html").process();
+
+      Assertions.assertFalse(Files.isSymbolicLink(dir.resolve("views/home.html")));
+      Assertions.assertFalse(Files.isSymbolicLink(dir.resolve("views/plain.html")));
+      Assertions.assertTrue(read(dir.resolve("views/home.html")).contains("<main>"));
+      Assertions.assertEquals(layoutSource, read(dir.resolve("__views/home.html")));
+      Assertions.assertEquals("plain\n", read(dir.resolve("__views/plain.html")));
+    }
+  }
+
+  @Test
+  public void test_processToSink(@TempDir Path dir) throws Exception {
+    writeTree(dir);
+    write(dir.resolve("__views/css/app.css"), "body {}");
+    var inViewsPath = dir.resolve("__views");
+    new ViewProcessor().inputViewsDir(inViewsPath.toString()).outputViewsDir("views").process();
+    var diskFiles = readTree(dir.resolve("views"));
+
+    // Path
+    var sink = new MemoryOutputSink();
+    new ViewProcessor().process(inViewsPath, sink);
+    assertSameFiles(diskFiles, sink.getFiles());
+
+    // Map
+    Map<String, byte[]> sources = readTree(inViewsPath);
+    sink = new MemoryOutputSink();
+    new ViewProcessor().process(sources, sink);
+    assertSameFiles(diskFiles, sink.getFiles());
+  }
+
+  @Test
+  public void test_processToSink_caches(@TempDir Path dir) throws Exception {
+    writeTree(dir);
+    Map<String, byte[]> sources = readTree(dir.resolve("__views"));
+    var processor = new ViewProcessor();
+    processor.process(sources, new MemoryOutputSink());
+
+    var layoutHits = processor.getLayoutCache().getHits();
+    var layoutMisses = processor.getLayoutCache().getMisses();
+    var variablesMisses = processor.getVariablesCache().getMisses();
+
+    // Unchanged -> Cached
+    var sink = new MemoryOutputSink();
+    processor.process(sources, sink);
+    Assertions.assertEquals(layoutHits + 3, processor.getLayoutCache().getHits());
+    Assertions.assertEquals(layoutMisses, processor.getLayoutCache().getMisses());
+    Assertions.assertEquals(variablesMisses, processor.getVariablesCache().getMisses());
+
+    // Changed layout -> Reloaded
+    sources.put("__config/main.jsp", toBytes("<main>\n<!-- @doBody -->\n</main>\n<!-- main -->"));
+    sink = new MemoryOutputSink();
+    processor.process(sources, sink);
+    Assertions.assertEquals(layoutMisses + 1, processor.getLayoutCache().getMisses());
+    Assertions.assertTrue(new String(sink.get("index.jsp"), StandardCharsets.UTF_8).contains("<!-- main -->"));
+    Assertions.assertFalse(new String(sink.get("about.jsp"), StandardCharsets.UTF_8).contains("<!-- main -->"));
+  }
+
+  @Test
+  public void test_passthrough() throws Exception {
+    Map<String, byte[]> sources = new TreeMap<>();
+    for (String suffix : List.of(".jsp", ".xhtml", ".peb", ".html")) {
+      sources.put("empty" + suffix, new byte[0]);
+      sources.put("lf" + suffix, toBytes("<p>a</p>\n<p>b</p>\n"));
+      sources.put("nolf" + suffix, toBytes("<p>a</p>\n<p>b</p>"));
+      sources.put("bom" + suffix, toBytes("\ufeff<p>a</p>\n"));
+    }
+    var suffixes = ".jsp,.xhtml,.peb,.html";
+
+    var expected = new MemoryOutputSink();
+    new ViewProcessor().viewSuffixes(suffixes).passthrough(false).process(sources, expected);
+    var actual = new MemoryOutputSink();
+    new ViewProcessor().viewSuffixes(suffixes).passthrough(true).process(sources, actual);
+
+    Assertions.assertEquals(sources.keySet(), actual.getFiles().keySet());
+    assertSameFiles(expected.getFiles(), actual.getFiles());
+  }
+
+  @Test
+  public void test_streaming(@TempDir Path dir) throws Exception {
+    var inViewsPath = dir.resolve("__views");
+    var suffixes = List.of(".jsp", ".peb", ".html");
+    for (String suffix : suffixes) {
+      write(inViewsPath.resolve("__config/main" + suffix), "<!-- @variables\n  title=Main\n-->\n<title>@(title)</title>\n"
+          + "<main>\n  <!-- @doBody -->\n</main>\n\n<!-- @js? -->\n<!-- @css? -->");
+      write(inViewsPath.resolve("page" + suffix), toLargeView(true));
+      write(inViewsPath.resolve("plain" + suffix), toLargeView(false));
+    }
+    write(inViewsPath.resolve("directive.jsp"),
+        "<%@ page import=\"java.util.List\" %>\n<%@ taglib prefix=\"c\" uri=\"jakarta.tags.core\" %>\n"
+            + toLargeView(true));
+
+    List<Function<ViewProcessor, ViewProcessor>> options = List.of(p -> p, p -> p.removeBlankLines(true),
+        p -> p.debugVariables(true), p -> p.lineSeparator("CRLF"), p -> p.inlineBody(true),
+        p -> p.removeBlankLines(true).debugVariables(true).inlineBody(true));
+
+    for (var option : options) {
+      var expected = new MemoryOutputSink();
+      option.apply(new ViewProcessor()).viewSuffixes(String.join(",", suffixes)).process(inViewsPath, expected);
+
+      option.apply(new ViewProcessor()).inputViewsDir(inViewsPath.toString()).outputViewsDir("views")
+          .viewSuffixes(String.join(",", suffixes)).streaming(true).streamBufferSize(1024).process();
+      assertSameFiles(expected.getFiles(), readTree(dir.resolve("views")));
+    }
+  }
+
+  @Test
+  public void test_streaming_failed(@TempDir Path dir) throws Exception {
+    var inViewsPath = dir.resolve("__views");
+    write(inViewsPath.resolve("__config/main.jsp"), "<main>\n<!-- @doBody -->\n</main>\n<!-- @js -->");
+    write(inViewsPath.resolve("page.jsp"), toLargeView(true));
+    write(inViewsPath.resolve("nojs.jsp"), toLargeView(true).replaceAll("(?s)<!-- @js begin -->.*<!-- @js end -->", ""));
+
+    var processor = new ViewProcessor().inputViewsDir(inViewsPath.toString()).outputViewsDir("views")
+        .streaming(true).streamBufferSize(1024);
+    Assertions.assertThrows(IllegalArgumentException.class, () -> processor.process());
+
+    var outputs = readTree(dir.resolve("views")).keySet();
+    Assertions.assertTrue(outputs.stream().noneMatch(o -> o.endsWith(".tmp")), outputs.toString());
+    Assertions.assertFalse(outputs.contains("nojs.jsp"));
+    Assertions.assertFalse(outputs.contains("nojs_inc.jsp"));
+  }
+
+  @Test
+  public void test_layoutChain() throws Exception {
+    Map<String, byte[]> sources = new LinkedHashMap<>();
+    sources.put("__config/root.xhtml",
+        toBytes("<!-- @variables\n  title=Root\n-->\n<title>@(title)</title>\n<!-- @doBody -->\n<!-- @js? -->"));
+    sources.put("__config/admin.xhtml", toBytes("<!-- @variables\n  __layout=root\n  title=Admin\n-->\n<nav/>\n"
+        + "<!-- @doBody -->\n<!-- @js begin -->\n<js/>\n<!-- @js end -->"));
+    sources.put("page.xhtml", toBytes("<!-- @variables\n  __layout=admin\n-->\nhello"));
+
+    var sink = new MemoryOutputSink();
+    new ViewProcessor().configDir("__config").process(sources, sink);
+
+    Assertions.assertEquals("<title>Admin</title>\n<nav/>\n<!-- @doBody begin -->\n"
+        + "<ui:include src=\"page_inc.xhtml\" />\n<!-- @doBody end -->\n<!-- @js begin -->\n<js/>\n<!-- @js end -->",
+        new String(sink.get("page.xhtml"), StandardCharsets.UTF_8));
+
+    // root -> admin -> root
+    sources.put("__config/root.xhtml", toBytes("<!-- @variables\n  __layout=admin\n-->\n<!-- @doBody -->"));
+    var ex = Assertions.assertThrows(IllegalArgumentException.class,
+        () -> new ViewProcessor().configDir("__config").process(sources, new MemoryOutputSink()));
+    Assertions.assertTrue(ex.getMessage().contains("admin.xhtml -> root.xhtml -> admin.xhtml"));
+  }
+
+  @Test
+  public void test_threads_firstError(@TempDir Path dir) throws Exception {
+    writeTree(dir);
+    var inViewsPath = dir.resolve("__views");
+    for (var i = 0; i < 20; i++) {
+      write(inViewsPath.resolve("page" + i + ".jsp"), "<!-- @variables\n  __layout=main\n-->\npage " + i);
+    }
+    write(inViewsPath.resolve("page05_failed.jsp"), "<!-- @variables\n  __layout=\n-->\nfailed");
+    write(inViewsPath.resolve("page15_failed.jsp"), "<!-- @variables\n  __layout=\n-->\nfailed");
+
+    for (int threads : new int[] { 1, 2, 4, 8 }) {
+      var processor = new ViewProcessor().inputViewsDir(inViewsPath.toString()).outputViewsDir("views")
+          .threads(threads);
+      var ex = Assertions.assertThrows(IllegalArgumentException.class, () -> processor.process());
+
+      Assertions.assertTrue(ex.getMessage().contains("page05_failed.jsp"), ex.getMessage());
+      for (Throwable suppressed : ex.getSuppressed()) {
+        Assertions.assertTrue(suppressed.getMessage().contains("page15_failed.jsp"), suppressed.getMessage());
+      }
+    }
+  }
+
+  @Test
+  public void test_writeIfChanged(@TempDir Path dir) throws Exception {
+    writeTree(dir);
+    var inViewsPath = dir.resolve("__views");
+    var processor = new ViewProcessor().inputViewsDir(inViewsPath.toString()).outputViewsDir("views")
+        .writeIfChanged(true);
+    processor.process();
+    Assertions.assertEquals(6, processor.getStats().getWrittenFiles());
+
+    // Detects the rewritten outputs
+    var lastModified = FileTime.fromMillis(System.currentTimeMillis() - 3_600_000);
+    for (String output : readTree(dir.resolve("views")).keySet()) {
+      Files.setLastModifiedTime(dir.resolve("views").resolve(output), lastModified);
+    }
+
+    write(inViewsPath.resolve("index.jsp"), "<!-- @variables\n  __layout=main\n-->\nnew index");
+    Files.delete(inViewsPath.resolve("about.jsp"));
+    processor.process();
+
+    Assertions.assertEquals(Set.of("index_inc.jsp"), writtenFiles(dir, processor));
+    Assertions.assertEquals(1, processor.getStats().getWrittenFiles());
+    Assertions.assertEquals(3, processor.getStats().getUnchangedFiles());
+    Assertions.assertEquals(2, processor.getStats().getDeletedFiles());
+
+    Assertions.assertNotEquals(lastModified, Files.getLastModifiedTime(dir.resolve("views/index_inc.jsp")));
+    for (String output : List.of("index.jsp", "admin/users.jsp", "admin/users_inc.jsp")) {
+      Assertions.assertEquals(lastModified, Files.getLastModifiedTime(dir.resolve("views").resolve(output)), output);
+    }
+    Assertions.assertEquals(Set.of("admin/users.jsp", "admin/users_inc.jsp", "index.jsp", "index_inc.jsp"),
+        readTree(dir.resolve("views")).keySet());
+  }
+
+  @Test
+  public void test_layoutVariables_handled(@TempDir Path dir) throws Exception {
+    var inViewsPath = dir.resolve("__views");
+    write(inViewsPath.resolve("__config/main.jsp"), "<!-- @variables\n  sess=true\n  trim=false\n-->\n"
+        + "<%@ page session=\"@(sess)\"\n  trimDirectiveWhitespaces=\"@(trim)\" %>\n<main>\n<!-- @doBody -->\n</main>");
+    write(inViewsPath.resolve("__config/side.jsp"),
+        "<!-- @variables:side.properties -->\n<side>\n@(body)\n@(js)\n</side>");
+    write(inViewsPath.resolve("__config/side.properties"), "body=<!-- @doBody -->\njs=<!-- @js? -->\n");
+
+    write(inViewsPath.resolve("index.jsp"), "<!-- @variables\n  __layout=main\n-->\nindex");
+    write(inViewsPath.resolve("nosess.jsp"), "<!-- @variables\n  __layout=main\n  sess=false\n-->\nnosess");
+    write(inViewsPath.resolve("side.jsp"),
+        "<!-- @variables\n  __layout=side\n-->\nside\n<!-- @js begin -->\n<js/>\n<!-- @js end -->");
+    write(inViewsPath.resolve("page.jsp"),
+        "<!-- @variables\n  __layout=main\n  name=World\n-->\n" + toLargeView(false));
+
+    var sink = new MemoryOutputSink();
+    new ViewProcessor().process(inViewsPath, sink);
+
+    Assertions.assertEquals("<%@ page session=\"true\" trimDirectiveWhitespaces=\"false\" pageEncoding=\"UTF-8\"%>\n"
+        + "<main>\n<!-- @doBody begin -->\n<%@ include file=\"index_inc.jsp\" %>\n<!-- @doBody end -->\n</main>",
+        new String(sink.get("index.jsp"), StandardCharsets.UTF_8));
+    Assertions.assertTrue(new String(sink.get("nosess.jsp"), StandardCharsets.UTF_8)
+        .startsWith("<%@ page session=\"false\" trimDirectiveWhitespaces=\"false\" pageEncoding=\"UTF-8\"%>\n"));
+    Assertions.assertTrue(new String(sink.get("side.jsp"), StandardCharsets.UTF_8).endsWith("<side>\n"
+        + "<!-- @doBody begin -->\n<%@ include file=\"side_inc.jsp\" %>\n<!-- @doBody end -->\n"
+        + "<!-- @js begin -->\n<js/>\n<!-- @js end -->\n</side>"));
+
+    // Streamed -> Handled in memory
+    new ViewProcessor().inputViewsDir(inViewsPath.toString()).outputViewsDir("views").streaming(true)
+        .streamBufferSize(1024).process();
+    assertSameFiles(sink.getFiles(), readTree(dir.resolve("views")));
+  }
+
+  @Test
+  public void test_minify(@TempDir Path dir) throws Exception {
+    Map<String, byte[]> sources = new TreeMap<>();
+    for (String suffix : List.of(".jsp", ".html")) {
+      sources.put("__config/main" + suffix, toBytes("<html>\n  <body>\n    <!-- @doBody -->\n  </body>\n</html>"));
+      sources.put("page" + suffix,
+          toBytes("<!-- @variables\n  __layout=main\n-->\n<div>\n    <p>  a  </p>\n\n  <p>b</p>\n</div>"));
+      sources.put("plain" + suffix, toBytes("<div>\n    <p>  a  </p>\n\n  <p>b</p>\n</div>\n"));
+    }
+    var plain = new MemoryOutputSink();
+    new ViewProcessor().viewSuffixes(".jsp,.html").process(sources, plain);
+
+    // .html: the layout output & the passthrough view
+    var actual = new MemoryOutputSink();
+    new ViewProcessor().viewSuffixes(".jsp,.html").minifySuffixes(".html").process(sources, actual);
+
+    Assertions.assertEquals(plain.getFiles().keySet(), actual.getFiles().keySet());
+    for (String file : plain.getFiles().keySet()) {
+      var expected = file.endsWith(".html") ? minify(plain.get(file)) : plain.get(file);
+      Assertions.assertArrayEquals(expected, actual.get(file), file);
+    }
+    Assertions.assertFalse(Arrays.equals(plain.get("plain.html"), actual.get("plain.html")));
+    Assertions.assertFalse(Arrays.equals(plain.get("page.html"), actual.get("page.html")));
+
+    // .jsp: the layout output & the _inc file
+    actual = new MemoryOutputSink();
+    new ViewProcessor().viewSuffixes(".jsp,.html").minifySuffixes(".jsp").process(sources, actual);
+
+    for (String file : List.of("page.jsp", "page_inc.jsp", "plain.jsp")) {
+      Assertions.assertArrayEquals(minify(plain.get(file)), actual.get(file), file);
+      Assertions.assertFalse(Arrays.equals(plain.get(file), actual.get(file)), file);
+    }
+    Assertions.assertArrayEquals(plain.get("page.html"), actual.get("page.html"));
+
+    // Large views: not streamed
+    var inViewsPath = dir.resolve("__views");
+    write(inViewsPath.resolve("__config/main.html"), "<!-- @variables\n  title=Main\n-->\n<title>@(title)</title>\n"
+        + "<main>\n  <!-- @doBody -->\n</main>\n\n<!-- @js? -->");
+    write(inViewsPath.resolve("page.html"), toLargeView(true));
+    write(inViewsPath.resolve("plain.html"), toLargeView(false));
+
+    var expected = new MemoryOutputSink();
+    new ViewProcessor().viewSuffixes(".html").minifySuffixes(".html").process(inViewsPath, expected);
+    new ViewProcessor().inputViewsDir(inViewsPath.toString()).outputViewsDir("views").viewSuffixes(".html")
+        .minifySuffixes(".html").streaming(true).streamBufferSize(1024).process();
+    assertSameFiles(expected.getFiles(), readTree(dir.resolve("views")));
+    Assertions.assertFalse(read(dir.resolve("views/plain.html")).contains("\n"));
+    Assertions.assertFalse(read(dir.resolve("views/page.html")).contains("\n\n"));
+  }
+
+  static byte[] minify(byte[] output) {
+    var lines = List.of(new String(output, StandardCharsets.UTF_8).split("\n"));
+    return toBytes(String.join("\n", MarkupMinifier.minify(lines)));
+  }
+
+  @Test
+  public void test_gzip(@TempDir Path dir) throws Exception {
+    writeTree(dir);
+    var inViewsPath = dir.resolve("__views");
+    var css = ".a { color: red; }\n".repeat(100);
+    write(inViewsPath.resolve("static/site.css"), css);
+    write(inViewsPath.resolve("static/small.css"), ".a { color: red; }\n");
+    write(inViewsPath.resolve("static/site.txt"), css);
+
+    newProcessor(dir).gzip(true).process();
+    var gzipFile = dir.resolve("views/static/site.css.gz");
+    Assertions.assertEquals(css, gunzip(gzipFile));
+
+    // Below gzipMinSize, other suffix
+    Assertions.assertFalse(Files.exists(dir.resolve("views/static/small.css.gz")));
+    Assertions.assertFalse(Files.exists(dir.resolve("views/static/site.txt.gz")));
+
+    // Unchanged -> Untouched
+    var lastModified = FileTime.fromMillis(1_000_000_000_000L);
+    Files.setLastModifiedTime(gzipFile, lastModified);
+    newProcessor(dir).gzip(true).process();
+    Assertions.assertEquals(lastModified, Files.getLastModifiedTime(gzipFile));
+
+    // gzipLevel changed
+    newProcessor(dir).gzip(true).gzipLevel(1).process();
+    Assertions.assertNotEquals(lastModified, Files.getLastModifiedTime(gzipFile));
+    Assertions.assertTrue(GzipFiles.readComment(gzipFile).endsWith(";level=1"));
+    Assertions.assertEquals(css, gunzip(gzipFile));
+
+    // Source changed
+    css = ".b { color: blue; }\n".repeat(100);
+    write(inViewsPath.resolve("static/site.css"), css);
+    newProcessor(dir).gzip(true).gzipLevel(1).process();
+    Assertions.assertEquals(css, gunzip(gzipFile));
+
+    // Source deleted -> Stale
+    Files.delete(inViewsPath.resolve("static/site.css"));
+    newProcessor(dir).gzip(true).gzipLevel(1).process();
+    Assertions.assertFalse(Files.exists(dir.resolve("views/static/site.css")));
+    Assertions.assertFalse(Files.exists(gzipFile));
+  }
+
+  static String gunzip(Path gzipFile) throws Exception {
+    try (var in = new GZIPInputStream(Files.newInputStream(gzipFile))) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  static String toLargeView(boolean layout) {
+    var view = new StringBuilder();
+    if (layout) {
+      view.append("<!-- @variables\n  __layout=main\n  title=Page\n  name=World\n-->\n");
+    }
+    for (var i = 0; i < 60; i++) {
+      view.append("<p>Hello @(name) ").append(i).append("</p>\n");
+      if (i % 10 == 0) {
+        view.append("\n  \n");
+      }
+    }
+    if (layout) {
+      view.append("<!-- @js begin -->\n<script>var a = '@(title)';</script>\n<!-- @js end -->\n");
+    }
+    return view.toString();
+  }
+
+  static void writeTree(Path dir) throws Exception {
+    var inViewsPath = dir.resolve("__views");
+    write(inViewsPath.resolve("__config/main.jsp"), "<main>\n<!-- @doBody -->\n</main>");
+    write(inViewsPath.resolve("__config/admin.jsp"), "<admin>\n<!-- @doBody -->\n</admin>");
+    write(inViewsPath.resolve("__config/about.jsp"),
+        "<!-- @variables:common.properties -->\n<about>@(site)\n<!-- @doBody -->\n</about>");
+    write(inViewsPath.resolve("__config/common.properties"), "site=Site\n");
+
+    write(inViewsPath.resolve("index.jsp"), "<!-- @variables\n  __layout=main\n-->\nindex");
+    write(inViewsPath.resolve("about.jsp"), "<!-- @variables\n  __layout=about\n-->\nabout");
+    write(inViewsPath.resolve("admin/users.jsp"), "<!-- @variables\n  __layout=admin\n-->\nusers");
+  }
+
+  static ViewProcessor newProcessor(Path dir) {
+    return new ViewProcessor().inputViewsDir(dir.resolve("__views").toString()).outputViewsDir("views")
+        .incremental(true).manifestFile(dir.resolve("manifest.txt").toString());
+  }
+
+  static Map<String, byte[]> readTree(Path root) throws Exception {
+    Map<String, byte[]> files = new TreeMap<>();
+    try (var paths = Files.walk(root)) {
+      for (Path file : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+        files.put(FileNameUtils.toUnixPath(root.relativize(file).toString()), Files.readAllBytes(file));
+      }
+    }
+    return files;
+  }
+
+  static void assertSameFiles(Map<String, byte[]> expected, Map<String, byte[]> actual) {
+    Assertions.assertEquals(expected.keySet(), actual.keySet());
+    expected.forEach((path, content) -> Assertions.assertArrayEquals(content, actual.get(path), path));
+  }
+
+  static Set<String> writtenFiles(Path dir, ViewProcessor processor) {
+    var outViewsPath = dir.resolve("views");
+    Set<String> files = new TreeSet<>();
+    processor.getStats().getFileBytes().keySet()
+        .forEach(f -> files.add(FileNameUtils.toUnixPath(outViewsPath.relativize(f).toString())));
+    return files;
+  }
+
+  static void write(Path file, String content) throws Exception {
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  static byte[] toBytes(String source) {
+    return source.getBytes(StandardCharsets.UTF_8);
+  }
+
+  static String read(Path file) throws Exception {
+    return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+  }
+}
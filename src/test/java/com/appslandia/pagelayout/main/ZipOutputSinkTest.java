@@ -0,0 +1,69 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.main;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipFile;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author Loc Ha
+ *
+ */
+public class ZipOutputSinkTest {
+
+  @Test
+  public void test_reproducible(@TempDir Path dir) throws Exception {
+    ViewProcessorTest.writeTree(dir);
+    ViewProcessorTest.write(dir.resolve("__views/css/app.css"), "body {}");
+    ViewProcessorTest.write(dir.resolve("__views/js/app.js"), "var a;");
+
+    var archive1 = dir.resolve("views1.jar");
+    var archive4 = dir.resolve("views4.jar");
+    writeArchive(dir, archive1, 1);
+    writeArchive(dir, archive4, 4);
+
+    Assertions.assertArrayEquals(Files.readAllBytes(archive1), Files.readAllBytes(archive4));
+
+    List<String> names = new ArrayList<>();
+    try (var zip = new ZipFile(archive1.toFile())) {
+      zip.stream().forEach(e -> names.add(e.getName()));
+    }
+    Assertions.assertEquals(List.of("WEB-INF/", "WEB-INF/views/", "WEB-INF/views/about.jsp",
+        "WEB-INF/views/about_inc.jsp", "WEB-INF/views/admin/", "WEB-INF/views/admin/users.jsp",
+        "WEB-INF/views/admin/users_inc.jsp", "WEB-INF/views/css/", "WEB-INF/views/css/app.css",
+        "WEB-INF/views/index.jsp", "WEB-INF/views/index_inc.jsp", "WEB-INF/views/js/", "WEB-INF/views/js/app.js"),
+        names);
+  }
+
+  static void writeArchive(Path dir, Path archive, int threads) throws Exception {
+    try (var sink = new ZipOutputSink(archive).prefix("WEB-INF/views")) {
+      new ViewProcessor().threads(threads).process(dir.resolve("__views"), sink);
+    }
+  }
+}
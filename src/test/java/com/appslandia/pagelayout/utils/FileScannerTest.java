@@ -0,0 +1,137 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.utils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author Loc Ha
+ *
+ */
+public class FileScannerTest {
+
+  @Test
+  public void test_anyDirs(@TempDir Path root) throws Exception {
+    writeTree(root);
+    var scanner = new FileScanner(root).excludes(List.of("**/node_modules"));
+
+    Assertions.assertEquals(List.of("__config/layout.jsp", "a/b/page.jsp", "a/page.jsp", "assets/vendor/lib.js",
+        "index.jsp", "views/index.jsp"), toNames(root, scanner.scan()));
+    Assertions.assertTrue(scanner.isExcluded(root.resolve("node_modules/lib.js")));
+    Assertions.assertTrue(scanner.isExcluded(root.resolve("a/node_modules/lib.js")));
+  }
+
+  @Test
+  public void test_excludedDirPruned(@TempDir Path root) throws Exception {
+    writeTree(root);
+    Set<Path> visited = ConcurrentHashMap.newKeySet();
+    var scanner = new FileScanner(root) {
+
+      @Override
+      protected boolean acceptFile(Path file) {
+        visited.add(file);
+        return super.acceptFile(file);
+      }
+    }.excludes(List.of("**/node_modules", "assets/vendor/**"));
+
+    var files = toNames(root, scanner.scan());
+    Assertions.assertFalse(files.contains("assets/vendor/lib.js"));
+    Assertions.assertTrue(visited.stream().noneMatch(f -> f.toString().contains("node_modules")));
+    Assertions.assertTrue(visited.stream().noneMatch(f -> f.startsWith(root.resolve("assets/vendor"))));
+  }
+
+  @Test
+  public void test_anyFiles(@TempDir Path root) throws Exception {
+    writeTree(root);
+    var scanner = new FileScanner(root).excludes(List.of("assets/vendor/**"));
+
+    Assertions.assertFalse(toNames(root, scanner.scan()).contains("assets/vendor/lib.js"));
+    Assertions.assertTrue(scanner.isExcluded(root.resolve("assets/vendor")));
+    Assertions.assertFalse(scanner.isExcluded(root.resolve("assets")));
+  }
+
+  @Test
+  public void test_includes(@TempDir Path root) throws Exception {
+    writeTree(root);
+    var scanner = new FileScanner(root).includes(List.of("**/*.jsp")).excludes(List.of("**/node_modules"));
+
+    Assertions.assertEquals(List.of("__config/layout.jsp", "a/b/page.jsp", "a/page.jsp", "index.jsp",
+        "views/index.jsp"), toNames(root, scanner.scan()));
+  }
+
+  @Test
+  public void test_skipDir(@TempDir Path root) throws Exception {
+    writeTree(root);
+    var scanner = new FileScanner(root).skipDir(root.resolve("__config")).skipDir(root.resolve("views"))
+        .excludes(List.of("**/node_modules"));
+
+    Assertions.assertEquals(List.of("a/b/page.jsp", "a/page.jsp", "assets/vendor/lib.js", "index.jsp"),
+        toNames(root, scanner.scan()));
+    Assertions.assertTrue(scanner.isExcluded(root.resolve("views/index.jsp")));
+    Assertions.assertFalse(scanner.accept(root.resolve("__config/layout.jsp")));
+  }
+
+  @Test
+  public void test_threads(@TempDir Path root) throws Exception {
+    writeTree(root);
+    for (var i = 0; i < 20; i++) {
+      write(root.resolve("d" + i + "/e" + (i % 3) + "/page" + i + ".jsp"));
+    }
+    var excludes = List.of("**/node_modules", "d1*/**");
+
+    var files = new FileScanner(root).skipDir(root.resolve("views")).excludes(excludes).threads(1).scan();
+    Assertions.assertEquals(files,
+        new FileScanner(root).skipDir(root.resolve("views")).excludes(excludes).threads(4).scan());
+    Assertions.assertFalse(toNames(root, files).contains("d10/e1/page10.jsp"));
+  }
+
+  static void writeTree(Path root) throws Exception {
+    write(root.resolve("index.jsp"));
+    write(root.resolve("a/page.jsp"));
+    write(root.resolve("a/b/page.jsp"));
+    write(root.resolve("__config/layout.jsp"));
+    write(root.resolve("views/index.jsp"));
+    write(root.resolve("node_modules/lib.js"));
+    write(root.resolve("a/node_modules/lib.js"));
+    write(root.resolve("assets/vendor/lib.js"));
+  }
+
+  static void write(Path file) throws Exception {
+    Files.createDirectories(file.getParent());
+    Files.write(file, new byte[] { 'x' });
+  }
+
+  static List<String> toNames(Path root, List<Path> files) {
+    List<String> names = new ArrayList<>(files.size());
+    files.forEach(f -> names.add(FileNameUtils.toUnixPath(root.relativize(f).toString())));
+    return names;
+  }
+}
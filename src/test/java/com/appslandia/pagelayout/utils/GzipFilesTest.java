@@ -0,0 +1,54 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author Loc Ha
+ *
+ */
+public class GzipFilesTest {
+
+  @Test
+  public void test_write(@TempDir Path dir) throws Exception {
+    var source = dir.resolve("app.css");
+    Files.write(source, "body { color: red; }\n".repeat(100).getBytes(StandardCharsets.UTF_8));
+
+    var gzipFile = dir.resolve("app.css.gz");
+    var size = GzipFiles.write(source, gzipFile, 9, "sha256=abc");
+    Assertions.assertEquals(Files.size(gzipFile), size);
+    Assertions.assertEquals("sha256=abc", GzipFiles.readComment(gzipFile));
+    Assertions.assertNull(GzipFiles.readComment(dir.resolve("none.gz")));
+
+    try (var in = new GZIPInputStream(Files.newInputStream(gzipFile))) {
+      Assertions.assertArrayEquals(Files.readAllBytes(source), in.readAllBytes());
+    }
+  }
+}
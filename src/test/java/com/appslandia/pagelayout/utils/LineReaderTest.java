@@ -0,0 +1,58 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author Loc Ha
+ *
+ */
+public class LineReaderTest {
+
+  @Test
+  public void test_readLine(@TempDir Path dir) throws Exception {
+    var file = dir.resolve("view.jsp");
+    Files.write(file, "a\r\nb\rc\n\nd".getBytes(StandardCharsets.UTF_8));
+
+    try (var reader = new LineReader(file, 2)) {
+      Assertions.assertEquals("a", reader.readLine());
+      var offset = reader.getOffset();
+      Assertions.assertEquals(3, offset);
+
+      Assertions.assertEquals("b", reader.readLine());
+      Assertions.assertEquals("c", reader.readLine());
+      Assertions.assertEquals("", reader.readLine());
+      Assertions.assertEquals("d", reader.readLine());
+      Assertions.assertNull(reader.readLine());
+
+      reader.seek(offset);
+      Assertions.assertEquals("b", reader.readLine());
+    }
+  }
+}
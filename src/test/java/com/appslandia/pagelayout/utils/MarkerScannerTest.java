@@ -0,0 +1,75 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ *
+ * @author Loc Ha
+ *
+ */
+public class MarkerScannerTest {
+
+  @Test
+  public void test_countPlainLines() {
+    var scanner = new MarkerScanner(MarkerScanner.toBytes("<%@"));
+
+    Assertions.assertEquals(0, scanner.countPlainLines(ByteBuffer.wrap(new byte[0])));
+    Assertions.assertEquals(2, scanner.countPlainLines(ByteBuffer.wrap(MarkerScanner.toBytes("caf\u00e9\n<p/>"))));
+    Assertions.assertEquals(-1, scanner.countPlainLines(ByteBuffer.wrap(MarkerScanner.toBytes("a\n<!-- @x -->\n"))));
+    Assertions.assertEquals(-1, scanner.countPlainLines(ByteBuffer.wrap(MarkerScanner.toBytes("@(x)"))));
+    Assertions.assertEquals(-1, scanner.countPlainLines(ByteBuffer.wrap(MarkerScanner.toBytes("<%@ page %>"))));
+    Assertions.assertEquals(-1, scanner.countPlainLines(ByteBuffer.wrap(MarkerScanner.toBytes("a\r\n"))));
+
+    // Malformed UTF-8: Decoded by the pipeline, which reports it
+    Assertions.assertEquals(-1, scanner.countPlainLines(ByteBuffer.wrap(new byte[] { 'a', (byte) 0xC3 })));
+    var surrogate = new byte[] { (byte) 0xED, (byte) 0xA0, (byte) 0x80 };
+    Assertions.assertEquals(-1, scanner.countPlainLines(ByteBuffer.wrap(surrogate)));
+  }
+
+  @Test
+  public void test_read(@TempDir Path dir) throws Exception {
+    for (int size : new int[] { 0, 10_000, MarkerScanner.MAP_THRESHOLD - 1, MarkerScanner.MAP_THRESHOLD }) {
+      var bytes = new byte[size];
+      for (var i = 0; i < size; i++) {
+        bytes[i] = (byte) ('a' + i % 26);
+      }
+      var file = dir.resolve("view" + size + ".jsp");
+      Files.write(file, bytes);
+
+      try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+        var content = MarkerScanner.read(channel);
+        var actual = new byte[content.remaining()];
+        content.get(actual);
+        Assertions.assertArrayEquals(bytes, actual);
+      }
+    }
+  }
+}
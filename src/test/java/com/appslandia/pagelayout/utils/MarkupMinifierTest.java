@@ -0,0 +1,97 @@
+// The MIT License (MIT)
+// Copyright © 2015 Loc Ha
+
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+
+// The above copyright notice and this permission notice shall be included in all
+// copies or substantial portions of the Software.
+
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+package com.appslandia.pagelayout.utils;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ *
+ * @author Loc Ha
+ *
+ */
+public class MarkupMinifierTest {
+
+  @Test
+  public void test_minify() {
+    var source = List.of("<html>", "  <body>", "    <!-- @doBody begin -->", "    <span>a</span>   <span>b</span>",
+        "    <pre>", "  x  </pre>", "    <p title=\"a  b\">${a  > 1}</p>", "  </body>", "</html>");
+
+    Assertions.assertEquals(List.of("<html><body><span>a</span> <span>b</span>", "<pre>",
+        "  x  </pre><p title=\"a  b\">${a  > 1}</p></body></html>"), MarkupMinifier.minify(source));
+  }
+
+  @Test
+  public void test_minify_script() {
+    var source = List.of("<div>", "  <script>", "    if (a  <  b) {  x(); }", "  </script>", "</div>");
+
+    Assertions.assertEquals(List.of("<div><script>", "    if (a  <  b) {  x(); }", "  </script></div>"),
+        MarkupMinifier.minify(source));
+  }
+
+  @Test
+  public void test_minify_textarea() {
+    var source = List.of("<div>", "  <textarea name=\"t\">", "  a  ", "    b</textarea>", "</div>");
+
+    Assertions.assertEquals(List.of("<div><textarea name=\"t\">", "  a  ", "    b</textarea></div>"),
+        MarkupMinifier.minify(source));
+  }
+
+  @Test
+  public void test_minify_jsp() {
+    var source = List.of("<%@ page  contentType=\"text/html\" %>", "<%@ taglib prefix=\"c\"  uri=\"x\" %>", "<div>",
+        "  <%  if (a  >  b) {  %>", "    <p>x</p>", "  <% } %>", "  <%=  a   %>", "  <%-- a  comment --%>", "</div>");
+
+    Assertions.assertEquals(List.of("<%@ page  contentType=\"text/html\" %>", "<%@ taglib prefix=\"c\"  uri=\"x\" %>",
+        "<div>", "<%  if (a  >  b) {  %>", "<p>x</p>", "<% } %>", "<%=  a   %>", "<%-- a  comment --%>", "</div>"),
+        MarkupMinifier.minify(source));
+  }
+
+  @Test
+  public void test_minify_pebble() {
+    var source = List.of("<div>", "  {% if  a  >  b %}", "    <p>{{  a  |  upper }}</p>", "  {% endif %}",
+        "  {#  note  #}", "</div>");
+
+    Assertions.assertEquals(
+        List.of("<div>", "{% if  a  >  b %}", "<p>{{  a  |  upper }}</p>", "{% endif %}", "{#  note  #}", "</div>"),
+        MarkupMinifier.minify(source));
+  }
+
+  @Test
+  public void test_minify_el() {
+    var source = List.of("<p title=\"${a  > b}\"   class=\"#{x  y}\">  ${a  >  1}   and   #{b}  </p>");
+
+    Assertions.assertEquals(List.of("<p title=\"${a  > b}\" class=\"#{x  y}\"> ${a  >  1} and #{b} </p>"),
+        MarkupMinifier.minify(source));
+  }
+
+  @Test
+  public void test_minify_conditionalComments() {
+    var source = List.of("<head>", "  <!--[if lt IE 9]>  <script src=\"a.js\"></script>  <![endif]-->",
+        "  <!-- plain  comment -->", "  <!--<![endif]-->", "</head>");
+
+    Assertions.assertEquals(
+        List.of("<head><!--[if lt IE 9]>  <script src=\"a.js\"></script>  <![endif]--><!--<![endif]--></head>"),
+        MarkupMinifier.minify(source));
+  }
+}
@@ -17,9 +17,19 @@
 // AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
 // LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
 // OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
 package com.appslandia.pagelayout.utils;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 /**
  *
@@ -31,4 +41,159 @@ public class ViewSourceUtilsTest {
   @Test
   public void test() {
   }
+
+  @Test
+  public void test_parseVariables() throws Exception {
+    List<String> source = new ArrayList<>(List.of("<!-- @variables", " title = Home ", "// comment", "-->", "<p/>",
+        "  <!--@variables", "__layout=layout", "  -->"));
+    Map<String, String> variables = new LinkedHashMap<>();
+
+    ViewSourceUtils.parseVariables(source, "view.jsp", variables);
+
+    Assertions.assertEquals(List.of("<p/>"), source);
+    Assertions.assertEquals("Home", variables.get("title"));
+    Assertions.assertEquals("layout", variables.get("__layout"));
+  }
+
+  @Test
+  public void test_parseVariables_noClosing() {
+    List<String> source = new ArrayList<>(List.of("<!-- @variables", "title=Home"));
+
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> ViewSourceUtils.parseVariables(source, "view.jsp", new LinkedHashMap<>()));
+  }
+
+  @Test
+  public void test_parseVariablesFile_cache(@TempDir Path configPath) throws Exception {
+    var commonFile = configPath.resolve("common.properties");
+    Files.writeString(commonFile, "site=Site\n");
+    FileCache<Map<String, String>> variablesCache = new FileCache<>(16);
+
+    for (var i = 0; i < 3; i++) {
+      List<String> source = new ArrayList<>(List.of("<!-- @variables:common.properties -->", "<p/>"));
+      Map<String, String> variables = new LinkedHashMap<>();
+
+      ViewSourceUtils.parseVariablesFile(source, configPath, variables, null, variablesCache);
+      Assertions.assertEquals(List.of("<p/>"), source);
+      Assertions.assertEquals("Site", variables.get("site"));
+    }
+    Assertions.assertEquals(1, variablesCache.getMisses());
+    Assertions.assertEquals(2, variablesCache.getHits());
+
+    // Changed size -> Reloaded
+    Files.writeString(commonFile, "site=New Site\n");
+    Map<String, String> variables = new LinkedHashMap<>();
+    ViewSourceUtils.parseVariablesFile(new ArrayList<>(List.of("<!-- @variables:common.properties -->")), configPath,
+        variables, null, variablesCache);
+
+    Assertions.assertEquals("New Site", variables.get("site"));
+    Assertions.assertEquals(2, variablesCache.getMisses());
+  }
+
+  @Test
+  public void test_parseSections() {
+    List<String> source = new ArrayList<>(List.of("<p/>", "<!-- @js begin -->", "<script/>", "<!-- @js end -->",
+        "<!-- @css begin -->", "<!-- @css end -->"));
+    Map<String, List<String>> sections = new LinkedHashMap<>();
+
+    ViewSourceUtils.parseSections(source, sections, "view.jsp");
+
+    Assertions.assertEquals(List.of("<p/>"), source);
+    Assertions.assertEquals(List.of("<script/>"), sections.get("js"));
+    Assertions.assertEquals(List.of(), sections.get("css"));
+  }
+
+  @Test
+  public void test_parseSections_nestedBegin() {
+    List<String> source = new ArrayList<>(
+        List.of("<!-- @js begin -->", "<!-- @css begin -->", "<!-- @css end -->", "<!-- @js end -->"));
+
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> ViewSourceUtils.parseSections(source, new LinkedHashMap<>(), "view.jsp"));
+  }
+
+  @Test
+  public void test_replaceSections() {
+    List<String> source = new ArrayList<>(List.of("<body>", "  <!-- @js -->", "<!-- @css? -->", "</body>"));
+    Map<String, List<String>> sections = new LinkedHashMap<>();
+    sections.put("js", new ArrayList<>(List.of("<script/>", "<!-- @inner? -->")));
+    sections.put("inner", new ArrayList<>(List.of("<i/>")));
+
+    ViewSourceUtils.replaceSections(source, "view.jsp", sections);
+
+    Assertions.assertEquals(List.of("<body>", "<!-- @js begin -->", "<script/>", "<!-- @inner begin -->", "<i/>",
+        "<!-- @inner end -->", "<!-- @js end -->", "<!-- @css? undefined -->", "</body>"), source);
+  }
+
+  @Test
+  public void test_replaceSections_required() {
+    List<String> source = new ArrayList<>(List.of("<!-- @js -->"));
+
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> ViewSourceUtils.replaceSections(source, "view.jsp", new LinkedHashMap<>()));
+  }
+
+  @Test
+  public void test_replaceVariables() {
+    Map<String, String> variables = new LinkedHashMap<>();
+    variables.put("title", "@(site) - Home");
+    variables.put("site", "$Site\\");
+    variables.put("empty", "");
+
+    List<String> source = new ArrayList<>(List.of("<p/>", "<title>@( TITLE\t)</title>", "@(empty)@(none)@("));
+    var noHolder = source.get(0);
+
+    ViewSourceUtils.replaceVariables(source, variables);
+
+    Assertions.assertSame(noHolder, source.get(0));
+    Assertions.assertEquals(List.of("<p/>", "<title>$Site\\ - Home</title>", "@(none)@("), source);
+  }
+
+  @Test
+  public void test_replaceVariables_mapOrder() {
+    Map<String, String> variables = new LinkedHashMap<>();
+    variables.put("a", "@(b)");
+    variables.put("b", "@(a)");
+
+    // A value is only expanded by the variables after it
+    Assertions.assertEquals("@(a)", ViewSourceUtils.replaceVariables("@(b)", variables));
+    Assertions.assertEquals("@(a)", ViewSourceUtils.replaceVariables("@(a)", variables));
+
+    variables.put("A", "x");
+    Assertions.assertEquals("x", ViewSourceUtils.replaceVariables("@(b)", variables));
+  }
+
+  @Test
+  public void test_lineBuffer() {
+    List<String> source = new LineBuffer(List.of("a", "<!-- @js begin -->", "b", "<!-- @js end -->", "c"));
+    Map<String, List<String>> sections = new LinkedHashMap<>();
+
+    ViewSourceUtils.parseSections(source, sections, "view.jsp");
+    source.add(1, "<!-- @js -->");
+    source.add(0, "<p/>");
+    ViewSourceUtils.replaceSections(source, "view.jsp", sections);
+    source.subList(0, 2).clear();
+
+    Assertions.assertEquals(List.of("<!-- @js begin -->", "b", "<!-- @js end -->", "c"), source);
+    Assertions.assertEquals("c", source.remove(3));
+    Assertions.assertEquals(List.of("<!-- @js begin -->", "b", "<!-- @js end -->"), source);
+  }
+
+  @Test
+  public void test_removeBlankLines() {
+    List<String> source = new ArrayList<>(List.of("", "a", " \t", "b", ""));
+
+    ViewSourceUtils.removeBlankLines(source);
+    Assertions.assertEquals(List.of("a", "b"), source);
+  }
+
+  @Test
+  public void test_removeXmlProlog() {
+    List<String> source = new ArrayList<>(List.of("", "<?xml version=\"1.0\"", "  encoding=\"UTF-8\"?><!DOCTYPE html>",
+        "<ui:component xmlns:ui=\"jakarta.faces.facelets\">", "</ui:component>"));
+    ViewSourceUtils.removeXmlProlog(source);
+
+    Assertions.assertEquals(List.of("", "<ui:component xmlns:ui=\"jakarta.faces.facelets\">", "</ui:component>"),
+        source);
+  }
 }